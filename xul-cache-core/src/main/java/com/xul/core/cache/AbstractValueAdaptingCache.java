@@ -1,11 +1,17 @@
 package com.xul.core.cache;
 
+import com.xul.core.config.GlobalConfig;
 import com.xul.core.redis.client.RedisClient;
 import com.xul.core.supports.NullValue;
+import com.xul.core.supports.TtlValue;
 import com.xul.core.listener.RedisPubSubMessage;
 import com.xul.core.listener.RedisPubSubMessageType;
 import com.xul.core.listener.RedisPublisher;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * cache抽象类，对公共方法进行抽象提取实现
  *
@@ -37,6 +43,87 @@ public abstract class AbstractValueAdaptingCache implements Cache {
         return this.cacheName;
     }
 
+    /**
+     * 如果不存在则放入缓存，并指定剩余有效时间，默认忽略有效时间，支持按条目失效的缓存重写该方法
+     *
+     * @param key
+     * @param value
+     * @param resultType
+     * @param ttl        剩余有效时间，毫秒，小于等于0表示使用缓存配置的有效时间
+     * @return: T
+     * @author: xl
+     * @date: 2021/10/17
+     **/
+    public <T> T putIfAbsent(String key, Object value, Class<T> resultType, long ttl) {
+        return putIfAbsent(key, value, resultType);
+    }
+
+    /**
+     * 放入缓存，并指定剩余有效时间，默认忽略有效时间，支持按条目失效的缓存重写该方法
+     *
+     * @param key
+     * @param value
+     * @param ttl   剩余有效时间，毫秒，小于等于0表示使用缓存配置的有效时间
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public void put(String key, Object value, long ttl) {
+        put(key, value);
+    }
+
+    /**
+     * 获取缓存值，包括已逻辑过期但还在宽限期内的值，用于redis不可用时降级读取，返回的是存储值
+     *
+     * @param key
+     * @param resultType
+     * @return: T
+     * @author: xl
+     * @date: 2021/10/17
+     **/
+    public <T> T getStale(String key, Class<T> resultType) {
+        return get(key, resultType);
+    }
+
+    /**
+     * 获取最热的缓存数据和剩余有效时间，用于保存快照，默认不支持返回空
+     *
+     * @param limit 最大条数
+     * @return: java.util.Map<java.lang.String, com.xul.core.supports.TtlValue<java.lang.Object>> 剩余有效时间为毫秒，-1表示不过期
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public Map<String, TtlValue<Object>> hottest(int limit) {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * 把key固定在缓存中，不会被容量淘汰，到期后失效。默认不支持返回false
+     *
+     * @param key
+     * @param value 存储值
+     * @param ttl   有效时间，毫秒，小于等于0不过期
+     * @return: boolean 是否固定成功
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public boolean pin(String key, Object value, long ttl) {
+        return false;
+    }
+
+    /**
+     * 解除固定，未过期的值放回普通缓存
+     */
+    public void unpin(String key) {
+    }
+
+    /**
+     * 已固定的key和过期时间（毫秒时间戳，0表示不过期）
+     */
+    public Map<String, Long> getPinnedKeys() {
+        return Collections.emptyMap();
+    }
+
     protected Object toStoreValue(Object userValue) {
         if (userValue == null) {
             return NullValue.INSTANCE;
@@ -70,11 +157,33 @@ public abstract class AbstractValueAdaptingCache implements Cache {
                 .key(key)
                 .value(value)
                 .messageType(RedisPubSubMessageType.UPDATE)
+                .nodeId(GlobalConfig.NODE_ID)
                 .build();
         // 发布消息
         RedisPublisher.publisher(redisClient, message);
     }
 
+    /**
+     * 异步通知更新一级缓存消息
+     *
+     * @param key
+     * @param value
+     * @param redisClient
+     * @return: java.util.concurrent.CompletableFuture<java.lang.Void>
+     * @author: xl
+     * @date: 2021/10/15
+     **/
+    public CompletableFuture<Void> notifyUpdateFirstCacheAsync(String key, Object value, RedisClient redisClient) {
+        RedisPubSubMessage message = RedisPubSubMessage.builder()
+                .cacheName(cacheName)
+                .key(key)
+                .value(value)
+                .messageType(RedisPubSubMessageType.UPDATE)
+                .nodeId(GlobalConfig.NODE_ID)
+                .build();
+        return RedisPublisher.publisherAsync(redisClient, message);
+    }
+
     /**
      * 通知删除一级缓存消息
      *
@@ -90,11 +199,31 @@ public abstract class AbstractValueAdaptingCache implements Cache {
                 .cacheName(cacheName)
                 .key(key)
                 .messageType(RedisPubSubMessageType.EVICT)
+                .nodeId(GlobalConfig.NODE_ID)
                 .build();
         // 发布消息
         RedisPublisher.publisher(redisClient, message);
     }
 
+    /**
+     * 异步通知删除一级缓存消息
+     *
+     * @param key
+     * @param redisClient
+     * @return: java.util.concurrent.CompletableFuture<java.lang.Void>
+     * @author: xl
+     * @date: 2021/10/15
+     **/
+    public CompletableFuture<Void> notifyDeleteFirstCacheAsync(String key, RedisClient redisClient) {
+        RedisPubSubMessage message = RedisPubSubMessage.builder()
+                .cacheName(cacheName)
+                .key(key)
+                .messageType(RedisPubSubMessageType.EVICT)
+                .nodeId(GlobalConfig.NODE_ID)
+                .build();
+        return RedisPublisher.publisherAsync(redisClient, message);
+    }
+
     /**
      * 清理缓存
      *
@@ -108,6 +237,7 @@ public abstract class AbstractValueAdaptingCache implements Cache {
         RedisPubSubMessage message = RedisPubSubMessage.builder()
                 .cacheName(cacheName)
                 .messageType(RedisPubSubMessageType.CLEAR)
+                .nodeId(GlobalConfig.NODE_ID)
                 .build();
         // 发布消息
         RedisPublisher.publisher(redisClient, message);
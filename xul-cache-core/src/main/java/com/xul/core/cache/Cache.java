@@ -2,6 +2,10 @@ package com.xul.core.cache;
 
 import com.xul.core.function.CacheFunctionWithParamReturn;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 缓存接口
  *
@@ -45,6 +49,22 @@ public interface Cache {
     <T> T get(String key, Class<T> resultType, CacheFunctionWithParamReturn<T,String> valueLoader);
 
 
+    /**
+     * 批量获取key的缓存值，未命中的key统一交给批量加载器一次性加载
+     * <p>
+     * 返回的Map中只包含命中缓存或加载到值的key
+     * </p>
+     *
+     * @param keys        缓存key集合
+     * @param resultType  返回值类型
+     * @param batchLoader 批量加载器，入参为未命中的key集合，允许为 {@literal null}
+     * @return: java.util.Map<java.lang.String, T>
+     * @author: xl
+     * @date: 2021/10/14
+     **/
+    <T> Map<String, T> getAll(Collection<String> keys, Class<T> resultType, CacheFunctionWithParamReturn<Map<String, T>, Collection<String>> batchLoader);
+
+
     /**
      * 将对应的key-value缓存
      *
@@ -56,6 +76,16 @@ public interface Cache {
      **/
     void put(String key, Object value);
 
+    /**
+     * 批量缓存key-value
+     *
+     * @param values
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/14
+     **/
+    void putAll(Map<String, ?> values);
+
     /**
      * 如果缓存key没有值得时候 就进行put，如果有值的时候就返回对应的类型
      * <p>就相当于:
@@ -100,6 +130,50 @@ public interface Cache {
      **/
     void clear();
 
+    /**
+     * 异步获取key的缓存值value，并将value转换成对应类型返回
+     *
+     * @param key
+     * @param resultType
+     * @return: java.util.concurrent.CompletableFuture<T>
+     * @author: xl
+     * @date: 2021/10/15
+     **/
+    <T> CompletableFuture<T> getAsync(String key, Class<T> resultType);
+
+    /**
+     * 异步获取key的缓存值value，缓存不存在时通过异步加载器加载
+     *
+     * @param key
+     * @param resultType
+     * @param valueLoader 异步加载器
+     * @return: java.util.concurrent.CompletableFuture<T>
+     * @author: xl
+     * @date: 2021/10/15
+     **/
+    <T> CompletableFuture<T> getAsync(String key, Class<T> resultType, CacheFunctionWithParamReturn<CompletableFuture<T>, String> valueLoader);
+
+    /**
+     * 异步将对应的key-value缓存
+     *
+     * @param key
+     * @param value
+     * @return: java.util.concurrent.CompletableFuture<java.lang.Void>
+     * @author: xl
+     * @date: 2021/10/15
+     **/
+    CompletableFuture<Void> putAsync(String key, Object value);
+
+    /**
+     * 异步在缓存中移除对应的key
+     *
+     * @param key
+     * @return: java.util.concurrent.CompletableFuture<java.lang.Void>
+     * @author: xl
+     * @date: 2021/10/15
+     **/
+    CompletableFuture<Void> evictAsync(String key);
+
     /**
      * 返回缓存元素个数
      *
@@ -1,20 +1,53 @@
 package com.xul.core.cache;
 
+import com.xul.core.cache.redis.RedisCache;
+import com.xul.core.config.FirstCacheConfig;
+import com.xul.core.config.GlobalConfig;
+import com.xul.core.config.HotKeyConfig;
 import com.xul.core.config.LayeringCacheConfig;
+import com.xul.core.config.SecondaryCacheConfig;
+import com.xul.core.config.WarmUpConfig;
 import com.xul.core.exception.LoaderCacheValueException;
+import com.xul.core.exception.RedisClientException;
 import com.xul.core.function.CacheFunctionWithParamReturn;
+import com.xul.core.hotkey.HotKeyDetector;
 import com.xul.core.logger.LoggerHelper;
 import com.xul.core.redis.client.RedisClient;
 import com.xul.core.redis.client.RedissonLockClient;
 import com.xul.core.supports.AwaitThreadContainer;
+import com.xul.core.supports.BloomFilter;
+import com.xul.core.supports.CacheWrapper;
+import com.xul.core.supports.CircuitBreaker;
+import com.xul.core.supports.CircuitBreakerState;
+import com.xul.core.supports.HotKeyType;
+import com.xul.core.supports.RefreshMode;
+import com.xul.core.supports.RefreshTaskScheduler;
+import com.xul.core.supports.SingleFlight;
+import com.xul.core.supports.TtlValue;
 import com.xul.core.utils.GSONUtil;
-import com.xul.core.utils.ThreadPoolExecutorTask;
+import com.xul.core.utils.NamedThreadFactory;
 import com.xul.core.supports.NullValue;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
  * 多级缓存
@@ -53,8 +86,52 @@ public class LayeringCache extends AbstractValueAdaptingCache {
     /**
      * 线程等待容器
      */
+    @Getter
     private AwaitThreadContainer awaitThreadContainer = new AwaitThreadContainer();
 
+    /**
+     * 本地请求合并，同一个key本服务器只有一个线程竞争分布式锁
+     */
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    /**
+     * 缓存预热，只执行一次，并发调用等待同一次预热完成
+     */
+    private final AtomicReference<CompletableFuture<Void>> warmUpFuture = new AtomicReference<>();
+
+    /**
+     * redis熔断器
+     */
+    private final CircuitBreaker circuitBreaker;
+
+    /**
+     * 降级次数
+     */
+    private final LongAdder degradeCount = new LongAdder();
+
+    /**
+     * 降级时读取到一级缓存过期数据的次数
+     */
+    private final LongAdder staleHitCount = new LongAdder();
+
+    /**
+     * 缓存刷新调度器，同一个key同一时刻只有一个刷新任务
+     */
+    @Getter
+    private final RefreshTaskScheduler refreshTaskScheduler;
+
+    /**
+     * 布隆过滤器，未开启时为null
+     */
+    @Getter
+    private final BloomFilter bloomFilter;
+
+    /**
+     * 热点key探测器，未开启时为null
+     */
+    @Getter
+    private final HotKeyDetector hotKeyDetector;
+
 
     public LayeringCache(String cacheName, RedisClient redisClient, AbstractValueAdaptingCache firstCache, AbstractValueAdaptingCache secondCache, LayeringCacheConfig layeringCacheConfig) {
         super(cacheName);
@@ -62,49 +139,121 @@ public class LayeringCache extends AbstractValueAdaptingCache {
         this.firstCache = firstCache;
         this.secondCache = secondCache;
         this.layeringCacheConfig = layeringCacheConfig;
+        SecondaryCacheConfig secondaryCacheConfig = layeringCacheConfig.getSecondaryCacheConfig();
+        this.refreshTaskScheduler = new RefreshTaskScheduler(cacheName, secondaryCacheConfig.getRefreshThreads(), secondaryCacheConfig.getRefreshQueueSize());
+        this.bloomFilter = BloomFilter.create(cacheName, layeringCacheConfig.getBloomFilterConfig(), redisClient);
+        this.circuitBreaker = redisClient.getCircuitBreaker();
+        this.hotKeyDetector = HotKeyDetector.create(cacheName, layeringCacheConfig.getHotKeyConfig());
     }
 
     @Override
     public <T> T get(String key, Class<T> resultType) {
-        T result = firstCache.get(key, resultType);
-        if (LoggerHelper.isDebugEnabled()) {
-            log.info("缓存名称={},查询一级缓存。 key={},返回值是:{}", getCacheName(), key, GSONUtil.toJson(result));
-        }
+        Object result = getFirstCache(key, resultType);
         if (result != null) {
             return (T) fromStoreValue(result);
         }
-        result = secondCache.get(key, resultType);
-        firstCache.putIfAbsent(key, result, resultType);
-        if (LoggerHelper.isDebugEnabled()) {
-            log.info("缓存名称={},查询二级缓存,并将数据放到一级缓存。 key={},返回值是:{}", getCacheName(), key, GSONUtil.toJson(result));
+        /**redis熔断中，降级读取一级缓存过期数据*/
+        if (!circuitBreaker.allowRequest()) {
+            return degradeStale(key, resultType);
         }
-        return result;
+        long start = System.currentTimeMillis();
+        TtlValue<Object> ttlValue;
+        try {
+            ttlValue = getSecondWithTtl(key, resultType);
+            circuitBreaker.onSuccess(System.currentTimeMillis() - start);
+        } catch (RedisClientException e) {
+            onSecondCacheFailure(key, e);
+            return degradeStale(key, resultType);
+        }
+        return fillFirstCache(key, resultType, ttlValue.getValue(), ttlValue.getTtl());
     }
 
 
     @Override
     public <T> T get(String key, Class<T> resultType, CacheFunctionWithParamReturn<T, String> valueLoader) {
-        T result = firstCache.get(key, resultType);
-        if (LoggerHelper.isDebugEnabled()) {
-            log.info("缓存名称={},查询一级缓存。 key={},返回值是:{}", getCacheName(), key, GSONUtil.toJson(result));
-        }
+        Object result = getFirstCache(key, resultType);
         if (result != null) {
             return (T) fromStoreValue(result);
         }
+        /**布隆过滤器判断key一定不存在，直接返回*/
+        if (!mightContain(key)) {
+            return null;
+        }
 
-        /**查询二级缓存*/
-        result = secondCache.get(key, resultType, valueLoader);
-        if (result == null) {
-            /**二级缓存为空，获取数据库*/
-            result = executeCacheMethod(key, resultType, valueLoader);
-        } else {
-            /**缓存预刷新*/
-            refreshCache(key, resultType, valueLoader, result);
+        /**redis熔断中，降级读取一级缓存过期数据或直接执行被缓存的方法*/
+        if (!circuitBreaker.allowRequest()) {
+            return degrade(key, resultType, valueLoader);
         }
-        /**设置一级缓存*/
-        firstCache.putIfAbsent(key, result, resultType);
+
+        /**查询二级缓存，空值 {@link NullValue} 也算命中*/
+        SecondValue secondValue;
+        long start = System.currentTimeMillis();
+        try {
+            secondValue = readSecond(key, resultType);
+            circuitBreaker.onSuccess(System.currentTimeMillis() - start);
+        } catch (RedisClientException e) {
+            onSecondCacheFailure(key, e);
+            return degrade(key, resultType, valueLoader);
+        }
+        if (secondValue.value == null) {
+            recordHotKey(HotKeyType.SECOND_CACHE_MISS, key);
+            /**二级缓存为空，获取数据库，本服务器同一个key只有一个线程去竞争分布式锁，其它线程共享结果*/
+            return singleFlight.execute(key, () -> executeCacheMethod(key, resultType, valueLoader));
+        }
+        /**缓存预刷新，在本地判断，不需要额外的redis命令*/
+        T value = (T) fromStoreValue(secondValue.value);
+        refreshIfNeeded(secondValue, wrapper -> refreshTaskScheduler.submit(key, () -> doRefresh(key, resultType, valueLoader, value, wrapper)));
+        return fillFirstCache(key, resultType, secondValue.value, secondValue.ttl);
+    }
+
+    @Override
+    public <T> Map<String, T> getAll(Collection<String> keys, Class<T> resultType, CacheFunctionWithParamReturn<Map<String, T>, Collection<String>> batchLoader) {
+        Map<String, T> result = new HashMap<>(keys.size());
+        /**查询一级缓存*/
+        Set<String> missKeys = new LinkedHashSet<>();
+        for (String key : keys) {
+            Object value = firstCache.get(key, resultType);
+            if (value == null) {
+                missKeys.add(key);
+            } else if (!(value instanceof NullValue)) {
+                result.put(key, (T) value);
+            }
+        }
+        /**布隆过滤器判断一定不存在的key不再查询*/
+        missKeys.removeIf(key -> !mightContain(key));
+        if (missKeys.isEmpty()) {
+            return result;
+        }
+        /**redis熔断中，降级读取一级缓存过期数据，其余key直接执行批量加载器*/
+        if (!circuitBreaker.allowRequest()) {
+            result.putAll(degradeAll(missKeys, resultType, batchLoader));
+            return result;
+        }
+        /**一级缓存未命中的key，一次MGET查询二级缓存*/
+        Map<String, TtlValue<Object>> secondValues;
+        long start = System.currentTimeMillis();
+        try {
+            secondValues = getAllSecondWithTtl(missKeys, resultType);
+            circuitBreaker.onSuccess(System.currentTimeMillis() - start);
+        } catch (RedisClientException e) {
+            onSecondCacheFailure(missKeys.toString(), e);
+            result.putAll(degradeAll(missKeys, resultType, batchLoader));
+            return result;
+        }
+        secondValues.forEach((key, ttlValue) -> {
+            missKeys.remove(key);
+            Object value = ttlValue.getValue();
+            if (!(value instanceof NullValue)) {
+                firstCache.putIfAbsent(key, value, resultType, ttlValue.getTtl());
+                result.put(key, (T) value);
+            }
+        });
         if (LoggerHelper.isDebugEnabled()) {
-            log.info("缓存名称={},查询二级缓存,并将数据放到一级缓存。 key={},返回值是:{}", getCacheName(), key, GSONUtil.toJson(result));
+            log.info("缓存名称={},批量查询缓存。 keys={},二级缓存命中{}个,未命中{}个", getCacheName(), keys, secondValues.size(), missKeys.size());
+        }
+        /**二级缓存仍未命中的key，批量加载器一次加载*/
+        if (!missKeys.isEmpty() && batchLoader != null) {
+            result.putAll(loaderAndPutValues(missKeys, resultType, batchLoader));
         }
         return result;
     }
@@ -113,16 +262,31 @@ public class LayeringCache extends AbstractValueAdaptingCache {
     public void put(String key, Object value) {
         firstCache.put(key, value);
         secondCache.put(key, value);
+        putBloomFilter(key, value);
         // 更新其它服务器一级缓存
         notifyUpdateFirstCache(key, value, redisClient);
 
 
     }
 
+    @Override
+    public void putAll(Map<String, ?> values) {
+        firstCache.putAll(values);
+        secondCache.putAll(values);
+        values.forEach(this::putBloomFilter);
+        // 更新其它服务器一级缓存
+        values.forEach((key, value) -> notifyUpdateFirstCache(key, value, redisClient));
+    }
+
     @Override
     public <T> T putIfAbsent(String key, Object value, Class<T> resultType) {
-        T firstResult = firstCache.putIfAbsent(key, value, resultType);
+        /**二级缓存刚写入，一级缓存按二级缓存的有效时间放入，不会比二级缓存更晚失效*/
+        long ttl = getSecondCacheExpiration(value);
+        T firstResult = firstCache.putIfAbsent(key, value, resultType, ttl);
         secondCache.put(key, value);
+        /**二级缓存已被覆盖，本服务器不处理自己发布的消息，直接更新一级缓存*/
+        firstCache.put(key, value, ttl);
+        putBloomFilter(key, value);
         // 更新其它服务器一级缓存
         notifyUpdateFirstCache(key, value, redisClient);
         return firstResult;
@@ -132,21 +296,550 @@ public class LayeringCache extends AbstractValueAdaptingCache {
     public void evict(String key) {
         // 删除的时候要先删除二级缓存再删除一级缓存，否则有并发问题
         secondCache.evict(key);
+        firstCache.evict(key);
         // 删除其它服务器一级缓存
         notifyDeleteFirstCache(key, redisClient);
     }
 
+    @Override
+    public <T> CompletableFuture<T> getAsync(String key, Class<T> resultType) {
+        Object result = getFirstCache(key, resultType);
+        if (result != null) {
+            return CompletableFuture.completedFuture((T) fromStoreValue(result));
+        }
+        /**redis熔断中，降级读取一级缓存过期数据*/
+        if (!circuitBreaker.allowRequest()) {
+            return CompletableFuture.completedFuture(degradeStale(key, resultType));
+        }
+        long start = System.currentTimeMillis();
+        return getSecondWithTtlAsync(key, resultType).handle((ttlValue, throwable) -> {
+            if (throwable != null) {
+                onSecondCacheFailure(key, toRedisClientException(throwable));
+                return degradeStale(key, resultType);
+            }
+            circuitBreaker.onSuccess(System.currentTimeMillis() - start);
+            return fillFirstCache(key, resultType, ttlValue.getValue(), ttlValue.getTtl());
+        });
+    }
+
+    @Override
+    public <T> CompletableFuture<T> getAsync(String key, Class<T> resultType, CacheFunctionWithParamReturn<CompletableFuture<T>, String> valueLoader) {
+        Object result = getFirstCache(key, resultType);
+        if (result != null) {
+            return CompletableFuture.completedFuture((T) fromStoreValue(result));
+        }
+        /**布隆过滤器判断key一定不存在，直接返回*/
+        if (!mightContain(key)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        /**redis熔断中，降级读取一级缓存过期数据或直接执行被缓存的方法*/
+        if (!circuitBreaker.allowRequest()) {
+            return degradeAsync(key, resultType, valueLoader);
+        }
+        /**异步查询二级缓存，查询异常时结果为null，由后续步骤降级*/
+        long start = System.currentTimeMillis();
+        return readSecondAsync(key, resultType).handle((secondValue, throwable) -> {
+            if (throwable != null) {
+                onSecondCacheFailure(key, toRedisClientException(throwable));
+                return null;
+            }
+            circuitBreaker.onSuccess(System.currentTimeMillis() - start);
+            return secondValue;
+        }).thenCompose(secondValue -> {
+            if (secondValue == null) {
+                return degradeAsync(key, resultType, valueLoader);
+            }
+            if (secondValue.value == null) {
+                recordHotKey(HotKeyType.SECOND_CACHE_MISS, key);
+                /**二级缓存为空，异步加载数据库，本服务器同一个key只有一个加载在执行*/
+                return singleFlight.executeAsync(key, () -> executeCacheMethodAsync(key, resultType, valueLoader))
+                        .thenApply(loadValue -> {
+                            /**设置一级缓存*/
+                            if (loadValue != null) {
+                                firstCache.putIfAbsent(key, loadValue, resultType);
+                            }
+                            return loadValue;
+                        });
+            }
+            /**缓存预刷新，在本地判断，刷新异步执行，不占用刷新线程等待加载结果*/
+            T value = (T) fromStoreValue(secondValue.value);
+            refreshIfNeeded(secondValue, wrapper -> refreshTaskScheduler.submitAsync(key, () -> doRefreshAsync(key, valueLoader, value, wrapper)));
+            return CompletableFuture.completedFuture(fillFirstCache(key, resultType, secondValue.value, secondValue.ttl));
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> putAsync(String key, Object value) {
+        firstCache.put(key, value);
+        putBloomFilter(key, value);
+        // 写入二级缓存后再更新其它服务器一级缓存
+        return secondCache.putAsync(key, value)
+                .thenCompose(v -> notifyUpdateFirstCacheAsync(key, value, redisClient));
+    }
+
+    @Override
+    public CompletableFuture<Void> evictAsync(String key) {
+        // 删除的时候要先删除二级缓存再删除一级缓存，否则有并发问题
+        return secondCache.evictAsync(key)
+                .thenCompose(v -> {
+                    firstCache.evict(key);
+                    return notifyDeleteFirstCacheAsync(key, redisClient);
+                });
+    }
+
     @Override
     public void clear() {
         // 删除的时候要先删除二级缓存再删除一级缓存，否则有并发问题
         secondCache.clear();
+        firstCache.clear();
         notifyClearFirstCache(redisClient);
     }
 
+    /**
+     * 关闭缓存，释放刷新线程池
+     *
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/16
+     **/
+    public void shutdown() {
+        refreshTaskScheduler.shutdown();
+    }
+
+    /**
+     * 熔断器状态
+     */
+    public CircuitBreakerState getCircuitBreakerState() {
+        return circuitBreaker.getState();
+    }
+
+    /**
+     * 降级次数
+     */
+    public long getDegradeCount() {
+        return degradeCount.sum();
+    }
+
+    /**
+     * 降级时读取到一级缓存过期数据的次数
+     */
+    public long getStaleHitCount() {
+        return staleHitCount.sum();
+    }
+
+    /**
+     * redis不可用时降级，优先返回一级缓存中的过期数据，没有再直接执行被缓存的方法，
+     * 本服务器同一个key只有一个线程执行，结果只放到一级缓存
+     *
+     * @param key
+     * @param resultType
+     * @param valueLoader
+     * @return: T
+     * @author: xl
+     * @date: 2021/10/17
+     **/
+    private <T> T degrade(String key, Class<T> resultType, CacheFunctionWithParamReturn<T, String> valueLoader) {
+        degradeCount.increment();
+        Object stale = getStale(key, resultType);
+        if (stale != null) {
+            staleHitCount.increment();
+            return (T) fromStoreValue(stale);
+        }
+        return singleFlight.execute(key, () -> {
+            try {
+                T value = valueLoader.invokeMethod(key);
+                firstCache.put(key, value);
+                return value;
+            } catch (Exception e) {
+                throw new LoaderCacheValueException(key, e);
+            }
+        });
+    }
+
+    /**
+     * redis不可用时批量降级，优先返回一级缓存中的过期数据，其余key直接执行批量加载器，结果只放到一级缓存
+     *
+     * @param keys
+     * @param resultType
+     * @param batchLoader 批量加载器，为null时只返回过期数据
+     * @return: java.util.Map<java.lang.String, T>
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    private <T> Map<String, T> degradeAll(Collection<String> keys, Class<T> resultType, CacheFunctionWithParamReturn<Map<String, T>, Collection<String>> batchLoader) {
+        Map<String, T> result = new HashMap<>(keys.size());
+        Set<String> loadKeys = new LinkedHashSet<>();
+        for (String key : keys) {
+            degradeCount.increment();
+            Object stale = getStale(key, resultType);
+            if (stale == null) {
+                loadKeys.add(key);
+                continue;
+            }
+            staleHitCount.increment();
+            if (!(stale instanceof NullValue)) {
+                result.put(key, (T) stale);
+            }
+        }
+        if (loadKeys.isEmpty() || batchLoader == null) {
+            return result;
+        }
+        Map<String, T> loadValues;
+        try {
+            loadValues = batchLoader.invokeMethod(loadKeys);
+        } catch (Exception e) {
+            throw new LoaderCacheValueException(loadKeys.toString(), e);
+        }
+        for (String key : loadKeys) {
+            T value = loadValues == null ? null : loadValues.get(key);
+            firstCache.put(key, value);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * redis不可用时降级读取一级缓存中的过期数据
+     */
+    private <T> T degradeStale(String key, Class<T> resultType) {
+        degradeCount.increment();
+        Object stale = getStale(key, resultType);
+        if (stale != null) {
+            staleHitCount.increment();
+        }
+        return (T) fromStoreValue(stale);
+    }
+
+    /**
+     * redis不可用时异步降级，优先返回一级缓存中的过期数据，没有再异步执行被缓存的方法，
+     * 本服务器同一个key只有一个加载在执行，结果只放到一级缓存
+     *
+     * @param key
+     * @param resultType
+     * @param valueLoader 异步加载器
+     * @return: java.util.concurrent.CompletableFuture<T>
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    private <T> CompletableFuture<T> degradeAsync(String key, Class<T> resultType, CacheFunctionWithParamReturn<CompletableFuture<T>, String> valueLoader) {
+        degradeCount.increment();
+        Object stale = getStale(key, resultType);
+        if (stale != null) {
+            staleHitCount.increment();
+            return CompletableFuture.completedFuture((T) fromStoreValue(stale));
+        }
+        return singleFlight.executeAsync(key, () -> invokeLoaderAsync(key, valueLoader).thenApply(value -> {
+            firstCache.put(key, value);
+            return value;
+        }));
+    }
+
+    /**
+     * 二级缓存访问异常，记录熔断器失败；未开启熔断时抛出异常，开启时由调用方降级
+     */
+    private void onSecondCacheFailure(String key, RedisClientException e) {
+        circuitBreaker.onFailure();
+        if (!circuitBreaker.isEnable()) {
+            throw e;
+        }
+        log.warn("缓存名称={},redis异常，降级处理 key={}：{}", getCacheName(), key, e.getMessage());
+    }
+
+    /**
+     * 异步回调中的异常转换成 {@link RedisClientException}
+     */
+    private RedisClientException toRedisClientException(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        return cause instanceof RedisClientException ? (RedisClientException) cause : new RedisClientException(cause.getMessage(), cause);
+    }
+
+    @Override
+    public <T> T getStale(String key, Class<T> resultType) {
+        return firstCache.getStale(key, resultType);
+    }
+
+    /**
+     * 用全量存在的key重建布隆过滤器，重建完成后开始拦截一定不存在的key
+     * <p>
+     * 重建后通过缓存写入、加载的key会自动加入过滤器，其它途径新增的数据需要调用 {@link #putBloomFilter(String)}
+     * </p>
+     *
+     * @param keys 全量存在的key
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/17
+     **/
+    public void rebuildBloomFilter(Collection<String> keys) {
+        if (bloomFilter == null) {
+            log.warn("缓存名称={},未开启布隆过滤器，忽略重建", getCacheName());
+            return;
+        }
+        long start = System.currentTimeMillis();
+        bloomFilter.rebuild(keys);
+        log.info("缓存名称={},布隆过滤器重建完成，key数量：{}，耗时：{}ms", getCacheName(), keys.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 将存在的key加入布隆过滤器
+     *
+     * @param key
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/17
+     **/
+    public void putBloomFilter(String key) {
+        if (bloomFilter != null) {
+            bloomFilter.put(key);
+        }
+    }
+
+    /**
+     * 非空值的key加入布隆过滤器
+     */
+    private void putBloomFilter(String key, Object value) {
+        if (value != null && !(value instanceof NullValue)) {
+            putBloomFilter(key);
+        }
+    }
+
+    /**
+     * key是否可能存在，未开启布隆过滤器时总是返回true
+     */
+    private boolean mightContain(String key) {
+        return bloomFilter == null || bloomFilter.mightContain(key);
+    }
+
+    /**
+     * 是否开启缓存预热
+     */
+    public boolean isWarmUpEnable() {
+        WarmUpConfig warmUpConfig = layeringCacheConfig.getWarmUpConfig();
+        return warmUpConfig != null && warmUpConfig.isEnable();
+    }
+
+    /**
+     * 缓存预热，读取热点key，分批并行从二级缓存批量读取后放入一级缓存，超时未完成的批次放弃
+     * <p>
+     * 热点key优先由 {@link WarmUpConfig#getHotKeyLoader()} 提供，否则读取redis中按访问采样统计的热点key。
+     * 只执行一次，预热中再次调用时等待预热完成
+     * </p>
+     *
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public void warmUp() {
+        if (!isWarmUpEnable()) {
+            return;
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!warmUpFuture.compareAndSet(null, future)) {
+            warmUpFuture.get().join();
+            return;
+        }
+        try {
+            doWarmUp(layeringCacheConfig.getWarmUpConfig());
+        } finally {
+            future.complete(null);
+        }
+    }
+
+    private void doWarmUp(WarmUpConfig warmUpConfig) {
+        long start = System.currentTimeMillis();
+        int hotKeySize = warmUpConfig.getHotKeySize() > 0 ? warmUpConfig.getHotKeySize() : 1000;
+        int batchSize = warmUpConfig.getBatchSize() > 0 ? warmUpConfig.getBatchSize() : 100;
+        int parallelism = warmUpConfig.getParallelism() > 0 ? warmUpConfig.getParallelism() : 4;
+        long timeout = warmUpConfig.getTimeout() > 0 ? warmUpConfig.getTimeout() : 30000;
+        Class<?> valueType = warmUpConfig.getValueType() == null ? Object.class : warmUpConfig.getValueType();
+
+        List<String> hotKeys;
+        try {
+            hotKeys = new ArrayList<>(warmUpConfig.getHotKeyLoader() != null
+                    ? warmUpConfig.getHotKeyLoader().invokeMethod(getCacheName())
+                    : redisClient.zrevrange(GlobalConfig.getHotKeyRedisKey(getCacheName()), 0, hotKeySize - 1));
+            if (warmUpConfig.getHotKeyLoader() == null) {
+                /**只保留排名靠前的key，防止统计集合无限增长*/
+                redisClient.zremrangebyrank(GlobalConfig.getHotKeyRedisKey(getCacheName()), 0, -hotKeySize * 10L - 1);
+            }
+        } catch (Exception e) {
+            log.warn("缓存名称={},获取热点key异常，放弃预热：{}", getCacheName(), e.getMessage());
+            return;
+        }
+        if (hotKeys.size() > hotKeySize) {
+            hotKeys = hotKeys.subList(0, hotKeySize);
+        }
+        if (hotKeys.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new NamedThreadFactory("layering-cache-warm-up"));
+        LongAdder loadCount = new LongAdder();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < hotKeys.size(); i += batchSize) {
+            List<String> batch = hotKeys.subList(i, Math.min(i + batchSize, hotKeys.size()));
+            futures.add(executor.submit(() -> {
+                /**一次MGET读取一批，空值也放入一级缓存*/
+                getAllSecondWithTtl(batch, valueType).forEach((key, ttlValue) -> {
+                    firstCache.putIfAbsent(key, ttlValue.getValue(), valueType, ttlValue.getTtl());
+                    loadCount.increment();
+                });
+            }));
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+                log.warn("缓存名称={},预热超时{}ms，放弃未完成的批次", getCacheName(), timeout);
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        for (Future<?> future : futures) {
+            try {
+                if (future.isDone() && !future.isCancelled()) {
+                    future.get();
+                }
+            } catch (Exception e) {
+                log.warn("缓存名称={},预热批次异常：{}", getCacheName(), e.getMessage());
+            }
+        }
+        log.info("缓存名称={},预热完成，热点key：{}个，放入一级缓存：{}个，耗时：{}ms", getCacheName(), hotKeys.size(), loadCount.sum(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 获取本服务器前n个热点key，未开启热点key探测返回空
+     *
+     * @param type 统计类型
+     * @param n    数量
+     * @return: java.util.Map<java.lang.String, java.lang.Long> 按估算次数从大到小排序
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public Map<String, Long> getHotKeys(HotKeyType type, int n) {
+        return hotKeyDetector == null ? new HashMap<>() : hotKeyDetector.getHotKeys(type, n);
+    }
+
+    /**
+     * 获取集群前n个热点key，由各服务器定时发布到redis汇总
+     *
+     * @param type 统计类型
+     * @param n    数量
+     * @return: java.util.List<java.lang.String> 按热度从高到低排序
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public List<String> getClusterHotKeys(HotKeyType type, int n) {
+        return redisClient.zrevrange(GlobalConfig.getHotKeyRedisKey(getCacheName(), type), 0, n - 1);
+    }
+
+    /**
+     * 热点key固定策略，由热点key服务定时调用
+     * <p>
+     * 访问频率超过阈值且在一级缓存中的热点key固定到一级缓存，不受容量淘汰；频率低于阈值一半的解除固定；
+     * 剩余有效时间不到五分之一的固定key从二级缓存刷新，二级缓存已不存在的直接移除
+     * </p>
+     *
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public void checkHotKeyPin() {
+        HotKeyConfig hotKeyConfig = layeringCacheConfig.getHotKeyConfig();
+        if (hotKeyDetector == null || !hotKeyConfig.isPinEnable()) {
+            return;
+        }
+        double threshold = hotKeyConfig.getPinThreshold() > 0 ? hotKeyConfig.getPinThreshold() : 100;
+        int maxSize = hotKeyConfig.getPinMaxSize() > 0 ? hotKeyConfig.getPinMaxSize() : 100;
+        FirstCacheConfig firstCacheConfig = layeringCacheConfig.getFirstCacheConfig();
+        long ttl = hotKeyConfig.getPinExpireTime() > 0 ? hotKeyConfig.getPinExpireTime()
+                : firstCacheConfig.getTimeUnit().toMillis(firstCacheConfig.getExpireTime());
+
+        /**解除已冷却的key，刷新快到期的key*/
+        Map<String, Long> pinnedKeys = firstCache.getPinnedKeys();
+        long now = System.currentTimeMillis();
+        int pinnedSize = pinnedKeys.size();
+        for (Map.Entry<String, Long> entry : pinnedKeys.entrySet()) {
+            String key = entry.getKey();
+            if (hotKeyDetector.getAccessRate(key) < threshold / 2) {
+                firstCache.unpin(key);
+                pinnedSize--;
+                log.info("缓存名称={},热点key访问频率下降，解除固定 key={}", getCacheName(), key);
+            } else if (entry.getValue() > 0 && entry.getValue() - now < ttl / 5) {
+                refreshPinned(key, ttl);
+            }
+        }
+
+        /**固定新的热点key，热点key按访问次数从大到小排序*/
+        for (String key : hotKeyDetector.getHotKeys(HotKeyType.ACCESS, maxSize).keySet()) {
+            if (pinnedSize >= maxSize) {
+                break;
+            }
+            if (pinnedKeys.containsKey(key) || hotKeyDetector.getAccessRate(key) < threshold) {
+                continue;
+            }
+            /**只固定已在一级缓存中的key，不在的等下次检查*/
+            Object value = firstCache.get(key, Object.class);
+            if (value != null && firstCache.pin(key, value, ttl)) {
+                pinnedSize++;
+                log.info("缓存名称={},热点key固定到一级缓存 key={}", getCacheName(), key);
+            }
+        }
+    }
+
+    /**
+     * 固定在一级缓存的key和过期时间
+     */
+    @Override
+    public Map<String, Long> getPinnedKeys() {
+        return firstCache.getPinnedKeys();
+    }
+
+    /**
+     * 从二级缓存刷新固定的key，二级缓存不存在时移除，redis异常时保留到过期。
+     * 半开状态下可能拿到唯一的探测机会，所以和 {@link #get(String, Class)} 一样向熔断器报告调用结果
+     */
+    private void refreshPinned(String key, long ttl) {
+        Object current = firstCache.getStale(key, Object.class);
+        if (current == null || !circuitBreaker.allowRequest()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            Object value = secondCache.get(key, current.getClass());
+            circuitBreaker.onSuccess(System.currentTimeMillis() - start);
+            if (value == null || value instanceof NullValue) {
+                firstCache.evict(key);
+            } else {
+                firstCache.pin(key, value, ttl);
+            }
+        } catch (RedisClientException e) {
+            circuitBreaker.onFailure();
+            log.warn("缓存名称={},刷新固定的热点key异常 key={}：{}", getCacheName(), key, e.getMessage());
+        } catch (Exception e) {
+            log.warn("缓存名称={},刷新固定的热点key异常 key={}：{}", getCacheName(), key, e.getMessage());
+        }
+    }
+
+    /**
+     * 按采样率记录key的访问或未命中
+     */
+    private void recordHotKey(HotKeyType type, String key) {
+        if (hotKeyDetector != null) {
+            hotKeyDetector.record(type, key);
+        }
+    }
+
 
     /**
      * 执行缓存方法，查询一级缓存，一级/二级缓存不存在，查询数据库，执行数据加载器
-     * 获取锁的线程等待500ms,如果500ms都没返回，则直接释放锁放下一个请求进来，防止第一个线程异常挂掉
+     * <p>
+     * 获取到锁的线程先再查一次二级缓存，没有再加载数据，然后用结果完成等待句柄；
+     * 未获取到锁的线程不再重复抢锁，而是订阅等待句柄有界等待，等待期间定时查询二级缓存（锁的持有者可能在其它服务器上），
+     * 超时后仍查不到数据则直接加载，防止锁持有者异常挂掉时一直等待
+     * </p>
      *
      * @param key
      * @param resultType
@@ -156,98 +849,177 @@ public class LayeringCache extends AbstractValueAdaptingCache {
      * @date: 2021/9/28
      **/
     private <T> T executeCacheMethod(String key, Class<T> resultType, CacheFunctionWithParamReturn<T, String> valueLoader) {
-        while (true) {
-            try {
-                // 先取缓存，如果有直接返回，没有再去做拿锁操作
-                T result = firstCache.get(key, resultType);
-                if (result != null) {
-                    if (LoggerHelper.isDebugEnabled()) {
-                        log.info("缓存名称={},redis缓存 key= {} 获取到锁后查询查询缓存命中，不需要执行被缓存的方法", getCacheName(), key);
-                    }
-                    return (T) fromStoreValue(result);
+        try {
+            // 先取缓存，如果有直接返回，没有再去做拿锁操作
+            T result = firstCache.get(key, resultType);
+            if (result != null) {
+                if (LoggerHelper.isDebugEnabled()) {
+                    log.info("缓存名称={},redis缓存 key= {} 获取到锁后查询查询缓存命中，不需要执行被缓存的方法", getCacheName(), key);
                 }
-                /**获得分布式锁的结果*/
-                boolean lockSuccess = redisClient.tryLock(RedissonLockClient.getExecuteDbLockKey(key), layeringCacheConfig.getSecondaryCacheConfig().getWAIT_TIME(),
-                        10 * 1000, TimeUnit.MILLISECONDS, () -> {
-                            T t = loaderAndPutValue(key, valueLoader);
+                return (T) fromStoreValue(result);
+            }
+            long waitTime = layeringCacheConfig.getSecondaryCacheConfig().getWAIT_TIME();
+            Object[] lockResult = new Object[1];
+            /**从二级缓存读到的数据的剩余生存时间，新加载的数据为0（按一级缓存有效时间）*/
+            long[] ttl = new long[1];
+            /**获得分布式锁的结果*/
+            boolean lockSuccess = redisClient.tryLock(RedissonLockClient.getExecuteDbLockKey(key), waitTime,
+                    10 * 1000, TimeUnit.MILLISECONDS, () -> {
+                        // 等锁期间其它服务器可能已经加载完成
+                        TtlValue<Object> ttlValue = getSecondWithTtl(key, resultType);
+                        Object value = ttlValue.getValue();
+                        ttl[0] = ttlValue.getTtl();
+                        if (value == null) {
+                            value = toStoreValue(loaderAndPutValue(key, valueLoader));
                             if (LoggerHelper.isDebugEnabled()) {
                                 log.info("缓存名称={},redis缓存 key= {} 从数据库获取数据完毕，唤醒所有等待线程", getCacheName(), key);
                             }
-                            /**存储到一级缓存中*/
-                            firstCache.putIfAbsent(key, t, resultType);
-                            // 唤醒线程
-                            awaitThreadContainer.signalAll(key);
-                            return;
-                        });
-                /**获取锁失败*/
-                if (!lockSuccess) {
-                    // 线程等待
+                        }
+                        lockResult[0] = value;
+                        // 唤醒线程
+                        awaitThreadContainer.signalAll(key, value);
+                    });
+            Object value = lockResult[0];
+            /**获取锁失败*/
+            if (!lockSuccess) {
+                // 锁持有者还在加载，先查二级缓存，没有再等待完成通知
+                TtlValue<Object> ttlValue = getSecondWithTtl(key, resultType);
+                value = ttlValue.getValue();
+                ttl[0] = ttlValue.getTtl();
+                if (value == null) {
                     if (LoggerHelper.isDebugEnabled()) {
-                        log.info("缓存名称={},redis缓存 key= {} 从数据库获取数据未获取到锁，进入等待状态，等待{}毫秒", getCacheName(), key, layeringCacheConfig.getSecondaryCacheConfig().getWAIT_TIME());
+                        log.info("缓存名称={},redis缓存 key= {} 从数据库获取数据未获取到锁，进入等待状态，等待{}毫秒", getCacheName(), key, waitTime);
                     }
-                    awaitThreadContainer.await(key, layeringCacheConfig.getSecondaryCacheConfig().getWAIT_TIME());
+                    value = awaitThreadContainer.await(key, waitTime, () -> secondCache.get(key, resultType));
                 }
-            } catch (Exception exception) {
-                awaitThreadContainer.signalAll(key);
-                throw new LoaderCacheValueException(key, exception);
+                if (value == null) {
+                    log.warn("缓存名称={},redis缓存 key= {} 等待加载结果超时，直接执行被缓存的方法", getCacheName(), key);
+                    value = toStoreValue(loaderAndPutValue(key, valueLoader));
+                }
+            }
+            /**存储到一级缓存中，空值放到一级缓存的空值缓存中*/
+            if (value != null) {
+                firstCache.putIfAbsent(key, value, resultType, ttl[0]);
             }
+            return (T) fromStoreValue(value);
+        } catch (Exception exception) {
+            awaitThreadContainer.signalAllExceptionally(key, exception);
+            if (exception instanceof LoaderCacheValueException) {
+                throw (LoaderCacheValueException) exception;
+            }
+            throw new LoaderCacheValueException(key, exception);
         }
 
     }
 
 
     /**
-     * 刷新缓存
+     * 异步执行缓存方法，一级/二级缓存不存在时异步获取分布式锁，再异步执行数据加载器
+     * <p>
+     * 获取锁后(或等待锁超时后)先再查一次二级缓存，其它服务器可能已经加载完成；锁的持有者用lockId标识，回调线程不固定也能正确释放锁
+     * </p>
      *
      * @param key
-     * @param valueLoader value加载器（用于数据库加载，业务端实现函数）
      * @param resultType
-     * @param result      返回结果
-     * @return: void
+     * @param valueLoader 异步加载器
+     * @return: java.util.concurrent.CompletableFuture<T>
      * @author: xl
-     * @date: 2021/9/28
+     * @date: 2021/10/15
      **/
-    private <T> void refreshCache(String key, Class<T> resultType, CacheFunctionWithParamReturn<T, String> valueLoader, Object result) {
-        ThreadPoolExecutorTask.run(() -> {
-            /**缓存主动在失效前强制刷新缓存的时间*/
-            long preload = layeringCacheConfig.getSecondaryCacheConfig().getPreloadTime();
-            // 允许缓存NULL值，则自动刷新时间也要除以倍数
-            boolean flag = (result instanceof NullValue || result == null);
-            if (flag) {
-                preload = preload / layeringCacheConfig.getSecondaryCacheConfig().getMagnification();
-            }
-            /**校验是否需要刷新缓存*/
-            if (isRefresh(key, preload)) {
-                /**判断是否需要强制刷新在开启刷新线程，强制刷新(开启线程，读取mysql数据库，获取新值，软刷新：单线程，重新设置一下redis过期时间，效率高)*/
-                if (!layeringCacheConfig.getSecondaryCacheConfig().isForceRefresh()) {
-                    /**软刷新*/
-                    if (LoggerHelper.isDebugEnabled()) {
-                        log.info("缓存名称={},redis缓存 key={} 软刷新缓存模式", getCacheName(), key);
-                    }
-                    softRefresh(key);
-                } else {
-                    /**硬刷新*/
-                    if (LoggerHelper.isDebugEnabled()) {
-                        log.info("缓存名称={},redis缓存 key={} 强刷新缓存模式", getCacheName(), key);
-                    }
-                    forceRefresh(key, resultType, valueLoader, result);
+    private <T> CompletableFuture<T> executeCacheMethodAsync(String key, Class<T> resultType, CacheFunctionWithParamReturn<CompletableFuture<T>, String> valueLoader) {
+        String lockKey = RedissonLockClient.getExecuteDbLockKey(key);
+        long lockId = ThreadLocalRandom.current().nextLong();
+        long waitTime = layeringCacheConfig.getSecondaryCacheConfig().getWAIT_TIME();
+        return redisClient.tryLockAsync(lockKey, waitTime, 10 * 1000, TimeUnit.MILLISECONDS, lockId).thenCompose(lockSuccess -> {
+            if (!lockSuccess && LoggerHelper.isDebugEnabled()) {
+                log.info("缓存名称={},redis缓存 key= {} 异步加载等待{}毫秒未获取到锁", getCacheName(), key, waitTime);
+            }
+            CompletableFuture<T> future = secondCache.getAsync(key, resultType).thenCompose(value -> {
+                if (value != null) {
+                    return CompletableFuture.completedFuture((T) fromStoreValue(value));
                 }
+                return loaderAndPutValueAsync(key, valueLoader);
+            });
+            if (!lockSuccess) {
+                return future;
             }
+            return future.whenComplete((value, throwable) -> redisClient.unlockAsync(lockKey, lockId));
         });
     }
 
+    /**
+     * 二级缓存命中后在本地判断是否需要预刷新，不需要额外的redis命令：
+     * 概率提前刷新模式（XFetch）根据包装值携带的写入时间和加载耗时判断，其它模式根据剩余生存时间判断
+     *
+     * @param secondValue 二级缓存读取结果
+     * @param refresher   提交刷新任务的函数，参数是二级缓存包装值，TTL模式下为null
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/16
+     **/
+    private void refreshIfNeeded(SecondValue secondValue, Consumer<CacheWrapper> refresher) {
+        long preloadMillis = getPreloadMillis(secondValue.value);
+        if (secondValue.wrapper != null) {
+            SecondaryCacheConfig secondaryCacheConfig = layeringCacheConfig.getSecondaryCacheConfig();
+            double beta = secondaryCacheConfig.getBeta() > 0 ? secondaryCacheConfig.getBeta() : 1;
+            if (secondValue.wrapper.isEarlyExpired(beta, preloadMillis)) {
+                refresher.accept(secondValue.wrapper);
+            }
+        } else if (isRefresh(secondValue.ttl, preloadMillis)) {
+            refresher.accept(null);
+        }
+    }
+
+    /**
+     * 执行刷新
+     * 判断是否需要强制刷新在开启刷新线程，强制刷新(开启线程，读取mysql数据库，获取新值，软刷新：单线程，重新设置一下redis过期时间，效率高)
+     *
+     * @param key
+     * @param resultType
+     * @param valueLoader value加载器
+     * @param result      缓存结果
+     * @param wrapper     二级缓存包装值，TTL模式下为null
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/16
+     **/
+    private <T> void doRefresh(String key, Class<T> resultType, CacheFunctionWithParamReturn<T, String> valueLoader, Object result, CacheWrapper wrapper) {
+        if (!layeringCacheConfig.getSecondaryCacheConfig().isForceRefresh()) {
+            /**软刷新*/
+            if (LoggerHelper.isDebugEnabled()) {
+                log.info("缓存名称={},redis缓存 key={} 软刷新缓存模式", getCacheName(), key);
+            }
+            softRefresh(key, wrapper);
+        } else {
+            /**硬刷新*/
+            if (LoggerHelper.isDebugEnabled()) {
+                log.info("缓存名称={},redis缓存 key={} 强刷新缓存模式", getCacheName(), key);
+            }
+            forceRefresh(key, resultType, valueLoader, result);
+        }
+    }
+
 
     /**
      * 软刷新
+     * <p>
+     * 包装值携带了过期时间，只续期redis会导致下次读取仍判断为需要刷新，所以重新写入包装值
+     * </p>
      *
      * @param key
+     * @param wrapper 二级缓存包装值，TTL模式下为null
      * @return: void
      * @author: xl
      * @date: 2021/9/28
      **/
-    private void softRefresh(String key) {
+    private void softRefresh(String key, CacheWrapper wrapper) {
+        SecondaryCacheConfig secondaryCacheConfig = layeringCacheConfig.getSecondaryCacheConfig();
         redisClient.tryLock(RedissonLockClient.getTermRedisLockPrefix(key), 100, 50, TimeUnit.MILLISECONDS, () -> {
-            redisClient.expire(key, layeringCacheConfig.getSecondaryCacheConfig().getExpiration(), TimeUnit.MILLISECONDS);
+            if (wrapper != null) {
+                ((RedisCache) secondCache).put(key, wrapper.getValue(), wrapper.getDelta());
+            } else {
+                redisClient.expire(((RedisCache) secondCache).getRedisKey(key), secondaryCacheConfig.getTimeUnit().toMillis(secondaryCacheConfig.getExpiration()), TimeUnit.MILLISECONDS);
+            }
         });
     }
 
@@ -266,10 +1038,12 @@ public class LayeringCache extends AbstractValueAdaptingCache {
             try {
                 /**查询数据库*/
                 Object loadResult = loaderAndPutValue(key, valueLoader);
+                // 唤醒等待同一把锁的线程
+                awaitThreadContainer.signalAll(key, toStoreValue(loadResult));
                 if (loadResult != result) {
                     /**更新一级缓存*/
                     //todo 更新其它服务器一级缓存 ，通过 mq
-                    firstCache.putIfAbsent(key, loadResult, resultType);
+                    firstCache.put(key, loadResult);
                     /**todo 通知其它服务器，更新本地缓存，进行续期*/
                     notifyUpdateFirstCache(key, loadResult, redisClient);
                 }
@@ -281,6 +1055,72 @@ public class LayeringCache extends AbstractValueAdaptingCache {
     }
 
 
+    /**
+     * 异步执行刷新，不占用刷新线程等待加载结果
+     *
+     * @param key
+     * @param valueLoader 异步加载器
+     * @param result      缓存结果
+     * @param wrapper     二级缓存包装值，TTL模式下为null
+     * @return: java.util.concurrent.CompletableFuture<java.lang.Void>
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    private <T> CompletableFuture<Void> doRefreshAsync(String key, CacheFunctionWithParamReturn<CompletableFuture<T>, String> valueLoader, Object result, CacheWrapper wrapper) {
+        if (!layeringCacheConfig.getSecondaryCacheConfig().isForceRefresh()) {
+            if (LoggerHelper.isDebugEnabled()) {
+                log.info("缓存名称={},redis缓存 key={} 异步软刷新缓存模式", getCacheName(), key);
+            }
+            return softRefreshAsync(key, wrapper);
+        }
+        if (LoggerHelper.isDebugEnabled()) {
+            log.info("缓存名称={},redis缓存 key={} 异步强刷新缓存模式", getCacheName(), key);
+        }
+        return forceRefreshAsync(key, valueLoader, result);
+    }
+
+    /**
+     * 异步软刷新，锁的持有者用lockId标识
+     */
+    private CompletableFuture<Void> softRefreshAsync(String key, CacheWrapper wrapper) {
+        SecondaryCacheConfig secondaryCacheConfig = layeringCacheConfig.getSecondaryCacheConfig();
+        String lockKey = RedissonLockClient.getTermRedisLockPrefix(key);
+        long lockId = ThreadLocalRandom.current().nextLong();
+        return redisClient.tryLockAsync(lockKey, 100, 50, TimeUnit.MILLISECONDS, lockId).thenCompose(lockSuccess -> {
+            if (!lockSuccess) {
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> future = wrapper != null
+                    ? ((RedisCache) secondCache).putAsync(key, wrapper.getValue(), wrapper.getDelta())
+                    : redisClient.expireAsync(((RedisCache) secondCache).getRedisKey(key), secondaryCacheConfig.getTimeUnit().toMillis(secondaryCacheConfig.getExpiration()), TimeUnit.MILLISECONDS)
+                    .thenApply(success -> null);
+            return future.whenComplete((v, throwable) -> redisClient.unlockAsync(lockKey, lockId));
+        });
+    }
+
+    /**
+     * 异步硬刷新(执行查数据库)，锁的持有者用lockId标识
+     */
+    private <T> CompletableFuture<Void> forceRefreshAsync(String key, CacheFunctionWithParamReturn<CompletableFuture<T>, String> valueLoader, Object result) {
+        String lockKey = RedissonLockClient.getExecuteDbLockKey(key);
+        long lockId = ThreadLocalRandom.current().nextLong();
+        return redisClient.tryLockAsync(lockKey, 100, 10 * 1000, TimeUnit.MILLISECONDS, lockId).thenCompose(lockSuccess -> {
+            if (!lockSuccess) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return loaderAndPutValueAsync(key, valueLoader).thenCompose(loadResult -> {
+                // 唤醒等待同一把锁的线程
+                awaitThreadContainer.signalAll(key, toStoreValue(loadResult));
+                if (loadResult == result) {
+                    return CompletableFuture.<Void>completedFuture(null);
+                }
+                /**更新一级缓存，通知其它服务器更新一级缓存*/
+                firstCache.put(key, loadResult);
+                return notifyUpdateFirstCacheAsync(key, loadResult, redisClient);
+            }).whenComplete((v, throwable) -> redisClient.unlockAsync(lockKey, lockId));
+        });
+    }
+
     /**
      * 加载并将数据放到redis缓存
      *
@@ -295,7 +1135,13 @@ public class LayeringCache extends AbstractValueAdaptingCache {
         try {
             // 加载数据
             Object loadResult = valueLoader.invokeMethod(key);
-            secondCache.put(key, loadResult);
+            if (secondCache instanceof RedisCache) {
+                // 记录加载耗时，用于计算概率提前刷新
+                ((RedisCache) secondCache).put(key, loadResult, System.currentTimeMillis() - start);
+            } else {
+                secondCache.put(key, loadResult);
+            }
+            putBloomFilter(key, loadResult);
             if (LoggerHelper.isDebugEnabled()) {
                 log.info("缓存名称={},redis缓存 key={} 执行被缓存的方法，并将其放入缓存, 耗时：{}ms。数据:{}", getCacheName(), key, System.currentTimeMillis() - start, GSONUtil.toJson(loadResult));
             }
@@ -307,25 +1153,254 @@ public class LayeringCache extends AbstractValueAdaptingCache {
 
 
     /**
-     * 判断是否需要刷新缓存
+     * 异步加载并将数据放到redis缓存
      *
      * @param key
-     * @param preloadTime 预加载时间（经过计算后的时间）
-     * @return: boolean
+     * @param valueLoader 异步加载器
+     * @return: java.util.concurrent.CompletableFuture<T>
      * @author: xl
-     * @date: 2021/9/28
+     * @date: 2021/10/15
+     **/
+    private <T> CompletableFuture<T> loaderAndPutValueAsync(String key, CacheFunctionWithParamReturn<CompletableFuture<T>, String> valueLoader) {
+        long start = System.currentTimeMillis();
+        return invokeLoaderAsync(key, valueLoader).thenCompose(value -> {
+            long delta = System.currentTimeMillis() - start;
+            if (LoggerHelper.isDebugEnabled()) {
+                log.info("缓存名称={},redis缓存 key={} 异步执行被缓存的方法, 耗时：{}ms。数据:{}", getCacheName(), key, delta, GSONUtil.toJson(value));
+            }
+            putBloomFilter(key, value);
+            // 记录加载耗时，用于计算概率提前刷新
+            CompletableFuture<Void> putFuture = secondCache instanceof RedisCache
+                    ? ((RedisCache) secondCache).putAsync(key, value, delta) : secondCache.putAsync(key, value);
+            return putFuture.thenApply(v -> value);
+        });
+    }
+
+    /**
+     * 异步执行加载器，加载器抛出的异常和异步加载失败都转换成 {@link LoaderCacheValueException}
+     */
+    private <T> CompletableFuture<T> invokeLoaderAsync(String key, CacheFunctionWithParamReturn<CompletableFuture<T>, String> valueLoader) {
+        CompletableFuture<T> loadFuture;
+        try {
+            loadFuture = valueLoader.invokeMethod(key);
+        } catch (Exception e) {
+            loadFuture = new CompletableFuture<>();
+            loadFuture.completeExceptionally(e);
+        }
+        return loadFuture.handle((value, throwable) -> {
+            if (throwable != null) {
+                throw new LoaderCacheValueException(key, throwable);
+            }
+            return value;
+        });
+    }
+
+
+    /**
+     * 批量加载并将数据放到redis缓存和一级缓存，加载不到的key在redis中缓存空值
+     *
+     * @param keys
+     * @param resultType
+     * @param batchLoader
+     * @return: java.util.Map<java.lang.String, T>
+     * @author: xl
+     * @date: 2021/10/14
      **/
-    private boolean isRefresh(String key, long preloadTime) {
+    private <T> Map<String, T> loaderAndPutValues(Collection<String> keys, Class<T> resultType, CacheFunctionWithParamReturn<Map<String, T>, Collection<String>> batchLoader) {
+        long start = System.currentTimeMillis();
+        Map<String, T> loadValues;
+        try {
+            loadValues = batchLoader.invokeMethod(keys);
+        } catch (Exception e) {
+            throw new LoaderCacheValueException(keys.toString(), e);
+        }
+        Map<String, T> result = new HashMap<>(keys.size());
+        Map<String, Object> storeValues = new HashMap<>(keys.size());
+        for (String key : keys) {
+            T value = loadValues == null ? null : loadValues.get(key);
+            storeValues.put(key, value);
+            if (value != null) {
+                result.put(key, value);
+                firstCache.putIfAbsent(key, value, resultType);
+                putBloomFilter(key, value);
+            }
+        }
+        secondCache.putAll(storeValues);
+        if (LoggerHelper.isDebugEnabled()) {
+            log.info("缓存名称={},redis缓存 keys={} 批量执行被缓存的方法，并将其放入缓存, 耗时：{}ms", getCacheName(), keys, System.currentTimeMillis() - start);
+        }
+        return result;
+    }
 
-        // 获取锁之后再判断一下过期时间，看是否需要加载数据
-        Long ttl = redisClient.getExpire(key);
+
+    /**
+     * 查询一级缓存，记录热点key的访问和一级缓存未命中，返回存储值
+     */
+    private Object getFirstCache(String key, Class<?> resultType) {
+        recordHotKey(HotKeyType.ACCESS, key);
+        Object result = firstCache.get(key, resultType);
+        if (LoggerHelper.isDebugEnabled()) {
+            log.info("缓存名称={},查询一级缓存。 key={},返回值是:{}", getCacheName(), key, GSONUtil.toJson(result));
+        }
+        if (result == null) {
+            recordHotKey(HotKeyType.FIRST_CACHE_MISS, key);
+        }
+        return result;
+    }
+
+    /**
+     * 二级缓存的数据放到一级缓存，空值放到一级缓存的空值缓存中，一级缓存不会比二级缓存更晚失效
+     */
+    private <T> T fillFirstCache(String key, Class<T> resultType, Object storeValue, long ttl) {
+        firstCache.putIfAbsent(key, storeValue, resultType, ttl);
+        if (LoggerHelper.isDebugEnabled()) {
+            log.info("缓存名称={},查询二级缓存,并将数据放到一级缓存。 key={},返回值是:{}", getCacheName(), key, GSONUtil.toJson(storeValue));
+        }
+        return (T) fromStoreValue(storeValue);
+    }
+
+    /**
+     * 查询二级缓存，概率提前刷新模式下读取包装值，其它模式一次请求获取值和剩余生存时间
+     */
+    private SecondValue readSecond(String key, Class<?> resultType) {
+        if (isProbabilisticRefresh()) {
+            return new SecondValue(((RedisCache) secondCache).getWrapper(key, resultType));
+        }
+        return new SecondValue(getSecondWithTtl(key, resultType));
+    }
+
+    /**
+     * 异步查询二级缓存，和 {@link #readSecond(String, Class)} 读取的内容相同
+     */
+    private CompletableFuture<SecondValue> readSecondAsync(String key, Class<?> resultType) {
+        if (isProbabilisticRefresh()) {
+            return ((RedisCache) secondCache).getWrapperAsync(key, resultType).thenApply(SecondValue::new);
+        }
+        return getSecondWithTtlAsync(key, resultType).thenApply(SecondValue::new);
+    }
+
+    /**
+     * 查询二级缓存的存储值和剩余生存时间，二级缓存不是redis时剩余生存时间为0（按一级缓存有效时间）
+     */
+    private TtlValue<Object> getSecondWithTtl(String key, Class<?> resultType) {
+        if (secondCache instanceof RedisCache) {
+            return ((RedisCache) secondCache).getWithTtl(key, resultType);
+        }
+        return new TtlValue<>(secondCache.get(key, resultType), 0);
+    }
+
+    /**
+     * 异步查询二级缓存的存储值和剩余生存时间
+     */
+    private CompletableFuture<TtlValue<Object>> getSecondWithTtlAsync(String key, Class<?> resultType) {
+        if (secondCache instanceof RedisCache) {
+            return ((RedisCache) secondCache).getWithTtlAsync(key, resultType);
+        }
+        return secondCache.getAsync(key, resultType).thenApply(value -> new TtlValue<>(value, 0));
+    }
+
+    /**
+     * 批量查询二级缓存的存储值和剩余生存时间，不存在的key不会出现在结果中
+     */
+    private Map<String, TtlValue<Object>> getAllSecondWithTtl(Collection<String> keys, Class<?> resultType) {
+        if (secondCache instanceof RedisCache) {
+            return ((RedisCache) secondCache).getAllWithTtl(keys, resultType);
+        }
+        Map<String, TtlValue<Object>> result = new HashMap<>(keys.size());
+        secondCache.getAll(keys, resultType, null).forEach((key, value) -> result.put(key, new TtlValue<>(value, 0)));
+        return result;
+    }
+
+    /**
+     * 刚写入二级缓存的数据的有效时间，毫秒，二级缓存不是redis时为0
+     */
+    private long getSecondCacheExpiration(Object value) {
+        return secondCache instanceof RedisCache ? ((RedisCache) secondCache).getExpirationMillis(value) : 0;
+    }
+
+    /**
+     * 是否是概率提前刷新模式
+     */
+    private boolean isProbabilisticRefresh() {
+        return RefreshMode.PROBABILISTIC.equals(layeringCacheConfig.getSecondaryCacheConfig().getRefreshMode())
+                && secondCache instanceof RedisCache;
+    }
+
+
+    /**
+     * 根据剩余生存时间判断是否需要刷新缓存
+     *
+     * @param ttl         剩余生存时间，毫秒，-2表示key不存在
+     * @param preloadTime 预刷新时间，毫秒
+     * @return: boolean
+     * @author: xl
+     * @date: 2021/10/16
+     **/
+    private boolean isRefresh(long ttl, long preloadTime) {
         // -2表示key不存在
-        if (ttl == null || ttl == -2) {
+        if (ttl == TtlValue.NOT_EXIST) {
             return true;
         }
         // 当前缓存时间小于刷新时间就需要刷新缓存
-        return ttl > 0 && TimeUnit.SECONDS.toMillis(ttl) <= preloadTime;
+        return ttl > 0 && ttl <= preloadTime;
+    }
+
+    /**
+     * 获取预刷新时间，毫秒
+     *
+     * @param result 存储值
+     * @return: long
+     * @author: xl
+     * @date: 2021/10/16
+     **/
+    private long getPreloadMillis(Object result) {
+        SecondaryCacheConfig secondaryCacheConfig = layeringCacheConfig.getSecondaryCacheConfig();
+        /**缓存主动在失效前强制刷新缓存的时间*/
+        long preload = secondaryCacheConfig.getTimeUnit().toMillis(secondaryCacheConfig.getPreloadTime());
+        // 允许缓存NULL值，则自动刷新时间也要除以倍数
+        if (result instanceof NullValue || result == null) {
+            if (secondaryCacheConfig.getNullValueExpiration() > 0 && secondaryCacheConfig.getExpiration() > 0) {
+                // 配置了空值有效时间，按空值有效时间和有效时间的比例缩短
+                preload = preload * secondaryCacheConfig.getNullValueExpiration() / secondaryCacheConfig.getExpiration();
+            } else {
+                preload = preload / Math.max(1, secondaryCacheConfig.getMagnification());
+            }
+        }
+        return preload;
     }
 
 
+    /**
+     * 二级缓存读取结果
+     */
+    private static final class SecondValue {
+
+        /**
+         * 存储值，不存在时为null
+         */
+        private final Object value;
+
+        /**
+         * 剩余生存时间，毫秒
+         */
+        private final long ttl;
+
+        /**
+         * 概率提前刷新模式下的包装值，其它模式为null
+         */
+        private final CacheWrapper wrapper;
+
+        private SecondValue(TtlValue<Object> ttlValue) {
+            this.value = ttlValue.getValue();
+            this.ttl = ttlValue.getTtl();
+            this.wrapper = null;
+        }
+
+        private SecondValue(CacheWrapper wrapper) {
+            this.value = wrapper == null ? null : wrapper.getValue();
+            this.ttl = wrapper == null ? 0 : wrapper.getTtl();
+            this.wrapper = wrapper;
+        }
+    }
+
 }
@@ -2,15 +2,32 @@ package com.xul.core.cache.caffine;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Policy;
 import com.xul.core.cache.AbstractValueAdaptingCache;
 import com.xul.core.config.FirstCacheConfig;
 import com.xul.core.exception.LoaderCacheValueException;
 import com.xul.core.function.CacheFunctionWithParamReturn;
 import com.xul.core.logger.LoggerHelper;
+import com.xul.core.redis.serializer.ProtostuffRedisSerializer;
+import com.xul.core.redis.serializer.RedisSerializer;
 import com.xul.core.supports.ExpireMode;
+import com.xul.core.supports.NullValue;
+import com.xul.core.supports.TtlValue;
 import com.xul.core.utils.GSONUtil;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
 /**
  * 基于caffeine实现的一级缓存
  *
@@ -21,12 +38,63 @@ import lombok.extern.slf4j.Slf4j;
 public class CaffeineCache extends AbstractValueAdaptingCache {
 
 
+    /**
+     * 计算权重用的序列化器
+     */
+    private static final RedisSerializer WEIGHT_SERIALIZER = new ProtostuffRedisSerializer();
+
+    /**
+     * 序列化失败时的默认值权重，字节
+     */
+    private static final int DEFAULT_VALUE_WEIGHT = 1024;
+
     private final Cache<Object, Object> cache;
 
+    /**
+     * 空值缓存，和正常数据分开存放，使用单独的容量和有效时间，空值不会挤掉正常数据
+     */
+    private final Cache<Object, Object> nullValueCache;
+
+    /**
+     * 缓存过期策略，开启过期数据宽限期时用于计算数据年龄，否则为null
+     */
+    private final Policy.Expiration<Object, Object> expiration;
+
+    /**
+     * VARIABLE失效模式的过期策略，开启过期数据宽限期时用于计算剩余有效时间，否则为null
+     */
+    private final Policy.VarExpiration<Object, Object> varExpiration;
+
+    /**
+     * 过期数据宽限期，毫秒
+     */
+    private final long staleGraceMillis;
+
+    /**
+     * 逻辑过期时间，纳秒，数据年龄超过该值视为过期，但在宽限期内保留
+     */
+    private final long logicalExpireNanos;
+
+    /**
+     * VARIABLE失效模式下一级缓存的最大有效时间，毫秒
+     */
+    private final long maxExpireMillis;
+
+    /**
+     * 固定的热点key，不受容量淘汰，按各自的过期时间失效
+     */
+    private final Map<String, PinnedValue> pinnedCache = new ConcurrentHashMap<>();
+
 
     public CaffeineCache(String cacheName, FirstCacheConfig firstCacheConfig) {
         super(cacheName);
         this.cache = getCache(firstCacheConfig);
+        this.nullValueCache = getNullValueCache(firstCacheConfig);
+        this.logicalExpireNanos = firstCacheConfig.getTimeUnit().toNanos(firstCacheConfig.getExpireTime());
+        this.maxExpireMillis = firstCacheConfig.getTimeUnit().toMillis(firstCacheConfig.getExpireTime());
+        this.staleGraceMillis = firstCacheConfig.getTimeUnit().toMillis(Math.max(0, firstCacheConfig.getStaleGracePeriod()));
+        this.expiration = getExpiration(firstCacheConfig);
+        this.varExpiration = firstCacheConfig.getStaleGracePeriod() > 0 ? cache.policy().expireVariably().orElse(null) : null;
     }
 
     /**
@@ -40,20 +108,78 @@ public class CaffeineCache extends AbstractValueAdaptingCache {
     private Cache<Object, Object> getCache(FirstCacheConfig firstCacheConfig) {
         Caffeine<Object, Object> builder = Caffeine.newBuilder();
         builder.initialCapacity(firstCacheConfig.getInitialCapacity());
-        builder.maximumSize(firstCacheConfig.getMaximumSize());
-        /**软引用，内存不够时gc回收*/
-        builder.softValues();
+        if (firstCacheConfig.getMaximumWeight() > 0) {
+            /**按序列化后的字节数淘汰，淘汰时机不依赖gc，不使用软引用*/
+            builder.maximumWeight(firstCacheConfig.getMaximumWeight());
+            builder.weigher(this::weigh);
+        } else {
+            builder.maximumSize(firstCacheConfig.getMaximumSize());
+            /**软引用，内存不够时gc回收*/
+            builder.softValues();
+        }
+        // 过期数据在宽限期内保留，用于redis不可用时降级读取
+        expire(builder, firstCacheConfig, firstCacheConfig.getExpireTime() + Math.max(0, firstCacheConfig.getStaleGracePeriod()));
+        return builder.build();
+    }
+
+    /**
+     * 构造空值缓存对象
+     *
+     * @param firstCacheConfig 一级缓存配置
+     * @return: com.github.benmanes.caffeine.cache.Cache<java.lang.Object, java.lang.Object>
+     * @author: xl
+     * @date: 2021/10/17
+     **/
+    private Cache<Object, Object> getNullValueCache(FirstCacheConfig firstCacheConfig) {
+        int maximumSize = firstCacheConfig.getNullValueMaximumSize() > 0 ? firstCacheConfig.getNullValueMaximumSize()
+                : Math.max(1, firstCacheConfig.getMaximumSize() / 10);
+        int expireTime = firstCacheConfig.getNullValueExpireTime() > 0 ? firstCacheConfig.getNullValueExpireTime()
+                : firstCacheConfig.getExpireTime();
+        Caffeine<Object, Object> builder = Caffeine.newBuilder();
+        builder.initialCapacity(Math.min(firstCacheConfig.getInitialCapacity(), maximumSize));
+        builder.maximumSize(maximumSize);
+        expire(builder, firstCacheConfig, expireTime);
+        return builder.build();
+    }
+
+    /**
+     * 获取过期策略，用于计算数据年龄
+     */
+    private Policy.Expiration<Object, Object> getExpiration(FirstCacheConfig firstCacheConfig) {
+        if (firstCacheConfig.getStaleGracePeriod() <= 0) {
+            return null;
+        }
         if (ExpireMode.WRITE.equals(firstCacheConfig.getExpireMode())) {
-            builder.expireAfterWrite(firstCacheConfig.getExpireTime(), firstCacheConfig.getTimeUnit());
+            return cache.policy().expireAfterWrite().orElse(null);
         } else if (ExpireMode.ACCESS.equals(firstCacheConfig.getExpireMode())) {
-            builder.expireAfterAccess(firstCacheConfig.getExpireTime(), firstCacheConfig.getTimeUnit());
+            return cache.policy().expireAfterAccess().orElse(null);
+        }
+        return null;
+    }
+
+    /**
+     * 设置失效模式
+     */
+    private void expire(Caffeine<Object, Object> builder, FirstCacheConfig firstCacheConfig, int expireTime) {
+        if (ExpireMode.WRITE.equals(firstCacheConfig.getExpireMode())) {
+            builder.expireAfterWrite(expireTime, firstCacheConfig.getTimeUnit());
+        } else if (ExpireMode.ACCESS.equals(firstCacheConfig.getExpireMode())) {
+            builder.expireAfterAccess(expireTime, firstCacheConfig.getTimeUnit());
+        } else if (ExpireMode.VARIABLE.equals(firstCacheConfig.getExpireMode())) {
+            builder.expireAfter(new VariableExpiry(firstCacheConfig.getTimeUnit().toNanos(expireTime)));
         }
-        return builder.build();
     }
 
     @Override
     public <T> T get(String key, Class<T> resultType) {
-        Object result = cache.getIfPresent(key);
+        Object result = getPinned(key);
+        // 已逻辑过期的数据不返回，先判断年龄，避免ACCESS模式下读取刷新访问时间
+        if (result == null) {
+            result = isLogicallyExpired(key) ? null : cache.getIfPresent(key);
+        }
+        if (result == null) {
+            result = nullValueCache.getIfPresent(key);
+        }
         if (result != null) {
             if (LoggerHelper.isDebugEnabled()) {
                 log.info("缓存名称={},caffine 获取缓存 key={},result={}",getCacheName(), key, result);
@@ -66,27 +192,178 @@ public class CaffeineCache extends AbstractValueAdaptingCache {
 
     @Override
     public <T> T get(String key, Class<T> resultType, CacheFunctionWithParamReturn<T, String> valueLoader) {
-        Object result = this.cache.get(key, k -> loaderValue(key, valueLoader));
-
+        Object result = getPinned(key);
+        if (result == null) {
+            result = nullValueCache.getIfPresent(key);
+        }
+        if (result == null && isLogicallyExpired(key)) {
+            result = loaderValue(key, valueLoader);
+            put(key, result);
+        } else if (result == null) {
+            result = this.cache.get(key, k -> loaderValue(key, valueLoader));
+            moveToNullValueCache(key, result);
+        }
         return (T) fromStoreValue(result);
     }
 
 
+    /**
+     * 批量获取一级缓存，返回的是存储值（空值为 {@link com.xul.core.supports.NullValue}），由调用方转换
+     */
+    @Override
+    public <T> Map<String, T> getAll(Collection<String> keys, Class<T> resultType, CacheFunctionWithParamReturn<Map<String, T>, Collection<String>> batchLoader) {
+        Map<Object, Object> result = new HashMap<>(cache.getAllPresent(keys));
+        result.keySet().removeIf(this::isLogicallyExpired);
+        result.putAll(nullValueCache.getAllPresent(keys));
+        for (String key : keys) {
+            Object pinnedValue = getPinned(key);
+            if (pinnedValue != null) {
+                result.put(key, pinnedValue);
+            }
+        }
+        if (batchLoader != null && result.size() < keys.size()) {
+            Collection<String> missKeys = new ArrayList<>();
+            keys.forEach(key -> {
+                if (!result.containsKey(key)) {
+                    missKeys.add(key);
+                }
+            });
+            Map<Object, Object> loadValues = loaderValues(missKeys, batchLoader);
+            loadValues.forEach((key, value) -> put((String) key, value));
+            result.putAll(loadValues);
+        }
+        Map<String, T> values = new HashMap<>(result.size());
+        result.forEach((key, value) -> values.put((String) key, (T) value));
+        return values;
+    }
+
+
     @Override
     public void put(String key, Object value) {
-        cache.put(key, value);
+        Object storeValue = toStoreValue(value);
+        if (storeValue instanceof NullValue) {
+            pinnedCache.remove(key);
+            cache.invalidate(key);
+            nullValueCache.put(key, storeValue);
+        } else if (pinnedCache.computeIfPresent(key, (k, pinned) -> new PinnedValue(storeValue, pinned.expireTime)) != null) {
+            /**固定的key直接更新固定值，保持原来的过期时间*/
+            nullValueCache.invalidate(key);
+        } else {
+            nullValueCache.invalidate(key);
+            cache.put(key, storeValue);
+        }
+    }
 
+    @Override
+    public void putAll(Map<String, ?> values) {
+        values.forEach(this::put);
     }
 
     @Override
     public <T> T putIfAbsent(String key, Object value, Class<T> resultType) {
-        Object result = cache.get(key, k -> value);
-        return (T) result;
+        Object result = get(key, resultType);
+        if (result != null || value == null) {
+            return (T) result;
+        }
+        if (value instanceof NullValue) {
+            return (T) nullValueCache.get(key, k -> value);
+        }
+        if (isLogicallyExpired(key)) {
+            put(key, value);
+            return (T) value;
+        }
+        return (T) cache.get(key, k -> value);
+    }
+
+    /**
+     * VARIABLE失效模式下按指定的剩余有效时间放入缓存，不超过一级缓存有效时间；正常数据另加宽限期，剩余时间进入宽限期后视为逻辑过期
+     */
+    @Override
+    public <T> T putIfAbsent(String key, Object value, Class<T> resultType, long ttl) {
+        Cache<Object, Object> target = value instanceof NullValue ? nullValueCache : cache;
+        Optional<Policy.VarExpiration<Object, Object>> varExpiration = target.policy().expireVariably();
+        if (ttl <= 0 || !varExpiration.isPresent()) {
+            return putIfAbsent(key, value, resultType);
+        }
+        Object result = get(key, resultType);
+        if (result != null || value == null) {
+            return (T) result;
+        }
+        /**检查和写入之间可能有更新消息或本地写入，原子写入，不能覆盖更新的数据*/
+        long duration = variableDuration(target, ttl);
+        if (varExpiration.get().putIfAbsent(key, value, duration, TimeUnit.MILLISECONDS)) {
+            return (T) value;
+        }
+        /**已有的是逻辑过期的数据时原子替换，替换前被并发写入时保留并发写入的数据*/
+        Object current = target.getIfPresent(key);
+        if (current != null && target == cache && isLogicallyExpired(key) && cache.asMap().replace(key, current, value)) {
+            varExpiration.get().setExpiresAfter(key, duration, TimeUnit.MILLISECONDS);
+            return (T) value;
+        }
+        return (T) (current != null ? current : value);
+    }
+
+    /**
+     * VARIABLE失效模式下按指定的剩余有效时间放入缓存，不超过一级缓存有效时间；固定的key保持原来的过期时间
+     */
+    @Override
+    public void put(String key, Object value, long ttl) {
+        Object storeValue = toStoreValue(value);
+        Cache<Object, Object> target = storeValue instanceof NullValue ? nullValueCache : cache;
+        Optional<Policy.VarExpiration<Object, Object>> varExpiration = target.policy().expireVariably();
+        if (ttl <= 0 || !varExpiration.isPresent() || pinnedCache.containsKey(key)) {
+            put(key, value);
+            return;
+        }
+        if (target == cache) {
+            nullValueCache.invalidate(key);
+        } else {
+            cache.invalidate(key);
+        }
+        varExpiration.get().put(key, storeValue, variableDuration(target, ttl), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * VARIABLE失效模式下的有效时间，毫秒，不超过一级缓存有效时间，正常数据另加宽限期
+     */
+    private long variableDuration(Cache<Object, Object> target, long ttl) {
+        return Math.min(ttl, maxExpireMillis) + (target == cache ? staleGraceMillis : 0);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> getAsync(String key, Class<T> resultType) {
+        return CompletableFuture.completedFuture(get(key, resultType));
+    }
+
+    @Override
+    public <T> CompletableFuture<T> getAsync(String key, Class<T> resultType, CacheFunctionWithParamReturn<CompletableFuture<T>, String> valueLoader) {
+        Object result = get(key, resultType);
+        if (result != null) {
+            return CompletableFuture.completedFuture((T) fromStoreValue(result));
+        }
+        return valueLoader.invokeMethod(key).thenApply(value -> {
+            put(key, value);
+            return value;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> putAsync(String key, Object value) {
+        put(key, value);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> evictAsync(String key) {
+        evict(key);
+        return CompletableFuture.completedFuture(null);
     }
 
     @Override
     public void evict(String key) {
+        pinnedCache.remove(key);
         cache.invalidate(key);
+        nullValueCache.invalidate(key);
         if (LoggerHelper.isDebugEnabled()) {
             log.info("caffine 移除缓存 key={}", key);
         }
@@ -97,7 +374,209 @@ public class CaffeineCache extends AbstractValueAdaptingCache {
         if (LoggerHelper.isDebugEnabled()) {
             log.info("caffine 清空缓存");
         }
+        pinnedCache.clear();
         cache.invalidateAll();
+        nullValueCache.invalidateAll();
+    }
+
+    @Override
+    public <T> T getStale(String key, Class<T> resultType) {
+        PinnedValue pinned = pinnedCache.get(key);
+        Object result = pinned != null ? pinned.value : cache.getIfPresent(key);
+        if (result == null) {
+            result = nullValueCache.getIfPresent(key);
+        }
+        return (T) result;
+    }
+
+    /**
+     * 获取最热的缓存数据，不包括空值和已逻辑过期的数据
+     */
+    @Override
+    public Map<String, TtlValue<Object>> hottest(int limit) {
+        Map<String, TtlValue<Object>> result = new LinkedHashMap<>();
+        cache.policy().eviction().ifPresent(eviction -> eviction.hottest(limit).forEach((key, value) -> {
+            long ttl = remainingTtl(key);
+            if (ttl != 0 && !(value instanceof NullValue)) {
+                result.put((String) key, new TtlValue<>(value, ttl));
+            }
+        }));
+        return result;
+    }
+
+    /**
+     * 缓存数量
+     */
+    public long getEstimatedSize() {
+        return cache.estimatedSize() + nullValueCache.estimatedSize() + pinnedCache.size();
+    }
+
+    @Override
+    public boolean pin(String key, Object value, long ttl) {
+        Object storeValue = toStoreValue(value);
+        if (storeValue instanceof NullValue) {
+            return false;
+        }
+        pinnedCache.put(key, new PinnedValue(storeValue, ttl > 0 ? System.currentTimeMillis() + ttl : 0));
+        cache.invalidate(key);
+        nullValueCache.invalidate(key);
+        if (LoggerHelper.isDebugEnabled()) {
+            log.info("缓存名称={},caffine 固定热点key={}", getCacheName(), key);
+        }
+        return true;
+    }
+
+    @Override
+    public void unpin(String key) {
+        PinnedValue pinned = pinnedCache.remove(key);
+        if (pinned != null && !pinned.isExpired()) {
+            cache.put(key, pinned.value);
+        }
+        if (LoggerHelper.isDebugEnabled()) {
+            log.info("缓存名称={},caffine 解除固定热点key={}", getCacheName(), key);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getPinnedKeys() {
+        Map<String, Long> result = new HashMap<>(pinnedCache.size());
+        pinnedCache.forEach((key, pinned) -> result.put(key, pinned.expireTime));
+        return result;
+    }
+
+    /**
+     * 缓存占用的字节数（按序列化后的大小估算），没有开启 maximumWeight 时返回-1
+     */
+    public long getWeightedSize() {
+        return cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(-1))
+                .orElse(-1L);
+    }
+
+    /**
+     * 计算缓存条目权重，key按每个字符2字节，值按序列化后的字节数
+     */
+    private int weigh(Object key, Object value) {
+        long weight = ((String) key).length() * 2L;
+        try {
+            weight += WEIGHT_SERIALIZER.serialize(value).length;
+        } catch (Exception e) {
+            log.warn("缓存名称={},caffine 计算缓存权重异常 key={}：{}", getCacheName(), key, e.getMessage());
+            weight += DEFAULT_VALUE_WEIGHT;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, weight);
+    }
+
+    /**
+     * 数据是否已逻辑过期（在宽限期内），VARIABLE失效模式按剩余有效时间判断，其它模式按数据年龄判断
+     */
+    private boolean isLogicallyExpired(Object key) {
+        if (varExpiration != null) {
+            OptionalLong remaining = varExpiration.getExpiresAfter(key, TimeUnit.MILLISECONDS);
+            return remaining.isPresent() && remaining.getAsLong() <= staleGraceMillis;
+        }
+        if (expiration == null) {
+            return false;
+        }
+        OptionalLong age = expiration.ageOf(key, TimeUnit.NANOSECONDS);
+        return age.isPresent() && age.getAsLong() >= logicalExpireNanos;
+    }
+
+    /**
+     * 获取未过期的固定值，已过期的移除
+     */
+    private Object getPinned(String key) {
+        PinnedValue pinned = pinnedCache.get(key);
+        if (pinned == null) {
+            return null;
+        }
+        if (pinned.isExpired()) {
+            pinnedCache.remove(key, pinned);
+            return null;
+        }
+        return pinned.value;
+    }
+
+    /**
+     * 数据剩余有效时间，毫秒，不过期返回-1，已过期或不存在返回0
+     */
+    private long remainingTtl(Object key) {
+        Optional<Policy.VarExpiration<Object, Object>> varExpiration = cache.policy().expireVariably();
+        if (varExpiration.isPresent()) {
+            // 宽限期内的数据已逻辑过期
+            return Math.max(0, varExpiration.get().getExpiresAfter(key, TimeUnit.MILLISECONDS).orElse(0) - staleGraceMillis);
+        }
+        Optional<Policy.Expiration<Object, Object>> fixedExpiration = cache.policy().expireAfterWrite();
+        if (!fixedExpiration.isPresent()) {
+            fixedExpiration = cache.policy().expireAfterAccess();
+        }
+        if (!fixedExpiration.isPresent()) {
+            return TtlValue.NO_EXPIRE;
+        }
+        OptionalLong age = fixedExpiration.get().ageOf(key, TimeUnit.NANOSECONDS);
+        if (!age.isPresent()) {
+            return 0;
+        }
+        long expireNanos = expiration != null ? logicalExpireNanos : fixedExpiration.get().getExpiresAfter(TimeUnit.NANOSECONDS);
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expireNanos - age.getAsLong()));
+    }
+
+    /**
+     * 固定的缓存值
+     */
+    private static final class PinnedValue {
+        private final Object value;
+
+        /**
+         * 过期时间，毫秒时间戳，0表示不过期
+         */
+        private final long expireTime;
+
+        private PinnedValue(Object value, long expireTime) {
+            this.value = value;
+            this.expireTime = expireTime;
+        }
+
+        private boolean isExpired() {
+            return expireTime > 0 && System.currentTimeMillis() >= expireTime;
+        }
+    }
+
+    /**
+     * VARIABLE失效模式，写入时按一级缓存有效时间失效，读取不改变剩余有效时间；
+     * 从二级缓存读取的数据通过 {@link Policy.VarExpiration} 指定剩余有效时间
+     */
+    private static final class VariableExpiry implements Expiry<Object, Object> {
+
+        private final long expireNanos;
+
+        private VariableExpiry(long expireNanos) {
+            this.expireNanos = expireNanos;
+        }
+
+        @Override
+        public long expireAfterCreate(Object key, Object value, long currentTime) {
+            return expireNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+            return expireNanos;
+        }
+
+        @Override
+        public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    /**
+     * 加载得到的空值从正常数据缓存移到空值缓存
+     */
+    private void moveToNullValueCache(Object key, Object storeValue) {
+        if (storeValue instanceof NullValue && cache.asMap().remove(key, storeValue)) {
+            nullValueCache.put(key, storeValue);
+        }
     }
 
     /**
@@ -116,4 +595,25 @@ public class CaffeineCache extends AbstractValueAdaptingCache {
 
     }
 
+    /**
+     * 批量加载数据，加载不到的key存储空值
+     */
+    private <T> Map<Object, Object> loaderValues(Iterable<?> missKeys, CacheFunctionWithParamReturn<Map<String, T>, Collection<String>> batchLoader) {
+        Collection<String> keys = new ArrayList<>();
+        missKeys.forEach(key -> keys.add((String) key));
+        try {
+            Map<String, T> loadValues = batchLoader.invokeMethod(keys);
+            Map<Object, Object> result = new HashMap<>(keys.size());
+            for (String key : keys) {
+                result.put(key, toStoreValue(loadValues == null ? null : loadValues.get(key)));
+            }
+            if (LoggerHelper.isDebugEnabled()) {
+                log.info("caffeine缓存 keys={} 从库批量加载缓存", keys);
+            }
+            return result;
+        } catch (Exception e) {
+            throw new LoaderCacheValueException(keys.toString(), e);
+        }
+    }
+
 }
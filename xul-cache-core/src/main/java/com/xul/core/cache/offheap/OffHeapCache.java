@@ -0,0 +1,470 @@
+package com.xul.core.cache.offheap;
+
+import com.xul.core.cache.AbstractValueAdaptingCache;
+import com.xul.core.config.FirstCacheConfig;
+import com.xul.core.exception.LoaderCacheValueException;
+import com.xul.core.function.CacheFunctionWithParamReturn;
+import com.xul.core.logger.LoggerHelper;
+import com.xul.core.redis.serializer.ProtostuffRedisSerializer;
+import com.xul.core.redis.serializer.RedisSerializer;
+import com.xul.core.redis.serializer.SerializationUtils;
+import com.xul.core.supports.ExpireMode;
+import com.xul.core.supports.NullValue;
+import com.xul.core.supports.TtlValue;
+import com.xul.core.utils.GSONUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 基于堆外内存实现的一级缓存
+ * <p>
+ * 缓存值序列化后存放在直接内存页中，堆上只保留key索引，大容量一级缓存不会进入老年代。
+ * key按hash分段，每段独立加锁，按LRU淘汰；单个值序列化后超过页大小（最大1M）不缓存
+ * </p>
+ *
+ * @author: xl
+ * @date: 2021/10/17
+ **/
+@Slf4j
+public class OffHeapCache extends AbstractValueAdaptingCache {
+
+    /**
+     * 分段数
+     */
+    private static final int SEGMENT_COUNT = 16;
+
+    /**
+     * 默认最大堆外内存，256M
+     */
+    private static final long DEFAULT_MAX_MEMORY = 256L * 1024 * 1024;
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    /**
+     * 值序列化器
+     */
+    private final RedisSerializer serializer = new ProtostuffRedisSerializer();
+
+    /**
+     * 缓存有效时间，纳秒，小于等于0不过期
+     */
+    private final long expireNanos;
+
+    /**
+     * 是否每访问一次重新计算有效时间
+     */
+    private final boolean expireAfterAccess;
+
+    /**
+     * 是否按二级缓存剩余有效时间失效
+     */
+    private final boolean variableExpire;
+
+    public OffHeapCache(String cacheName, FirstCacheConfig firstCacheConfig) {
+        super(cacheName);
+        this.expireNanos = firstCacheConfig.getTimeUnit().toNanos(firstCacheConfig.getExpireTime());
+        this.expireAfterAccess = ExpireMode.ACCESS.equals(firstCacheConfig.getExpireMode());
+        this.variableExpire = ExpireMode.VARIABLE.equals(firstCacheConfig.getExpireMode());
+        int maxEntries = Math.max(1, firstCacheConfig.getMaximumSize() / SEGMENT_COUNT);
+        long maxMemory = (firstCacheConfig.getOffHeapMaxMemory() > 0 ? firstCacheConfig.getOffHeapMaxMemory() : DEFAULT_MAX_MEMORY) / SEGMENT_COUNT;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(maxEntries, maxMemory);
+        }
+    }
+
+    @Override
+    public <T> T get(String key, Class<T> resultType) {
+        byte[] data = segmentFor(key).get(key);
+        if (data == null) {
+            return null;
+        }
+        T result = SerializationUtils.deserializeValue(serializer, data, resultType);
+        if (LoggerHelper.isDebugEnabled()) {
+            log.info("缓存名称={},offheap 获取缓存 key={},result={}", getCacheName(), key, result);
+        }
+        return result;
+    }
+
+    @Override
+    public <T> T get(String key, Class<T> resultType, CacheFunctionWithParamReturn<T, String> valueLoader) {
+        Object result = get(key, resultType);
+        if (result == null) {
+            try {
+                T value = valueLoader.invokeMethod(key);
+                if (LoggerHelper.isDebugEnabled()) {
+                    log.info("offheap缓存 key={} 从库加载缓存", key, GSONUtil.toJson(value));
+                }
+                result = toStoreValue(value);
+                put(key, result);
+            } catch (Exception e) {
+                throw new LoaderCacheValueException(key, e);
+            }
+        }
+        return (T) fromStoreValue(result);
+    }
+
+    /**
+     * 批量获取一级缓存，返回的是存储值（空值为 {@link com.xul.core.supports.NullValue}），由调用方转换
+     */
+    @Override
+    public <T> Map<String, T> getAll(Collection<String> keys, Class<T> resultType, CacheFunctionWithParamReturn<Map<String, T>, Collection<String>> batchLoader) {
+        Map<String, T> result = new HashMap<>(keys.size());
+        Collection<String> missKeys = new ArrayList<>();
+        for (String key : keys) {
+            T value = get(key, resultType);
+            if (value != null) {
+                result.put(key, value);
+            } else {
+                missKeys.add(key);
+            }
+        }
+        if (batchLoader != null && !missKeys.isEmpty()) {
+            Map<String, T> loadValues;
+            try {
+                loadValues = batchLoader.invokeMethod(missKeys);
+            } catch (Exception e) {
+                throw new LoaderCacheValueException(missKeys.toString(), e);
+            }
+            for (String key : missKeys) {
+                Object value = toStoreValue(loadValues == null ? null : loadValues.get(key));
+                put(key, value);
+                result.put(key, (T) value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void put(String key, Object value) {
+        byte[] data = SerializationUtils.serializeValue(serializer, toStoreValue(value));
+        segmentFor(key).put(key, data, expireNanos);
+    }
+
+    @Override
+    public void putAll(Map<String, ?> values) {
+        values.forEach(this::put);
+    }
+
+    @Override
+    public <T> T putIfAbsent(String key, Object value, Class<T> resultType) {
+        T result = get(key, resultType);
+        if (result != null || value == null) {
+            return result;
+        }
+        put(key, value);
+        return (T) value;
+    }
+
+    /**
+     * VARIABLE失效模式下按指定的剩余有效时间放入缓存，不超过一级缓存有效时间
+     */
+    @Override
+    public <T> T putIfAbsent(String key, Object value, Class<T> resultType, long ttl) {
+        if (!variableExpire || ttl <= 0) {
+            return putIfAbsent(key, value, resultType);
+        }
+        T result = get(key, resultType);
+        if (result != null || value == null) {
+            return result;
+        }
+        byte[] data = SerializationUtils.serializeValue(serializer, toStoreValue(value));
+        segmentFor(key).put(key, data, variableExpireNanos(ttl));
+        return (T) value;
+    }
+
+    /**
+     * VARIABLE失效模式下按指定的剩余有效时间放入缓存，不超过一级缓存有效时间
+     */
+    @Override
+    public void put(String key, Object value, long ttl) {
+        if (!variableExpire || ttl <= 0) {
+            put(key, value);
+            return;
+        }
+        byte[] data = SerializationUtils.serializeValue(serializer, toStoreValue(value));
+        segmentFor(key).put(key, data, variableExpireNanos(ttl));
+    }
+
+    /**
+     * 剩余有效时间换算成纳秒，不超过一级缓存有效时间
+     */
+    private long variableExpireNanos(long ttl) {
+        long ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttl);
+        return expireNanos > 0 ? Math.min(ttlNanos, expireNanos) : ttlNanos;
+    }
+
+    @Override
+    public void evict(String key) {
+        segmentFor(key).remove(key);
+        if (LoggerHelper.isDebugEnabled()) {
+            log.info("offheap 移除缓存 key={}", key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        if (LoggerHelper.isDebugEnabled()) {
+            log.info("offheap 清空缓存");
+        }
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<T> getAsync(String key, Class<T> resultType) {
+        return CompletableFuture.completedFuture(get(key, resultType));
+    }
+
+    @Override
+    public <T> CompletableFuture<T> getAsync(String key, Class<T> resultType, CacheFunctionWithParamReturn<CompletableFuture<T>, String> valueLoader) {
+        Object result = get(key, resultType);
+        if (result != null) {
+            return CompletableFuture.completedFuture((T) fromStoreValue(result));
+        }
+        return valueLoader.invokeMethod(key).thenApply(value -> {
+            put(key, value);
+            return value;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> putAsync(String key, Object value) {
+        put(key, value);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> evictAsync(String key) {
+        evict(key);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * 获取最热的缓存数据，每个分段取最近访问的数据，不包括空值
+     */
+    @Override
+    public Map<String, TtlValue<Object>> hottest(int limit) {
+        Map<String, TtlValue<Object>> result = new LinkedHashMap<>();
+        int segmentLimit = (limit + SEGMENT_COUNT - 1) / SEGMENT_COUNT;
+        for (Segment segment : segments) {
+            segment.hottest(segmentLimit).forEach((key, ttlValue) -> {
+                Object value = SerializationUtils.deserializeValue(serializer, ttlValue.getValue(), Object.class);
+                if (value != null && !(value instanceof NullValue)) {
+                    result.put(key, new TtlValue<>(value, ttlValue.getTtl()));
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * 缓存数量
+     */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * 已申请的堆外内存，字节
+     */
+    public long getAllocatedMemory() {
+        long memory = 0;
+        for (Segment segment : segments) {
+            memory += segment.getAllocatedMemory();
+        }
+        return memory;
+    }
+
+    private Segment segmentFor(String key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[hash & (SEGMENT_COUNT - 1)];
+    }
+
+    /**
+     * 缓存条目，记录值在堆外内存中的位置
+     */
+    private static final class Entry {
+        private final long blockRef;
+        private final int length;
+        private final int sizeClass;
+        private long expireTime;
+
+        private Entry(long blockRef, int length, int sizeClass, long expireTime) {
+            this.blockRef = blockRef;
+            this.length = length;
+            this.sizeClass = sizeClass;
+            this.expireTime = expireTime;
+        }
+    }
+
+    /**
+     * 分段，独立的索引、内存分配器和LRU淘汰
+     */
+    private final class Segment {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * key索引，按访问顺序排序，最久未访问的在前
+         */
+        private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(16, 0.75f, true);
+
+        private final SlabAllocator allocator;
+
+        private final int maxEntries;
+
+        private Segment(int maxEntries, long maxMemory) {
+            this.maxEntries = maxEntries;
+            this.allocator = new SlabAllocator(maxMemory);
+        }
+
+        private byte[] get(String key) {
+            lock.lock();
+            try {
+                Entry entry = index.get(key);
+                if (entry == null) {
+                    return null;
+                }
+                long now = System.nanoTime();
+                if (entry.expireTime > 0 && entry.expireTime - now <= 0) {
+                    index.remove(key);
+                    allocator.free(entry.blockRef, entry.sizeClass);
+                    return null;
+                }
+                if (expireAfterAccess && expireNanos > 0) {
+                    entry.expireTime = now + expireNanos;
+                }
+                return allocator.read(entry.blockRef, entry.length);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void put(String key, byte[] data, long ttlNanos) {
+            int sizeClass = allocator.sizeClassOf(data.length);
+            lock.lock();
+            try {
+                remove(key);
+                if (sizeClass < 0) {
+                    log.warn("缓存名称={},offheap 缓存值超过{}字节，不缓存 key={}", getCacheName(), allocator.getPageSize(), key);
+                    return;
+                }
+                if (index.size() >= maxEntries) {
+                    evictEldest(-1);
+                }
+                long blockRef = allocator.allocate(sizeClass);
+                // 先淘汰同规格的条目复用块，没有时淘汰其它规格的条目，直到有页全部释放后重新切分
+                while (blockRef < 0 && (evictEldest(sizeClass) || evictEldest(-1))) {
+                    blockRef = allocator.allocate(sizeClass);
+                }
+                if (blockRef < 0) {
+                    log.warn("缓存名称={},offheap 堆外内存不足，不缓存 key={}", getCacheName(), key);
+                    return;
+                }
+                allocator.write(blockRef, data);
+                index.put(key, new Entry(blockRef, data.length, sizeClass, ttlNanos > 0 ? System.nanoTime() + ttlNanos : 0));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void remove(String key) {
+            lock.lock();
+            try {
+                Entry entry = index.remove(key);
+                if (entry != null) {
+                    allocator.free(entry.blockRef, entry.sizeClass);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 淘汰最久未访问的条目
+         *
+         * @param sizeClass 只淘汰该规格的条目，小于0不限规格
+         * @return 是否淘汰成功
+         */
+        private boolean evictEldest(int sizeClass) {
+            Iterator<Entry> iterator = index.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (sizeClass < 0 || entry.sizeClass == sizeClass) {
+                    iterator.remove();
+                    allocator.free(entry.blockRef, entry.sizeClass);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 最近访问的数据，值为序列化后的字节
+         */
+        private Map<String, TtlValue<byte[]>> hottest(int limit) {
+            Map<String, TtlValue<byte[]>> result = new LinkedHashMap<>();
+            lock.lock();
+            try {
+                List<Map.Entry<String, Entry>> entries = new ArrayList<>(index.entrySet());
+                long now = System.nanoTime();
+                for (int i = entries.size() - 1; i >= 0 && result.size() < limit; i--) {
+                    Entry entry = entries.get(i).getValue();
+                    long ttl = entry.expireTime > 0 ? TimeUnit.NANOSECONDS.toMillis(entry.expireTime - now) : TtlValue.NO_EXPIRE;
+                    if (entry.expireTime == 0 || ttl > 0) {
+                        result.put(entries.get(i).getKey(), new TtlValue<>(allocator.read(entry.blockRef, entry.length), ttl));
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            return result;
+        }
+
+        private void clear() {
+            lock.lock();
+            try {
+                for (Entry entry : index.values()) {
+                    allocator.free(entry.blockRef, entry.sizeClass);
+                }
+                index.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int size() {
+            lock.lock();
+            try {
+                return index.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private long getAllocatedMemory() {
+            lock.lock();
+            try {
+                return allocator.getAllocatedMemory();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
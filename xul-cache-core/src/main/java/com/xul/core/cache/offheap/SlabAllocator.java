@@ -0,0 +1,191 @@
+package com.xul.core.cache.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 堆外内存分配器
+ * <p>
+ * 按页向直接内存申请，页在使用期间只切分成一种规格的块（64字节起按2倍递增，最大一页），释放的块放回所在页复用。
+ * 页上的块全部释放后归还空闲页，可以重新切分成任意规格，避免页被某种规格长期占用。
+ * 申请的页总大小不超过最大内存，最大内存小于1M时按不超过最大内存的2的幂作为页大小。非线程安全，由所属分段加锁保护
+ * </p>
+ *
+ * @author: xl
+ * @date: 2021/10/17
+ **/
+class SlabAllocator {
+
+    /**
+     * 最小块大小
+     */
+    static final int MIN_BLOCK_SIZE = 64;
+
+    /**
+     * 最大页大小，也是最大块大小
+     */
+    static final int PAGE_SIZE = 1 << 20;
+
+    /**
+     * 块规格数量
+     */
+    private static final int CLASS_COUNT = Integer.numberOfTrailingZeros(PAGE_SIZE / MIN_BLOCK_SIZE) + 1;
+
+    /**
+     * 页大小
+     */
+    private final int pageSize;
+
+    /**
+     * 最大页数
+     */
+    private final int maxPages;
+
+    /**
+     * 已申请的页
+     */
+    private final List<Page> pages = new ArrayList<>();
+
+    /**
+     * 未切分的空闲页号
+     */
+    private final Deque<Integer> emptyPages = new ArrayDeque<>();
+
+    /**
+     * 每种规格还有空闲块的页号
+     */
+    private final List<Set<Integer>> partialPages = new ArrayList<>(CLASS_COUNT);
+
+    SlabAllocator(long maxMemory) {
+        this.pageSize = maxMemory >= PAGE_SIZE ? PAGE_SIZE
+                : Integer.highestOneBit((int) Math.max(MIN_BLOCK_SIZE, maxMemory));
+        this.maxPages = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxMemory / pageSize));
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            partialPages.add(new LinkedHashSet<>());
+        }
+    }
+
+    /**
+     * 计算数据长度对应的块规格，超过页大小返回-1
+     */
+    int sizeClassOf(int length) {
+        if (length > pageSize) {
+            return -1;
+        }
+        int size = MIN_BLOCK_SIZE;
+        int sizeClass = 0;
+        while (size < length) {
+            size <<= 1;
+            sizeClass++;
+        }
+        return sizeClass;
+    }
+
+    /**
+     * 分配指定规格的块，内存不足返回-1
+     */
+    long allocate(int sizeClass) {
+        Set<Integer> partial = partialPages.get(sizeClass);
+        if (partial.isEmpty() && !assignPage(sizeClass)) {
+            return -1;
+        }
+        Iterator<Integer> iterator = partial.iterator();
+        int pageIndex = iterator.next();
+        Page page = pages.get(pageIndex);
+        int offset = page.freeOffsets[--page.freeSize];
+        if (page.freeSize == 0) {
+            iterator.remove();
+        }
+        return ((long) pageIndex << 32) | offset;
+    }
+
+    /**
+     * 释放块，所在页的块全部释放后归还空闲页
+     */
+    void free(long blockRef, int sizeClass) {
+        int pageIndex = (int) (blockRef >>> 32);
+        Page page = pages.get(pageIndex);
+        page.freeOffsets[page.freeSize++] = (int) blockRef;
+        if (page.freeSize == page.freeOffsets.length) {
+            partialPages.get(sizeClass).remove(pageIndex);
+            page.freeOffsets = null;
+            page.freeSize = 0;
+            emptyPages.push(pageIndex);
+        } else if (page.freeSize == 1) {
+            partialPages.get(sizeClass).add(pageIndex);
+        }
+    }
+
+    void write(long blockRef, byte[] data) {
+        ByteBuffer buffer = pages.get((int) (blockRef >>> 32)).buffer;
+        buffer.position((int) blockRef);
+        buffer.put(data);
+    }
+
+    byte[] read(long blockRef, int length) {
+        ByteBuffer buffer = pages.get((int) (blockRef >>> 32)).buffer;
+        byte[] data = new byte[length];
+        buffer.position((int) blockRef);
+        buffer.get(data);
+        return data;
+    }
+
+    /**
+     * 页大小，也是能分配的最大块
+     */
+    int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * 已申请的堆外内存，字节
+     */
+    long getAllocatedMemory() {
+        return (long) pages.size() * pageSize;
+    }
+
+    /**
+     * 取一个空闲页（没有时在最大页数内申请新页）并切分成指定规格的块
+     */
+    private boolean assignPage(int sizeClass) {
+        int pageIndex;
+        if (!emptyPages.isEmpty()) {
+            pageIndex = emptyPages.pop();
+        } else if (pages.size() < maxPages) {
+            pageIndex = pages.size();
+            pages.add(new Page(ByteBuffer.allocateDirect(pageSize)));
+        } else {
+            return false;
+        }
+        Page page = pages.get(pageIndex);
+        int blockSize = MIN_BLOCK_SIZE << sizeClass;
+        int blockCount = pageSize / blockSize;
+        page.freeOffsets = new int[blockCount];
+        // 低地址的块先分配
+        for (int i = 0; i < blockCount; i++) {
+            page.freeOffsets[i] = (blockCount - 1 - i) * blockSize;
+        }
+        page.freeSize = blockCount;
+        partialPages.get(sizeClass).add(pageIndex);
+        return true;
+    }
+
+    /**
+     * 页，切分后记录空闲块的页内偏移
+     */
+    private static final class Page {
+        private final ByteBuffer buffer;
+        private int[] freeOffsets;
+        private int freeSize;
+
+        private Page(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+}
@@ -1,16 +1,27 @@
 package com.xul.core.cache.redis;
 
 import com.xul.core.cache.AbstractValueAdaptingCache;
+import com.xul.core.config.GlobalConfig;
 import com.xul.core.config.SecondaryCacheConfig;
 import com.xul.core.function.CacheFunctionWithParamReturn;
 import com.xul.core.redis.client.RedisClient;
+import com.xul.core.supports.CacheWrapper;
+import com.xul.core.supports.InvalidationMode;
+import com.xul.core.supports.TtlValue;
 import com.xul.core.supports.NullValue;
+import com.xul.core.supports.RefreshMode;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.CollectionUtils;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * 基于redis实现的二级缓存
@@ -39,11 +50,36 @@ public class RedisCache extends AbstractValueAdaptingCache {
      * 那么当缓存value为null时，缓存的有效时间将是20秒，非空时为200秒
      * </p>
      */
-    int magnification = 1;
+    private int magnification = 1;
+
+    /**
+     * 空值的缓存有效时间，小于等于0时使用 expiration / magnification
+     */
+    private long nullValueExpiration = 0;
+
+    /**
+     * 是否使用 {@link CacheWrapper} 包装缓存值（PROBABILISTIC预刷新模式）
+     */
+    private boolean wrapValue = false;
+
+    /**
+     * redis key前缀，为空时直接使用缓存key
+     */
+    private String keyPrefix = "";
 
     public RedisCache(String name, RedisClient redisClient, SecondaryCacheConfig secondaryCacheConfig) {
         this(name, redisClient, secondaryCacheConfig.getExpiration(), secondaryCacheConfig.getPreloadTime(), secondaryCacheConfig.isForceRefresh(),
                 secondaryCacheConfig.getTimeUnit());
+        this.wrapValue = RefreshMode.PROBABILISTIC.equals(secondaryCacheConfig.getRefreshMode());
+        if (InvalidationMode.TRACKING.equals(GlobalConfig.INVALIDATION_MODE)) {
+            /**客户端缓存跟踪按前缀区分缓存，必须使用前缀；其它模式为兼容已有数据不加前缀*/
+            if (!secondaryCacheConfig.isUsePrefix()) {
+                log.warn("缓存 {} 使用redis客户端缓存跟踪，必须使用缓存名称作为redis key前缀，忽略usePrefix=false", name);
+            }
+            this.keyPrefix = GlobalConfig.getCacheKeyPrefix(name);
+        }
+        this.magnification = Math.max(1, secondaryCacheConfig.getMagnification());
+        this.nullValueExpiration = secondaryCacheConfig.getNullValueExpiration();
     }
 
 
@@ -68,14 +104,84 @@ public class RedisCache extends AbstractValueAdaptingCache {
 
     @Override
     public <T> T get(String key, Class<T> resultType) {
-        return redisClient.get(key, resultType);
+        return (T) unwrap(redisClient.get(getRedisKey(key), readType(resultType)));
+    }
+
+    /**
+     * 获取包装后的缓存值，非包装模式写入的旧数据没有写入时间等信息，包装成不会提前刷新的值返回
+     *
+     * @param key
+     * @param resultType
+     * @return: com.xul.core.supports.CacheWrapper
+     * @author: xl
+     * @date: 2021/10/16
+     **/
+    public CacheWrapper getWrapper(String key, Class<?> resultType) {
+        return toWrapper(redisClient.get(getRedisKey(key), readType(resultType)));
     }
 
+    /**
+     * 异步获取包装后的缓存值
+     *
+     * @param key
+     * @param resultType
+     * @return: java.util.concurrent.CompletableFuture<com.xul.core.supports.CacheWrapper>
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public CompletableFuture<CacheWrapper> getWrapperAsync(String key, Class<?> resultType) {
+        return redisClient.getAsync(getRedisKey(key), readType(resultType)).thenApply(this::toWrapper);
+    }
+
+
+    /**
+     * 一次请求同时获取存储值和剩余生存时间（毫秒），用于本地判断是否需要预刷新
+     *
+     * @param key
+     * @param resultType
+     * @return: com.xul.core.supports.TtlValue 值是存储值（空值为 {@link NullValue}）
+     * @author: xl
+     * @date: 2021/10/16
+     **/
+    public TtlValue<Object> getWithTtl(String key, Class<?> resultType) {
+        TtlValue<?> ttlValue = redisClient.getWithTtl(getRedisKey(key), readType(resultType));
+        return new TtlValue<>(unwrap(ttlValue.getValue()), ttlValue.getTtl());
+    }
+
+    /**
+     * 批量获取存储值和剩余生存时间（毫秒），用于按二级缓存剩余时间设置一级缓存
+     *
+     * @param keys
+     * @param resultType
+     * @return: java.util.Map<java.lang.String, com.xul.core.supports.TtlValue<java.lang.Object>> 不存在的key不会出现在结果中
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public Map<String, TtlValue<Object>> getAllWithTtl(Collection<String> keys, Class<?> resultType) {
+        Map<String, TtlValue<Object>> result = new HashMap<>(keys.size());
+        redisClient.mgetWithTtl(getRedisKeys(keys), readType(resultType)).forEach((key, ttlValue) ->
+                result.put(getCacheKey(key), new TtlValue<>(unwrap(ttlValue.getValue()), ttlValue.getTtl())));
+        return result;
+    }
+
+    /**
+     * 异步获取存储值和剩余生存时间（毫秒）
+     *
+     * @param key
+     * @param resultType
+     * @return: java.util.concurrent.CompletableFuture<com.xul.core.supports.TtlValue<java.lang.Object>>
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public CompletableFuture<TtlValue<Object>> getWithTtlAsync(String key, Class<?> resultType) {
+        return redisClient.getWithTtlAsync(getRedisKey(key), readType(resultType))
+                .thenApply(ttlValue -> new TtlValue<>(unwrap(ttlValue.getValue()), ttlValue.getTtl()));
+    }
 
     @Override
     public <T> T get(String key, Class<T> resultType, CacheFunctionWithParamReturn<T, String> valueLoader) {
         // 先获取缓存，如果有直接返回
-        T result = redisClient.get(key, resultType);
+        T result = get(key, resultType);
         if (result != null) {
             return (T) fromStoreValue(result);
         }
@@ -83,9 +189,64 @@ public class RedisCache extends AbstractValueAdaptingCache {
     }
 
 
+    /**
+     * 批量获取二级缓存（一次MGET），返回的是存储值（空值为 {@link NullValue}），由调用方转换
+     */
+    @Override
+    public <T> Map<String, T> getAll(Collection<String> keys, Class<T> resultType, CacheFunctionWithParamReturn<Map<String, T>, Collection<String>> batchLoader) {
+        Map<String, T> result = new HashMap<>(keys.size());
+        redisClient.mget(getRedisKeys(keys), readType(resultType)).forEach((key, value) -> result.put(getCacheKey(key), (T) unwrap(value)));
+        if (batchLoader == null || result.size() == keys.size()) {
+            return result;
+        }
+        Set<String> missKeys = new HashSet<>(keys);
+        missKeys.removeAll(result.keySet());
+        Map<String, T> loadValues = batchLoader.invokeMethod(missKeys);
+        Map<String, Object> storeValues = new HashMap<>(missKeys.size());
+        for (String key : missKeys) {
+            Object value = toStoreValue(loadValues == null ? null : loadValues.get(key));
+            storeValues.put(key, value);
+            result.put(key, (T) value);
+        }
+        putAll(storeValues);
+        return result;
+    }
+
+
     @Override
     public void put(String key, Object value) {
-        putValue(key, value);
+        putValue(key, value, 0);
+    }
+
+    /**
+     * 缓存key-value，并记录加载耗时（PROBABILISTIC预刷新模式用于计算提前刷新概率）
+     *
+     * @param key
+     * @param value
+     * @param delta 加载耗时，毫秒
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/16
+     **/
+    public void put(String key, Object value, long delta) {
+        putValue(key, value, delta);
+    }
+
+    @Override
+    public void putAll(Map<String, ?> values) {
+        // 空值和非空值的有效时间不同，分两批写入
+        Map<String, Object> storeValues = new HashMap<>(values.size());
+        Map<String, Object> nullValues = new HashMap<>();
+        values.forEach((key, value) -> {
+            Object result = toStoreValue(value);
+            if (result instanceof NullValue) {
+                nullValues.put(getRedisKey(key), wrap(result, 0, getExpirationTime(result)));
+            } else {
+                storeValues.put(getRedisKey(key), wrap(result, 0, getExpirationTime(result)));
+            }
+        });
+        redisClient.mset(storeValues, expiration, timeUnit);
+        redisClient.mset(nullValues, getExpirationTime(NullValue.INSTANCE), timeUnit);
     }
 
     @Override
@@ -101,28 +262,161 @@ public class RedisCache extends AbstractValueAdaptingCache {
     @Override
     public void evict(String key) {
 
-        redisClient.delete(key);
+        redisClient.delete(getRedisKey(key));
+    }
+
+    @Override
+    public <T> CompletableFuture<T> getAsync(String key, Class<T> resultType) {
+        return redisClient.getAsync(getRedisKey(key), readType(resultType)).thenApply(result -> (T) unwrap(result));
+    }
+
+    @Override
+    public <T> CompletableFuture<T> getAsync(String key, Class<T> resultType, CacheFunctionWithParamReturn<CompletableFuture<T>, String> valueLoader) {
+        return getAsync(key, resultType).thenCompose(result -> {
+            if (result != null) {
+                return CompletableFuture.completedFuture((T) fromStoreValue(result));
+            }
+            return valueLoader.invokeMethod(key)
+                    .thenCompose(value -> putAsync(key, value).thenApply(v -> value));
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> putAsync(String key, Object value) {
+        return putAsync(key, value, 0);
+    }
+
+    /**
+     * 异步缓存key-value，并记录加载耗时（PROBABILISTIC预刷新模式用于计算提前刷新概率）
+     *
+     * @param key
+     * @param value
+     * @param delta 加载耗时，毫秒
+     * @return: java.util.concurrent.CompletableFuture<java.lang.Void>
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public CompletableFuture<Void> putAsync(String key, Object value, long delta) {
+        Object result = toStoreValue(value);
+        long expirationTime = getExpirationTime(result);
+        return redisClient.setAsync(getRedisKey(key), wrap(result, delta, expirationTime), expirationTime, timeUnit);
+    }
+
+    @Override
+    public CompletableFuture<Void> evictAsync(String key) {
+        return redisClient.deleteAsync(getRedisKey(key)).thenApply(count -> null);
     }
 
     @Override
     public void clear() {
         /**清理掉前缀的key value*/
-        Set<String> keys = redisClient.scan(getCacheName() + "*");
+        Set<String> keys = redisClient.scan((keyPrefix.isEmpty() ? getCacheName() : keyPrefix) + "*");
         if (!CollectionUtils.isEmpty(keys)) {
             redisClient.delete(keys);
         }
     }
 
-    private void putValue(String key, Object value) {
+    private void putValue(String key, Object value, long delta) {
         Object result = toStoreValue(value);
-        // 允许缓存NULL值
-        long expirationTime = this.expiration;
         // 允许缓存NULL值且缓存为值为null时需要重新计算缓存时间
-        if (value instanceof NullValue) {
-            expirationTime = expirationTime / magnification;
-        }
+        long expirationTime = getExpirationTime(result);
         // 将数据放到缓存
-        redisClient.set(key, result, expirationTime, timeUnit);
+        redisClient.set(getRedisKey(key), wrap(result, delta, expirationTime), expirationTime, timeUnit);
+    }
+
+    /**
+     * 缓存key对应的redis key
+     *
+     * @param key 缓存key
+     * @return: java.lang.String
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public String getRedisKey(String key) {
+        return keyPrefix.isEmpty() ? key : keyPrefix + key;
+    }
+
+    /**
+     * redis key前缀，为空表示不使用前缀
+     */
+    public String getKeyPrefix() {
+        return keyPrefix;
+    }
+
+    /**
+     * 写入的数据在redis中的有效时间，毫秒，没有配置有效时间时返回0
+     *
+     * @param value
+     * @return: long
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public long getExpirationMillis(Object value) {
+        return Math.max(0, timeUnit.toMillis(getExpirationTime(toStoreValue(value))));
+    }
+
+    private Collection<String> getRedisKeys(Collection<String> keys) {
+        if (keyPrefix.isEmpty()) {
+            return keys;
+        }
+        return keys.stream().map(this::getRedisKey).collect(Collectors.toList());
+    }
+
+    /**
+     * redis key去掉前缀得到缓存key
+     */
+    private String getCacheKey(String redisKey) {
+        return keyPrefix.isEmpty() ? redisKey : redisKey.substring(keyPrefix.length());
+    }
+
+    /**
+     * 获取缓存有效时间，空值优先使用单独配置的空值有效时间，没有配置时除以倍率
+     */
+    private long getExpirationTime(Object storeValue) {
+        if (storeValue instanceof NullValue) {
+            return nullValueExpiration > 0 ? nullValueExpiration : this.expiration / magnification;
+        }
+        return this.expiration;
+    }
+
+    /**
+     * 包装模式下把存储值包装成 {@link CacheWrapper}，没有配置有效时间时过期时间为 {@link CacheWrapper#NEVER_EXPIRE}。
+     * 空值不包装，仍按固定字节标识存储，读取时视为不提前刷新的值
+     */
+    private Object wrap(Object storeValue, long delta, long expirationTime) {
+        if (!wrapValue || storeValue instanceof NullValue) {
+            return storeValue;
+        }
+        long now = System.currentTimeMillis();
+        long expireTime = expirationTime > 0 ? now + timeUnit.toMillis(expirationTime) : CacheWrapper.NEVER_EXPIRE;
+        return new CacheWrapper(storeValue, now, delta, expireTime);
+    }
+
+    /**
+     * 非包装模式写入的旧数据没有写入时间等信息，包装成不会提前刷新的值
+     */
+    private CacheWrapper toWrapper(Object result) {
+        if (result == null || result instanceof CacheWrapper) {
+            return (CacheWrapper) result;
+        }
+        return new CacheWrapper(result, 0, 0, CacheWrapper.NEVER_EXPIRE);
+    }
+
+    /**
+     * 拆包得到存储值
+     */
+    private Object unwrap(Object result) {
+        if (result instanceof CacheWrapper) {
+            return ((CacheWrapper) result).getValue();
+        }
+        return result;
+    }
+
+    /**
+     * 包装模式下按 {@link CacheWrapper} 类型反序列化
+     */
+    private <T> Class<T> readType(Class<T> resultType) {
+        return wrapValue ? (Class<T>) CacheWrapper.class : resultType;
     }
 
 
@@ -0,0 +1,50 @@
+package com.xul.core.config;
+
+import com.xul.core.supports.BloomFilterMode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 布隆过滤器配置
+ *
+ * @author: xl
+ * @date: 2021/10/17
+ **/
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BloomFilterConfig {
+
+    /**
+     * 是否开启布隆过滤器，默认是false
+     */
+    @Builder.Default
+    private boolean enable = false;
+
+    /**
+     * 布隆过滤器模式 {@link BloomFilterMode}，默认REDIS，LOCAL只适用于单服务器部署
+     */
+    @Builder.Default
+    private BloomFilterMode mode = BloomFilterMode.REDIS;
+
+    /**
+     * 预计元素数量，默认是1000000
+     */
+    @Builder.Default
+    private long expectedInsertions = 1000000;
+
+    /**
+     * 误判率，默认是0.01
+     */
+    @Builder.Default
+    private double fpp = 0.01;
+
+    /**
+     * 位图最大内存，单位字节，小于等于0不限制。超过限制时按最大内存分配，实际误判率会高于fpp
+     */
+    @Builder.Default
+    private long maxMemoryBytes = 0;
+}
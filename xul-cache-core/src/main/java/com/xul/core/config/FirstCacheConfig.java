@@ -1,6 +1,7 @@
 package com.xul.core.config;
 
 import com.xul.core.supports.ExpireMode;
+import com.xul.core.supports.FirstCacheType;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -23,26 +24,74 @@ public class FirstCacheConfig {
     /**
      * 缓存初始Size
      */
+    @Builder.Default
     private int initialCapacity = 10;
 
     /**
      * 缓存最大Size
      */
+    @Builder.Default
     private int maximumSize = 500;
 
+    /**
+     * 缓存最大字节数，按值序列化后的大小计算权重，大于0时代替 maximumSize 并且不再使用软引用
+     */
+    @Builder.Default
+    private long maximumWeight = 0;
+
     /**
      * 缓存有效时间
      */
+    @Builder.Default
     private int expireTime = 0;
 
     /**
      * 缓存时间单位
      */
+    @Builder.Default
     private TimeUnit timeUnit = TimeUnit.MILLISECONDS;
 
     /**
      * 缓存失效模式{@link ExpireMode}
      */
+    @Builder.Default
     private ExpireMode expireMode = ExpireMode.WRITE;
 
+    /**
+     * 空值缓存最大Size，空值单独存放，不会挤掉正常数据。小于等于0时为 maximumSize 的十分之一
+     */
+    @Builder.Default
+    private int nullValueMaximumSize = 0;
+
+    /**
+     * 空值缓存有效时间，单位同 timeUnit，小于等于0时使用 expireTime
+     */
+    @Builder.Default
+    private int nullValueExpireTime = 0;
+
+    /**
+     * 过期数据保留的宽限期，单位同 timeUnit，小于等于0不保留。
+     * 宽限期内的数据正常读取时视为过期，redis不可用时降级读取
+     */
+    @Builder.Default
+    private int staleGracePeriod = 0;
+
+    /**
+     * 一级缓存类型{@link FirstCacheType}，默认CAFFEINE
+     */
+    @Builder.Default
+    private FirstCacheType cacheType = FirstCacheType.CAFFEINE;
+
+    /**
+     * OFF_HEAP类型的最大堆外内存，单位字节，默认256M，小于等于0时使用默认值
+     */
+    @Builder.Default
+    private long offHeapMaxMemory = 256L * 1024 * 1024;
+
+    /**
+     * 快照保存的最热数据条数，小于等于0不保存快照。需要同时配置 {@link GlobalConfig#SNAPSHOT_DIR}
+     */
+    @Builder.Default
+    private int snapshotSize = 0;
+
 }
@@ -2,6 +2,12 @@ package com.xul.core.config;
 
 import com.xul.core.redis.serializer.ProtostuffRedisSerializer;
 import com.xul.core.redis.serializer.RedisSerializer;
+import com.xul.core.supports.HotKeyType;
+import com.xul.core.supports.InvalidationMode;
+import com.xul.core.supports.MessageCodec;
+import com.xul.core.supports.UpdateMessageMode;
+
+import java.util.UUID;
 
 /**
  * 全局配置
@@ -11,12 +17,141 @@ import com.xul.core.redis.serializer.RedisSerializer;
 public class GlobalConfig {
     public static final String MESSAGE_KEY = "layering-cache:message-key:%s";
 
+    /**
+     * 消息日志stream
+     */
+    public static final String STREAM_KEY = "layering-cache:stream:%s";
+
+    /**
+     * 消息版本号计数器
+     */
+    public static final String MESSAGE_VERSION_KEY = "layering-cache:message-version:%s";
+
+    /**
+     * 布隆过滤器位图key，hash tag保证集群模式下重建用的临时key和正式key在同一个slot
+     */
+    public static final String BLOOM_FILTER_KEY = "layering-cache:bloom-filter:{%s:%s}";
+
+    /**
+     * 热点key统计，有序集合，分值为各服务器发布的相对热度之和
+     */
+    public static final String HOT_KEY = "layering-cache:hot-key:%s:%s";
+
+    /**
+     * 二级缓存redis key前缀，命名空间:缓存名称:，客户端缓存跟踪模式下按该前缀跟踪失效
+     */
+    public static final String CACHE_KEY_PREFIX = "%s:%s:";
+
+    /**
+     * 一级缓存快照文件名，命名空间-缓存名称
+     */
+    public static final String SNAPSHOT_FILE = "%s-%s.snapshot";
+
+    /**
+     * 本服务器（进程）标识，每次启动生成，写入发布的消息，收到本服务器发布的消息时跳过
+     */
+    public static final String NODE_ID = UUID.randomUUID().toString();
+
     public static String NAMESPACE = "";
 
+    /**
+     * 一级缓存快照目录，为空不开启快照
+     */
+    public static String SNAPSHOT_DIR = "";
+
+    /**
+     * 一级缓存快照间隔时间，秒
+     */
+    public static long SNAPSHOT_INTERVAL = 300;
+
+    /**
+     * 本地热点key发布到redis的间隔时间，秒
+     */
+    public static long HOT_KEY_PUBLISH_INTERVAL = 60;
+
+    /**
+     * 一级缓存失效通知方式，默认消息队列
+     */
+    public static InvalidationMode INVALIDATION_MODE = InvalidationMode.MESSAGE;
+
+    /**
+     * 消息日志stream最大长度，近似裁剪
+     */
+    public static long STREAM_MAX_LENGTH = 100000;
+
+    /**
+     * 批量发布消息的间隔时间，毫秒，小于等于0不合并发布
+     */
+    public static long PUBLISH_BATCH_INTERVAL = 0;
+
+    /**
+     * 批量发布消息的最大消息数，缓冲的消息达到该值时立即发布
+     */
+    public static int PUBLISH_BATCH_SIZE = 500;
+
+    /**
+     * 更新一级缓存的消息内容，默认携带缓存值
+     */
+    public static UpdateMessageMode UPDATE_MESSAGE_MODE = UpdateMessageMode.VALUE;
+
+    /**
+     * 消息编码格式，默认JSON，所有服务器都能读取二进制格式后再切换
+     */
+    public static MessageCodec MESSAGE_CODEC = MessageCodec.JSON;
+
+    /**
+     * pub/sub推送消息是否携带消息内容和偏移量，开启后订阅者序号连续时直接处理，不再拉取消息队列
+     */
+    public static boolean PUSH_MESSAGE_PAYLOAD = false;
+
     public static void setNamespace(String namespace) {
         GlobalConfig.NAMESPACE = namespace;
     }
 
+    public static void setSnapshotDir(String snapshotDir) {
+        GlobalConfig.SNAPSHOT_DIR = snapshotDir;
+    }
+
+    public static void setSnapshotInterval(long snapshotInterval) {
+        GlobalConfig.SNAPSHOT_INTERVAL = snapshotInterval;
+    }
+
+    public static void setHotKeyPublishInterval(long hotKeyPublishInterval) {
+        GlobalConfig.HOT_KEY_PUBLISH_INTERVAL = hotKeyPublishInterval;
+    }
+
+    public static void setInvalidationMode(InvalidationMode invalidationMode) {
+        GlobalConfig.INVALIDATION_MODE = invalidationMode;
+    }
+
+    public static void setStreamMaxLength(long streamMaxLength) {
+        GlobalConfig.STREAM_MAX_LENGTH = streamMaxLength;
+    }
+
+    public static void setPublishBatchInterval(long publishBatchInterval) {
+        GlobalConfig.PUBLISH_BATCH_INTERVAL = publishBatchInterval;
+    }
+
+    public static void setPublishBatchSize(int publishBatchSize) {
+        GlobalConfig.PUBLISH_BATCH_SIZE = publishBatchSize;
+    }
+
+    public static void setUpdateMessageMode(UpdateMessageMode updateMessageMode) {
+        GlobalConfig.UPDATE_MESSAGE_MODE = updateMessageMode;
+    }
+
+    public static void setMessageCodec(MessageCodec messageCodec) {
+        GlobalConfig.MESSAGE_CODEC = messageCodec;
+    }
+
+    public static void setPushMessagePayload(boolean pushMessagePayload) {
+        GlobalConfig.PUSH_MESSAGE_PAYLOAD = pushMessagePayload;
+    }
+
+    public static String getSnapshotFile(String cacheName) {
+        return String.format(SNAPSHOT_FILE, GlobalConfig.NAMESPACE, cacheName);
+    }
+
     public static String getMessageRedisKey() {
         return String.format(MESSAGE_KEY, GlobalConfig.NAMESPACE);
     }
@@ -25,6 +160,40 @@ public class GlobalConfig {
         return String.format(MESSAGE_KEY, nameSpace);
     }
 
+    public static String getStreamRedisKey() {
+        return String.format(STREAM_KEY, GlobalConfig.NAMESPACE);
+    }
+
+    public static String getStreamRedisKey(String nameSpace) {
+        return String.format(STREAM_KEY, nameSpace);
+    }
+
+    public static String getMessageVersionRedisKey(String nameSpace) {
+        return String.format(MESSAGE_VERSION_KEY, nameSpace);
+    }
+
+    public static String getHotKeyRedisKey(String cacheName) {
+        return String.format(HOT_KEY, GlobalConfig.NAMESPACE, cacheName);
+    }
+
+    /**
+     * 各统计类型的热点key，访问热点key和预热共用一个key，未命中热点key加上类型后缀
+     */
+    public static String getHotKeyRedisKey(String cacheName, HotKeyType type) {
+        if (HotKeyType.ACCESS.equals(type)) {
+            return getHotKeyRedisKey(cacheName);
+        }
+        return getHotKeyRedisKey(cacheName) + ":" + type.name().toLowerCase();
+    }
+
+    public static String getCacheKeyPrefix(String cacheName) {
+        return String.format(CACHE_KEY_PREFIX, GlobalConfig.NAMESPACE, cacheName);
+    }
+
+    public static String getBloomFilterRedisKey(String cacheName) {
+        return String.format(BLOOM_FILTER_KEY, GlobalConfig.NAMESPACE, cacheName);
+    }
+
     /**
      * 消息推送序列化器
      */
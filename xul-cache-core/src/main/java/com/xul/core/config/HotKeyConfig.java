@@ -0,0 +1,73 @@
+package com.xul.core.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 热点key探测配置
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HotKeyConfig {
+
+    /**
+     * 是否开启热点key探测，默认是false
+     */
+    @Builder.Default
+    private boolean enable = false;
+
+    /**
+     * 访问采样率，默认是0.01
+     */
+    @Builder.Default
+    private double sampleRate = 0.01;
+
+    /**
+     * 每种统计类型保留的热点key数量，默认是100
+     */
+    @Builder.Default
+    private int topK = 100;
+
+    /**
+     * count-min sketch 每行计数器数量，向上取2的幂，默认是1024
+     */
+    @Builder.Default
+    private int sketchWidth = 1024;
+
+    /**
+     * count-min sketch 行数，默认是4
+     */
+    @Builder.Default
+    private int sketchDepth = 4;
+
+    /**
+     * 是否把热点key固定在一级缓存，默认是false。固定的key不会被容量淘汰，到期前后台刷新，访问频率下降后解除固定
+     */
+    @Builder.Default
+    private boolean pinEnable = false;
+
+    /**
+     * 固定到一级缓存的访问频率阈值，本服务器每秒访问次数，默认是100。频率低于阈值的一半时解除固定
+     */
+    @Builder.Default
+    private double pinThreshold = 100;
+
+    /**
+     * 每个缓存最多固定的key数量，默认是100
+     */
+    @Builder.Default
+    private int pinMaxSize = 100;
+
+    /**
+     * 固定key的有效时间，毫秒，小于等于0时使用一级缓存有效时间。剩余不到五分之一时从二级缓存刷新
+     */
+    @Builder.Default
+    private long pinExpireTime = 0;
+}
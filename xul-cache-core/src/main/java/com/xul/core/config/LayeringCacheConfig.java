@@ -31,11 +31,29 @@ public class LayeringCacheConfig {
      */
     private SecondaryCacheConfig secondaryCacheConfig;
 
+    /**
+     * 布隆过滤器配置
+     */
+    private BloomFilterConfig bloomFilterConfig;
+
+    /**
+     * 缓存预热配置
+     */
+    private WarmUpConfig warmUpConfig;
+
+    /**
+     * 热点key探测配置
+     */
+    private HotKeyConfig hotKeyConfig;
+
 
-    public LayeringCacheConfig(String internalKey, FirstCacheConfig firstCacheConfig, SecondaryCacheConfig secondaryCacheConfig) {
+    public LayeringCacheConfig(String internalKey, FirstCacheConfig firstCacheConfig, SecondaryCacheConfig secondaryCacheConfig, BloomFilterConfig bloomFilterConfig, WarmUpConfig warmUpConfig, HotKeyConfig hotKeyConfig) {
         this.internalKey = internalKey;
         this.firstCacheConfig = firstCacheConfig;
         this.secondaryCacheConfig = secondaryCacheConfig;
+        this.bloomFilterConfig = bloomFilterConfig;
+        this.warmUpConfig = warmUpConfig;
+        this.hotKeyConfig = hotKeyConfig;
         internalKey();
     }
 
@@ -1,5 +1,6 @@
 package com.xul.core.config;
 
+import com.xul.core.supports.RedisConnectionMode;
 import lombok.Data;
 
 @Data
@@ -17,6 +18,38 @@ public class RedisConfig {
     private int maxSize = 500;
     private int idleMaxSize = 100;
     private int minSize = 100;
+    /**
+     * 连接模式 {@link RedisConnectionMode}
+     */
+    private RedisConnectionMode connectionMode = RedisConnectionMode.POOL;
+    /**
+     * SHARED模式下共享的连接数
+     */
+    private int sharedConnectionSize = 1;
+    /**
+     * SHARED模式下合并flush的时间间隔，单位微秒，小于等于0表示每条命令立即flush，最小100微秒
+     */
+    private long flushInterval = 0;
+    /**
+     * SHARED模式下单个连接累计的命令数达到该值时立即flush
+     */
+    private int flushSize = 64;
+    /**
+     * 是否开启redis熔断，开启后redis异常或响应慢时多级缓存降级为读取一级缓存过期数据或直接执行被缓存的方法
+     */
+    private boolean circuitBreakerEnable = false;
+    /**
+     * 连续失败（异常或慢调用）次数达到该值时熔断
+     */
+    private int circuitBreakerFailureThreshold = 5;
+    /**
+     * 慢调用阈值，单位毫秒，小于等于0表示不统计慢调用
+     */
+    private long circuitBreakerSlowCallThreshold = 500;
+    /**
+     * 熔断持续时间，单位毫秒，到期后放行一个探测请求
+     */
+    private long circuitBreakerOpenDuration = 10000;
     /**
      * 序列化方式:
      * com.xul.core.redis.serializer.KryoRedisSerializer
@@ -1,5 +1,6 @@
 package com.xul.core.config;
 
+import com.xul.core.supports.RefreshMode;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -16,31 +17,61 @@ public class SecondaryCacheConfig {
     /**
      * 缓存有效时间
      */
+    @Builder.Default
     private long expiration = 0;
 
     /**
      * 缓存主动在失效前强制刷新缓存的时间
      */
+    @Builder.Default
     private long preloadTime = 0;
 
     /**
      * 时间单位 {@link TimeUnit}
      */
+    @Builder.Default
     private TimeUnit timeUnit = TimeUnit.MICROSECONDS;
 
     /**
      * 是否强制刷新（走数据库），默认是false
      */
+    @Builder.Default
     private boolean forceRefresh = false;
 
     /**
-     * 是否使用缓存名称作为 redis key 前缀
+     * 预刷新模式 {@link RefreshMode}，默认TTL
      */
+    @Builder.Default
+    private RefreshMode refreshMode = RefreshMode.TTL;
+
+    /**
+     * PROBABILISTIC模式下的提前刷新系数，越大越倾向于提前刷新，默认是1
+     */
+    @Builder.Default
+    private double beta = 1;
+
+    /**
+     * 刷新线程数，每个缓存独立，默认是2
+     */
+    @Builder.Default
+    private int refreshThreads = 2;
+
+    /**
+     * 刷新队列大小，队列满后丢弃刷新任务，默认是1000
+     */
+    @Builder.Default
+    private int refreshQueueSize = 1000;
+
+    /**
+     * 是否使用缓存名称作为 redis key 前缀（命名空间:缓存名称:），只在TRACKING失效通知模式下生效且必须使用，其它模式为兼容已有数据不加前缀
+     */
+    @Builder.Default
     private boolean usePrefix = true;
 
     /**
      * 是否允许存NULL值
      */
+    @Builder.Default
     boolean allowNullValue = false;
 
     /**
@@ -50,13 +81,21 @@ public class SecondaryCacheConfig {
      * 那么当缓存value为null时，缓存的有效时间将是20秒，非空时为200秒
      * </p>
      */
+    @Builder.Default
     int magnification = 1;
 
+    /**
+     * 空值的缓存有效时间，单位同 timeUnit，小于等于0时使用 expiration / magnification
+     */
+    @Builder.Default
+    private long nullValueExpiration = 0;
+
 
 
     /**
      * 刷新缓存等待时间，单位毫秒
      */
+    @Builder.Default
      long WAIT_TIME = 500;
 
 }
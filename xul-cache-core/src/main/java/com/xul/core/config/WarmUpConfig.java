@@ -0,0 +1,62 @@
+package com.xul.core.config;
+
+import com.xul.core.function.CacheFunctionWithParamReturn;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Collection;
+
+/**
+ * 缓存预热配置
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WarmUpConfig {
+
+    /**
+     * 是否开启预热，默认是false
+     */
+    @Builder.Default
+    private boolean enable = false;
+
+    /**
+     * 预热的热点key数量，默认是1000
+     */
+    @Builder.Default
+    private int hotKeySize = 1000;
+
+    /**
+     * 每批次从redis读取的key数量，默认是100
+     */
+    @Builder.Default
+    private int batchSize = 100;
+
+    /**
+     * 并行读取的线程数，默认是4
+     */
+    @Builder.Default
+    private int parallelism = 4;
+
+    /**
+     * 预热超时时间，毫秒，默认是30000，超时后未完成的批次放弃
+     */
+    @Builder.Default
+    private long timeout = 30000;
+
+    /**
+     * 缓存值类型，非Protostuff等不携带类型信息的序列化方式需要指定，默认Object
+     */
+    private Class<?> valueType;
+
+    /**
+     * 热点key提供者，参数为缓存名称。为null时从redis热点key统计中读取，统计需要开启 {@link HotKeyConfig}
+     */
+    private CacheFunctionWithParamReturn<Collection<String>, String> hotKeyLoader;
+}
@@ -0,0 +1,87 @@
+package com.xul.core.hotkey;
+
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Longs;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * count-min sketch 频率估算，计数器用 {@link AtomicLongArray} 保存，无锁并发计数
+ * <p>
+ * 估算值只会偏大不会偏小，误差和每行计数器数量成反比
+ * </p>
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+public class CountMinSketch {
+
+    private final int depth;
+
+    private final int widthMask;
+
+    private final AtomicLongArray counters;
+
+    public CountMinSketch(int width, int depth) {
+        int size = Integer.highestOneBit(Math.max(16, width - 1) << 1);
+        this.depth = Math.max(1, depth);
+        this.widthMask = size - 1;
+        this.counters = new AtomicLongArray(size * this.depth);
+    }
+
+    /**
+     * 计数加1
+     *
+     * @param key
+     * @return: long 加1后的估算次数
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public long increment(String key) {
+        long estimate = Long.MAX_VALUE;
+        for (int index : indexes(key)) {
+            estimate = Math.min(estimate, counters.incrementAndGet(index));
+        }
+        return estimate;
+    }
+
+    /**
+     * 估算次数
+     */
+    public long estimate(String key) {
+        long estimate = Long.MAX_VALUE;
+        for (int index : indexes(key)) {
+            estimate = Math.min(estimate, counters.get(index));
+        }
+        return estimate;
+    }
+
+    /**
+     * key在每一行的计数器下标
+     */
+    private int[] indexes(String key) {
+        byte[] bytes = Hashing.murmur3_128().hashString(key, StandardCharsets.UTF_8).asBytes();
+        long hash1 = Longs.fromBytes(bytes[7], bytes[6], bytes[5], bytes[4], bytes[3], bytes[2], bytes[1], bytes[0]);
+        long hash2 = Longs.fromBytes(bytes[15], bytes[14], bytes[13], bytes[12], bytes[11], bytes[10], bytes[9], bytes[8]);
+        int[] indexes = new int[depth];
+        long combinedHash = hash1;
+        for (int i = 0; i < depth; i++) {
+            indexes[i] = i * (widthMask + 1) + (int) (combinedHash & widthMask);
+            combinedHash += hash2;
+        }
+        return indexes;
+    }
+
+    /**
+     * 所有计数减半，让统计结果偏向最近的访问
+     */
+    public void halve() {
+        for (int i = 0; i < counters.length(); i++) {
+            long value;
+            do {
+                value = counters.get(i);
+            } while (value != 0 && !counters.compareAndSet(i, value, value >>> 1));
+        }
+    }
+}
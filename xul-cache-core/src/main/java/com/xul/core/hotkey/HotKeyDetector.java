@@ -0,0 +1,166 @@
+package com.xul.core.hotkey;
+
+import com.xul.core.config.GlobalConfig;
+import com.xul.core.config.HotKeyConfig;
+import com.xul.core.redis.client.RedisClient;
+import com.xul.core.supports.HotKeyType;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 热点key探测器，每个缓存一个
+ * <p>
+ * 按采样率对访问、一级缓存未命中、二级缓存未命中分别计数，用count-min sketch估算次数，保留估算次数最大的K个key。
+ * 定时把本地热点key发布到redis有序集合汇总成集群热点key，发布后计数减半，统计结果偏向最近的访问
+ * </p>
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+@Slf4j
+public class HotKeyDetector {
+
+    /**
+     * 默认采样率
+     */
+    private static final double DEFAULT_SAMPLE_RATE = 0.01;
+
+    private static final int DEFAULT_TOP_K = 100;
+
+    private static final int DEFAULT_SKETCH_WIDTH = 1024;
+
+    private static final int DEFAULT_SKETCH_DEPTH = 4;
+
+    @Getter
+    private final String cacheName;
+
+    @Getter
+    private final double sampleRate;
+
+    private final Map<HotKeyType, CountMinSketch> sketches = new EnumMap<>(HotKeyType.class);
+
+    private final Map<HotKeyType, TopK> topKs = new EnumMap<>(HotKeyType.class);
+
+    /**
+     * 最后一次计数减半的时间，毫秒
+     */
+    private volatile long lastHalveTime = System.currentTimeMillis();
+
+    /**
+     * 减半后保留的计数相当于多长时间的访问，毫秒。访问频率稳定时，计数 = 频率 * (距上次减半的时间 + 该时长)
+     */
+    private volatile long historyWindow = 0;
+
+    private HotKeyDetector(String cacheName, HotKeyConfig config) {
+        this.cacheName = cacheName;
+        this.sampleRate = config.getSampleRate() > 0 && config.getSampleRate() <= 1 ? config.getSampleRate() : DEFAULT_SAMPLE_RATE;
+        int topK = config.getTopK() > 0 ? config.getTopK() : DEFAULT_TOP_K;
+        int width = config.getSketchWidth() > 0 ? config.getSketchWidth() : DEFAULT_SKETCH_WIDTH;
+        int depth = config.getSketchDepth() > 0 ? config.getSketchDepth() : DEFAULT_SKETCH_DEPTH;
+        for (HotKeyType type : HotKeyType.values()) {
+            sketches.put(type, new CountMinSketch(width, depth));
+            topKs.put(type, new TopK(topK));
+        }
+    }
+
+    /**
+     * 创建热点key探测器，未开启返回null
+     *
+     * @param cacheName 缓存名称
+     * @param config    热点key探测配置
+     * @return: com.xul.core.hotkey.HotKeyDetector
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public static HotKeyDetector create(String cacheName, HotKeyConfig config) {
+        if (config == null || !config.isEnable()) {
+            return null;
+        }
+        return new HotKeyDetector(cacheName, config);
+    }
+
+    /**
+     * 按采样率记录一次key的访问或未命中
+     *
+     * @param type 统计类型
+     * @param key
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public void record(HotKeyType type, String key) {
+        if (ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        long count = sketches.get(type).increment(key);
+        topKs.get(type).offer(key, count);
+    }
+
+    /**
+     * key是否是本地访问热点key
+     */
+    public boolean isHot(String key) {
+        return topKs.get(HotKeyType.ACCESS).contains(key);
+    }
+
+    /**
+     * 估算key在本服务器的每秒访问次数
+     *
+     * @param key
+     * @return: double
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public double getAccessRate(String key) {
+        long window = System.currentTimeMillis() - lastHalveTime + historyWindow;
+        if (window <= 0) {
+            return 0;
+        }
+        return sketches.get(HotKeyType.ACCESS).estimate(key) / sampleRate * 1000 / window;
+    }
+
+    /**
+     * 获取本地前n个热点key
+     *
+     * @param type 统计类型
+     * @param n    数量
+     * @return: java.util.Map<java.lang.String, java.lang.Long> 按估算次数从大到小排序，次数已按采样率折算
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public Map<String, Long> getHotKeys(HotKeyType type, int n) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        topKs.get(type).top(n).forEach((key, count) -> result.put(key, (long) (count / sampleRate)));
+        return result;
+    }
+
+    /**
+     * 本地热点key发布到redis汇总，分值按采样率折算后累加，发布后计数减半
+     *
+     * @param redisClient redis客户端
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public void publish(RedisClient redisClient) {
+        for (HotKeyType type : HotKeyType.values()) {
+            Map<String, Long> hotKeys = getHotKeys(type, Integer.MAX_VALUE);
+            if (!hotKeys.isEmpty()) {
+                String redisKey = GlobalConfig.getHotKeyRedisKey(cacheName, type);
+                hotKeys.forEach((key, count) -> redisClient.zincrby(redisKey, count, key));
+                redisClient.expireAsync(redisKey, 25, TimeUnit.HOURS);
+            }
+            sketches.get(type).halve();
+            topKs.get(type).halve();
+        }
+        long now = System.currentTimeMillis();
+        historyWindow = (historyWindow + now - lastHalveTime) / 2;
+        lastHalveTime = now;
+    }
+}
@@ -0,0 +1,110 @@
+package com.xul.core.hotkey;
+
+import com.xul.core.cache.Cache;
+import com.xul.core.cache.LayeringCache;
+import com.xul.core.config.GlobalConfig;
+import com.xul.core.manager.AbstractCacheManager;
+import com.xul.core.utils.NamedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 热点key服务，定时把每个缓存的本地热点key发布到redis汇总，并检查热点key固定
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+@Slf4j
+public class HotKeyService {
+
+    private static class InstanceHolder {
+        public static final HotKeyService instance = new HotKeyService();
+    }
+
+    public static HotKeyService getInstance() {
+        return HotKeyService.InstanceHolder.instance;
+    }
+
+    /**
+     * 缓存管理器
+     */
+    private AbstractCacheManager cacheManager;
+
+    /**
+     * 热点key固定检查间隔时间，秒
+     */
+    private static final long PIN_CHECK_INTERVAL = 5;
+
+    /**
+     * 定时发布线程池
+     */
+    private ScheduledThreadPoolExecutor publishExecutor;
+
+    /**
+     * 初始化，启动定时发布任务
+     *
+     * @param cacheManager 缓存管理器
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public synchronized void init(AbstractCacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+        if (publishExecutor != null) {
+            return;
+        }
+        long interval = Math.max(1, GlobalConfig.HOT_KEY_PUBLISH_INTERVAL);
+        publishExecutor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("layering-cache-hot-key"));
+        publishExecutor.scheduleWithFixedDelay(this::publish, interval, interval, TimeUnit.SECONDS);
+        publishExecutor.scheduleWithFixedDelay(this::checkPin, PIN_CHECK_INTERVAL, PIN_CHECK_INTERVAL, TimeUnit.SECONDS);
+        log.info("启动热点key发布任务线程成功，间隔：{}s", interval);
+    }
+
+    /**
+     * 发布所有缓存的本地热点key
+     */
+    public void publish() {
+        for (Cache cache : cacheManager.getCacheContainer().values()) {
+            if (!(cache instanceof LayeringCache) || ((LayeringCache) cache).getHotKeyDetector() == null) {
+                continue;
+            }
+            LayeringCache layeringCache = (LayeringCache) cache;
+            if (layeringCache.getRedisClient().getCircuitBreaker().isOpen()) {
+                continue;
+            }
+            try {
+                layeringCache.getHotKeyDetector().publish(layeringCache.getRedisClient());
+            } catch (Exception e) {
+                log.warn("缓存名称={},发布热点key异常：{}", cache.getCacheName(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 检查所有缓存的热点key固定
+     */
+    public void checkPin() {
+        for (Cache cache : cacheManager.getCacheContainer().values()) {
+            if (!(cache instanceof LayeringCache)) {
+                continue;
+            }
+            try {
+                ((LayeringCache) cache).checkHotKeyPin();
+            } catch (Exception e) {
+                log.warn("缓存名称={},检查热点key固定异常：{}", cache.getCacheName(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 停止定时发布
+     */
+    public synchronized void shutdown() {
+        if (publishExecutor != null) {
+            publishExecutor.shutdownNow();
+            publishExecutor = null;
+        }
+    }
+}
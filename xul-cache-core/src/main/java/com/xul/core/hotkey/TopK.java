@@ -0,0 +1,112 @@
+package com.xul.core.hotkey;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 热点key集合，保留估算次数最大的K个key
+ * <p>
+ * 新key的估算次数超过当前最小值才会进入集合，超出容量后由获取到锁的线程淘汰最小的key，
+ * 获取不到锁的线程不等待，集合短时间内可能略大于容量
+ * </p>
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+public class TopK {
+
+    private final int capacity;
+
+    private final ConcurrentHashMap<String, Long> counts;
+
+    private final ReentrantLock trimLock = new ReentrantLock();
+
+    /**
+     * 集合中最小的估算次数
+     */
+    private volatile long minCount;
+
+    public TopK(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.counts = new ConcurrentHashMap<>(this.capacity * 2);
+    }
+
+    /**
+     * 提交key的估算次数
+     *
+     * @param key
+     * @param count 估算次数
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public void offer(String key, long count) {
+        if (count <= minCount && counts.size() >= capacity && !counts.containsKey(key)) {
+            return;
+        }
+        counts.put(key, count);
+        if (counts.size() > capacity && trimLock.tryLock()) {
+            try {
+                trim();
+            } finally {
+                trimLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * key是否在集合中
+     */
+    public boolean contains(String key) {
+        return counts.containsKey(key);
+    }
+
+    /**
+     * 按估算次数从大到小获取前n个key
+     *
+     * @param n 数量
+     * @return: java.util.Map<java.lang.String, java.lang.Long>
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public Map<String, Long> top(int n) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(counts.entrySet());
+        entries.sort((e1, e2) -> Long.compare(e2.getValue(), e1.getValue()));
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < entries.size() && i < n; i++) {
+            result.put(entries.get(i).getKey(), entries.get(i).getValue());
+        }
+        return result;
+    }
+
+    /**
+     * 所有估算次数减半，和 {@link CountMinSketch#halve()} 一起调用
+     */
+    public void halve() {
+        trimLock.lock();
+        try {
+            counts.replaceAll((key, count) -> count >>> 1);
+            counts.values().removeIf(count -> count == 0);
+            minCount = minCount >>> 1;
+        } finally {
+            trimLock.unlock();
+        }
+    }
+
+    /**
+     * 淘汰最小的key直到不超过容量，并更新最小估算次数
+     */
+    private void trim() {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(counts.entrySet());
+        entries.sort(Map.Entry.comparingByValue());
+        int removeCount = entries.size() - capacity;
+        for (int i = 0; i < removeCount; i++) {
+            counts.remove(entries.get(i).getKey(), entries.get(i).getValue());
+        }
+        minCount = removeCount < entries.size() ? entries.get(Math.max(0, removeCount)).getValue() : 0;
+    }
+}
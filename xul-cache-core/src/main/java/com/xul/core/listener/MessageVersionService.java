@@ -0,0 +1,130 @@
+package com.xul.core.listener;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.xul.core.config.GlobalConfig;
+import com.xul.core.redis.client.RedisClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 消息版本号服务
+ * <p>
+ * 只携带key和版本号的消息模式下，发布时用redis计数器给每条更新、删除消息分配递增的版本号并去掉缓存值。
+ * 本地记录每个key最后处理的版本号，本服务器发布的消息和迟到的旧消息版本号不大于本地版本号，收到时直接跳过
+ * </p>
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+public class MessageVersionService {
+
+    /**
+     * 本地版本号最多记录的key数量，淘汰后收到消息按新消息处理
+     */
+    private static final long MAXIMUM_SIZE = 100000;
+
+    private static class InstanceHolder {
+        public static final MessageVersionService instance = new MessageVersionService();
+    }
+
+    public static MessageVersionService getInstance() {
+        return MessageVersionService.InstanceHolder.instance;
+    }
+
+    /**
+     * 本地版本号，key为缓存名称+缓存key
+     */
+    private final Cache<String, Long> versions = Caffeine.newBuilder().maximumSize(MAXIMUM_SIZE).build();
+
+    /**
+     * 给消息分配版本号，批量消息一次分配
+     *
+     * @param redisClient redis客户端
+     * @param message     消息
+     * @param nameSpace   命名空间
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public void stamp(RedisClient redisClient, RedisPubSubMessage message, String nameSpace) {
+        List<RedisPubSubMessage> messages = getKeyMessages(message);
+        if (messages.isEmpty()) {
+            return;
+        }
+        stamp(messages, redisClient.incrby(GlobalConfig.getMessageVersionRedisKey(nameSpace), messages.size()));
+    }
+
+    /**
+     * 异步给消息分配版本号
+     *
+     * @param redisClient redis客户端
+     * @param message     消息
+     * @param nameSpace   命名空间
+     * @return: java.util.concurrent.CompletableFuture<java.lang.Void>
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public CompletableFuture<Void> stampAsync(RedisClient redisClient, RedisPubSubMessage message, String nameSpace) {
+        List<RedisPubSubMessage> messages = getKeyMessages(message);
+        if (messages.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return redisClient.incrbyAsync(GlobalConfig.getMessageVersionRedisKey(nameSpace), messages.size())
+                .thenAccept(maxVersion -> stamp(messages, maxVersion));
+    }
+
+    /**
+     * 检查消息是否比本地版本新，是则更新本地版本号
+     *
+     * @param message 消息
+     * @return: boolean 没有版本号或比本地版本新返回true
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public boolean accept(RedisPubSubMessage message) {
+        if (message.getVersion() <= 0) {
+            return true;
+        }
+        long version = message.getVersion();
+        boolean[] newer = new boolean[1];
+        versions.asMap().compute(getVersionKey(message.getCacheName(), message.getKey()), (versionKey, localVersion) -> {
+            if (localVersion != null && localVersion >= version) {
+                return localVersion;
+            }
+            newer[0] = true;
+            return version;
+        });
+        return newer[0];
+    }
+
+    /**
+     * 按顺序分配版本号，记录为本地版本号，并去掉缓存值
+     */
+    private void stamp(List<RedisPubSubMessage> messages, long maxVersion) {
+        long version = maxVersion - messages.size();
+        for (RedisPubSubMessage message : messages) {
+            message.setVersion(++version);
+            message.setValue(null);
+            versions.asMap().merge(getVersionKey(message.getCacheName(), message.getKey()), version, Math::max);
+        }
+    }
+
+    private List<RedisPubSubMessage> getKeyMessages(RedisPubSubMessage message) {
+        List<RedisPubSubMessage> result = new ArrayList<>();
+        if (RedisPubSubMessageType.BATCH.equals(message.getMessageType())) {
+            for (RedisPubSubMessage batchMessage : message.getMessages()) {
+                result.addAll(getKeyMessages(batchMessage));
+            }
+        } else if (!RedisPubSubMessageType.CLEAR.equals(message.getMessageType())) {
+            result.add(message);
+        }
+        return result;
+    }
+
+    private static String getVersionKey(String cacheName, String key) {
+        return cacheName + '\u0000' + key;
+    }
+}
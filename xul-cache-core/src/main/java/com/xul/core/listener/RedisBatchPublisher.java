@@ -0,0 +1,181 @@
+package com.xul.core.listener;
+
+import com.xul.core.config.GlobalConfig;
+import com.xul.core.redis.client.RedisClient;
+import com.xul.core.supports.InvalidationMode;
+import com.xul.core.utils.NamedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * redis 批量消息发布者
+ * <p>
+ * 消息先放入缓冲区，同一个缓存的同一个key只保留最后一条，清空缓存的消息覆盖该缓存之前的所有消息。
+ * 每隔 {@link GlobalConfig#PUBLISH_BATCH_INTERVAL} 毫秒或缓冲消息数达到 {@link GlobalConfig#PUBLISH_BATCH_SIZE} 时，
+ * 合并成一条批量消息发布，批量导入时大幅减少消息数量和发布命令
+ * </p>
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+@Slf4j
+public class RedisBatchPublisher {
+
+    private static class InstanceHolder {
+        public static final RedisBatchPublisher instance = new RedisBatchPublisher();
+    }
+
+    public static RedisBatchPublisher getInstance() {
+        return RedisBatchPublisher.InstanceHolder.instance;
+    }
+
+    /**
+     * redis客户端
+     */
+    private RedisClient redisClient;
+
+    /**
+     * 待发布的消息，key为缓存名称+缓存key，清空缓存的消息key为缓存名称
+     */
+    private Map<String, RedisPubSubMessage> buffer = new LinkedHashMap<>();
+
+    /**
+     * 当前缓冲区发布完成的通知
+     */
+    private CompletableFuture<Void> flushFuture = new CompletableFuture<>();
+
+    /**
+     * 定时发布线程池
+     */
+    private ScheduledThreadPoolExecutor publishExecutor;
+
+    /**
+     * 初始化，没有配置批量发布间隔不开启
+     *
+     * @param redisClient redis客户端
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public synchronized void init(RedisClient redisClient) {
+        this.redisClient = redisClient;
+        if (!isEnable() || publishExecutor != null) {
+            return;
+        }
+        publishExecutor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("layering-cache-publish"));
+        publishExecutor.scheduleWithFixedDelay(this::flush, GlobalConfig.PUBLISH_BATCH_INTERVAL, GlobalConfig.PUBLISH_BATCH_INTERVAL, TimeUnit.MILLISECONDS);
+        log.info("启动批量消息发布任务线程成功，间隔：{}ms，批量大小：{}", GlobalConfig.PUBLISH_BATCH_INTERVAL, GlobalConfig.PUBLISH_BATCH_SIZE);
+    }
+
+    /**
+     * 是否开启批量发布，客户端缓存跟踪模式下不发布消息
+     */
+    public boolean isEnable() {
+        return GlobalConfig.PUBLISH_BATCH_INTERVAL > 0 && !InvalidationMode.TRACKING.equals(GlobalConfig.INVALIDATION_MODE);
+    }
+
+    /**
+     * 是否已启动批量发布
+     */
+    public boolean isRunning() {
+        return publishExecutor != null;
+    }
+
+    /**
+     * 消息放入缓冲区
+     *
+     * @param message 消息内容
+     * @return: java.util.concurrent.CompletableFuture<java.lang.Void> 消息所在批次发布完成时结束
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public CompletableFuture<Void> publish(RedisPubSubMessage message) {
+        CompletableFuture<Void> future;
+        ScheduledThreadPoolExecutor executor;
+        boolean full;
+        synchronized (this) {
+            if (RedisPubSubMessageType.CLEAR.equals(message.getMessageType())) {
+                /**清空缓存覆盖该缓存之前的消息*/
+                Iterator<RedisPubSubMessage> iterator = buffer.values().iterator();
+                while (iterator.hasNext()) {
+                    if (message.getCacheName().equals(iterator.next().getCacheName())) {
+                        iterator.remove();
+                    }
+                }
+                buffer.put(message.getCacheName(), message);
+            } else {
+                String bufferKey = message.getCacheName() + '\u0000' + message.getKey();
+                /**先删除再放入，保证同一个key的最后一条消息排在后面*/
+                buffer.remove(bufferKey);
+                buffer.put(bufferKey, message);
+            }
+            future = flushFuture;
+            executor = publishExecutor;
+            full = executor == null || buffer.size() >= Math.max(1, GlobalConfig.PUBLISH_BATCH_SIZE);
+        }
+        if (!full) {
+            return future;
+        }
+        if (executor == null) {
+            /**已停止定时发布，直接发布*/
+            flush();
+            return future;
+        }
+        try {
+            executor.execute(this::flush);
+        } catch (RejectedExecutionException e) {
+            flush();
+        }
+        return future;
+    }
+
+    /**
+     * 发布缓冲区中的消息，多条消息合并成一条批量消息
+     */
+    public void flush() {
+        List<RedisPubSubMessage> messages;
+        CompletableFuture<Void> future;
+        synchronized (this) {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            messages = new ArrayList<>(buffer.values());
+            future = flushFuture;
+            buffer = new LinkedHashMap<>();
+            flushFuture = new CompletableFuture<>();
+        }
+        try {
+            RedisPubSubMessage message = messages.size() == 1 ? messages.get(0) : RedisPubSubMessage.builder()
+                    .messageType(RedisPubSubMessageType.BATCH)
+                    .nodeId(GlobalConfig.NODE_ID)
+                    .messages(messages)
+                    .build();
+            RedisPublisher.publisher(redisClient, message, GlobalConfig.NAMESPACE);
+            future.complete(null);
+        } catch (Exception e) {
+            log.error("layering-cache 批量发布消息异常，丢失 {} 条消息：{}", messages.size(), e.getMessage(), e);
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 停止定时发布并发布剩余的消息
+     */
+    public synchronized void shutdown() {
+        if (publishExecutor == null) {
+            return;
+        }
+        publishExecutor.shutdownNow();
+        publishExecutor = null;
+        flush();
+    }
+}
@@ -48,8 +48,8 @@ public class RedisMessageListener implements RedisPubSubListener<String, String>
             // 更新最后一次处理推消息的时间
             redisMessageService.updateLastPushTime();
 
-            /**拉取消息*/
-            redisMessageService.pullMessage();
+            /**处理推送的消息，不连续时拉取消息*/
+            redisMessageService.pushMessage(message);
         } catch (Exception e) {
             e.printStackTrace();
             log.error("layering-cache 清除一级缓存异常：{}", e.getMessage(), e);
@@ -5,11 +5,15 @@ import com.xul.core.cache.LayeringCache;
 import com.xul.core.config.GlobalConfig;
 import com.xul.core.logger.LoggerHelper;
 import com.xul.core.manager.AbstractCacheManager;
-import com.xul.core.utils.GSONUtil;
+import com.xul.core.redis.serializer.RedisSerializer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.CollectionUtils;
 
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -23,6 +27,11 @@ import java.util.concurrent.atomic.AtomicLong;
 public class RedisMessageService {
 
 
+    /**
+     * 推送消息中偏移量和消息内容的分隔符
+     */
+    public static final String PUSH_MESSAGE_SEPARATOR = ":";
+
     private static class InstanceHolder {
         public static final RedisMessageService instance = new RedisMessageService();
     }
@@ -82,39 +91,122 @@ public class RedisMessageService {
         }
         long endOffset = maxOffset - oldOffset - 1;
         /**获取消息*/
-        List<String> messages = cacheManager.getRedisClient().lrange(GlobalConfig.getMessageRedisKey(), 0, endOffset, GlobalConfig.GLOBAL_REDIS_SERIALIZER);
+        List<RedisPubSubMessage> messages = cacheManager.getRedisClient().lrange(GlobalConfig.getMessageRedisKey(), 0, endOffset, getMessageSerializer(), RedisPubSubMessage.class);
         if (CollectionUtils.isEmpty(messages)) {
             return;
         }
         updateLastPullTime();
-        for (String message : messages) {
-            RedisPubSubMessage pubSubMessage = GSONUtil.fromJson(message, RedisPubSubMessage.class);
+        for (RedisPubSubMessage message : messages) {
+            if (message == null) {
+                continue;
+            }
             if (LoggerHelper.isDebugEnabled()) {
                 log.info("【缓存同步】redis 通过PULL方式处理本地缓存，startOffset:【0】,endOffset:【{}】,消息内容：{}", endOffset, message);
             }
-            //获取缓存处理器
-            Cache cache = cacheManager.getCacheContainer().get(pubSubMessage.getCacheName());
-            if (cache != null && cache instanceof LayeringCache) {
-                switch (pubSubMessage.getMessageType()) {
-                    case UPDATE:
-                        /**更新一级缓存*/
-                        ((LayeringCache) cache).getFirstCache().put(pubSubMessage.getKey(), pubSubMessage.getValue());
-                        log.info("【一级缓存同步】更新一级缓存 {} 数据,key={},消息内容={}", pubSubMessage.getCacheName(), pubSubMessage.getKey(), message);
-                        break;
-                    case EVICT:
-                        /**清除一级缓存*/
+            handleMessage(message);
+        }
+    }
+
+    /**
+     * 处理推送消息
+     * <p>
+     * 推送消息携带消息内容和偏移量时，偏移量紧接本地偏移量的消息直接处理；序号不连续（丢失了推送消息或消息队列已重置）、
+     * 消息无法识别或只是通知时，回退到拉取消息队列
+     * </p>
+     *
+     * @param message 推送消息内容
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public void pushMessage(String message) {
+        int index = message.indexOf(PUSH_MESSAGE_SEPARATOR);
+        if (index <= 0) {
+            pullMessage();
+            return;
+        }
+        long offset;
+        try {
+            offset = Long.parseLong(message.substring(0, index));
+        } catch (NumberFormatException e) {
+            pullMessage();
+            return;
+        }
+        if (!OFFSET.compareAndSet(offset - 1, offset)) {
+            if (LoggerHelper.isDebugEnabled()) {
+                log.info("【缓存同步】推送消息偏移量不连续，本地偏移量:【{}】,消息偏移量:【{}】,回退到拉取消息", OFFSET.get(), offset);
+            }
+            pullMessage();
+            return;
+        }
+        RedisPubSubMessage pubSubMessage = getMessageSerializer().deserialize(Base64.getDecoder().decode(message.substring(index + 1)), RedisPubSubMessage.class);
+        if (pubSubMessage == null) {
+            return;
+        }
+        if (LoggerHelper.isDebugEnabled()) {
+            log.info("【缓存同步】redis 通过PUSH方式处理本地缓存，offset:【{}】,消息内容：{}", offset, pubSubMessage);
+        }
+        handleMessage(pubSubMessage);
+    }
+
+    /**
+     * 处理消息，更新、删除或清理一级缓存，批量消息按顺序处理其中的每条消息
+     *
+     * @param pubSubMessage 消息
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public void handleMessage(RedisPubSubMessage pubSubMessage) {
+        if (GlobalConfig.NODE_ID.equals(pubSubMessage.getNodeId())) {
+            /**本服务器发布的消息，发布前已处理本地一级缓存*/
+            if (LoggerHelper.isDebugEnabled()) {
+                log.info("【一级缓存同步】跳过本服务器发布的消息：{}", pubSubMessage);
+            }
+            return;
+        }
+        if (RedisPubSubMessageType.BATCH.equals(pubSubMessage.getMessageType())) {
+            log.info("【一级缓存同步】处理批量消息，消息数量={}", pubSubMessage.getMessages().size());
+            for (RedisPubSubMessage batchMessage : pubSubMessage.getMessages()) {
+                handleMessage(batchMessage);
+            }
+            return;
+        }
+        //获取缓存处理器
+        Cache cache = cacheManager.getCacheContainer().get(pubSubMessage.getCacheName());
+        if (cache != null && cache instanceof LayeringCache) {
+            if (!MessageVersionService.getInstance().accept(pubSubMessage)) {
+                /**本服务器发布的消息或迟到的旧消息*/
+                if (LoggerHelper.isDebugEnabled()) {
+                    log.info("【一级缓存同步】跳过旧版本消息 {} 数据,key={},version={}", pubSubMessage.getCacheName(), pubSubMessage.getKey(), pubSubMessage.getVersion());
+                }
+                return;
+            }
+            switch (pubSubMessage.getMessageType()) {
+                case UPDATE:
+                    if (pubSubMessage.getVersion() > 0) {
+                        /**只携带key和版本号，删除一级缓存，下次读取时从二级缓存加载*/
                         ((LayeringCache) cache).getFirstCache().evict(pubSubMessage.getKey());
-                        log.info("【一级缓存同步】删除一级缓存 {} 数据,key={}", pubSubMessage.getCacheName(), pubSubMessage.getKey());
-                        break;
-                    case CLEAR:
-                        /**清理一级缓存*/
-                        ((LayeringCache) cache).getFirstCache().clear();
-                        log.info("【一级缓存同步】清理一级缓存 {}!", pubSubMessage.getCacheName());
-                        break;
-                    default:
-                        log.error("接收到没有定义的消息数据");
+                        log.info("【一级缓存同步】删除一级缓存 {} 数据,key={},version={}", pubSubMessage.getCacheName(), pubSubMessage.getKey(), pubSubMessage.getVersion());
                         break;
-                }
+                    }
+                    /**更新一级缓存*/
+                    ((LayeringCache) cache).getFirstCache().put(pubSubMessage.getKey(), pubSubMessage.getValue());
+                    log.info("【一级缓存同步】更新一级缓存 {} 数据,key={},消息内容={}", pubSubMessage.getCacheName(), pubSubMessage.getKey(), pubSubMessage);
+                    break;
+                case EVICT:
+                    /**清除一级缓存*/
+                    ((LayeringCache) cache).getFirstCache().evict(pubSubMessage.getKey());
+                    log.info("【一级缓存同步】删除一级缓存 {} 数据,key={}", pubSubMessage.getCacheName(), pubSubMessage.getKey());
+                    break;
+                case CLEAR:
+                    /**清理一级缓存*/
+                    ((LayeringCache) cache).getFirstCache().clear();
+                    log.info("【一级缓存同步】清理一级缓存 {}!", pubSubMessage.getCacheName());
+                    break;
+                default:
+                    log.error("接收到没有定义的消息数据");
+                    break;
             }
         }
     }
@@ -138,6 +230,81 @@ public class RedisMessageService {
     }
 
 
+    /**
+     * 本地已处理的消息偏移量
+     */
+    public long getOffset() {
+        return OFFSET.get();
+    }
+
+    /**
+     * 获取指定偏移量的消息，不存在返回null
+     *
+     * @param offset 消息偏移量
+     * @return: java.lang.String
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public String getMessage(long offset) {
+        long maxOffset = cacheManager.getRedisClient().llen(GlobalConfig.getMessageRedisKey()) - 1;
+        if (offset < 0 || offset > maxOffset) {
+            return null;
+        }
+        List<String> messages = cacheManager.getRedisClient().lrange(GlobalConfig.getMessageRedisKey(), maxOffset - offset, maxOffset - offset, getMessageSerializer(), String.class);
+        return CollectionUtils.isEmpty(messages) ? null : messages.get(0);
+    }
+
+    /**
+     * 获取指定偏移量之后的消息，用于判断一级缓存快照是否过期
+     * <p>
+     * 偏移量处的消息和快照时记录的不一致，说明消息队列已被清空重建，无法确定期间的变更，返回null
+     * </p>
+     *
+     * @param offset  快照时的消息偏移量
+     * @param message 快照时偏移量处的消息
+     * @return: java.util.List<com.xul.core.listener.RedisPubSubMessage>
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public List<RedisPubSubMessage> getMessagesSince(long offset, String message) {
+        long maxOffset = cacheManager.getRedisClient().llen(GlobalConfig.getMessageRedisKey()) - 1;
+        if (maxOffset < offset) {
+            return null;
+        }
+        if (offset >= 0 && !Objects.equals(message, getMessage(offset))) {
+            return null;
+        }
+        List<RedisPubSubMessage> result = new ArrayList<>();
+        if (maxOffset == offset) {
+            return result;
+        }
+        List<RedisPubSubMessage> messages = cacheManager.getRedisClient().lrange(GlobalConfig.getMessageRedisKey(), 0, maxOffset - offset - 1, getMessageSerializer(), RedisPubSubMessage.class);
+        if (messages != null) {
+            /**消息队列从新到旧排列，批量消息展开后保持同样的顺序*/
+            for (RedisPubSubMessage pubSubMessage : messages) {
+                if (pubSubMessage == null) {
+                    /**无法识别的消息，不能确定期间的变更*/
+                    return null;
+                }
+                if (RedisPubSubMessageType.BATCH.equals(pubSubMessage.getMessageType())) {
+                    List<RedisPubSubMessage> batchMessages = new ArrayList<>(pubSubMessage.getMessages());
+                    Collections.reverse(batchMessages);
+                    result.addAll(batchMessages);
+                } else {
+                    result.add(pubSubMessage);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 消息序列化器，同时支持JSON和二进制格式
+     */
+    public RedisSerializer getMessageSerializer() {
+        return new RedisPubSubMessageSerializer(cacheManager.getRedisClient().getValueSerializer());
+    }
+
     /**
      * 更新最后一次处理拉消息的时间
      *
@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 /**
  * redis  pub/sub 消息
  *
@@ -38,6 +40,21 @@ public class RedisPubSubMessage {
      */
     private RedisPubSubMessageType messageType;
 
+    /**
+     * 消息版本号，只携带key和版本号的消息使用，0表示没有版本号
+     */
+    private long version;
+
+    /**
+     * 发布消息的服务器标识 {@link com.xul.core.config.GlobalConfig#NODE_ID}，旧版本服务器发布的消息为null
+     */
+    private String nodeId;
+
+    /**
+     * 批量消息中的消息，按发布顺序处理
+     */
+    private List<RedisPubSubMessage> messages;
+
 
     @Override
     public String toString() {
@@ -46,6 +63,12 @@ public class RedisPubSubMessage {
         sb.append(", key=").append(key);
         sb.append(", value=").append(value);
         sb.append(", messageType=").append(messageType);
+        if (version > 0) {
+            sb.append(", version=").append(version);
+        }
+        if (messages != null) {
+            sb.append(", messages=").append(messages.size());
+        }
         sb.append('}');
         return sb.toString();
     }
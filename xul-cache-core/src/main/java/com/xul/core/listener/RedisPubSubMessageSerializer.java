@@ -0,0 +1,226 @@
+package com.xul.core.listener;
+
+import com.xul.core.config.GlobalConfig;
+import com.xul.core.redis.serializer.RedisSerializer;
+import com.xul.core.redis.serializer.SerializationException;
+import com.xul.core.utils.GSONUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 消息序列化器，消息队列和stream的读写都使用
+ * <p>
+ * 二进制格式：魔数、格式版本号、缓存名称表，之后是消息，最后是可选的发布消息的服务器标识。消息依次是消息类型序号、缓存名称在名称表中的下标、key、版本号、
+ * 值类型和用缓存的值序列化器序列化后的值，长度和整数都使用varint编码，批量消息中的缓存名称只写一次。
+ * 服务器标识追加在末尾，不认识它的旧版本读完消息后忽略剩余字节，所以格式版本号不变。
+ * 序列化字符串时按原来的JSON格式（JSON字符串经Protostuff序列化），反序列化时按魔数区分两种格式，
+ * 滚动升级期间新旧版本的服务器可以共存，全部升级后再开启二进制格式
+ * </p>
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+@Slf4j
+public class RedisPubSubMessageSerializer implements RedisSerializer {
+
+    /**
+     * 二进制格式魔数，旧格式（Protostuff）的第一个字节是0x0B
+     */
+    private static final byte MAGIC = (byte) 0xB5;
+
+    /**
+     * 二进制格式版本号
+     */
+    private static final byte VERSION = 1;
+
+    /**
+     * 缓存值序列化器
+     */
+    private final RedisSerializer valueRedisSerializer;
+
+    public RedisPubSubMessageSerializer(RedisSerializer valueRedisSerializer) {
+        this.valueRedisSerializer = valueRedisSerializer;
+    }
+
+    @Override
+    public <T> byte[] serialize(T value) throws SerializationException {
+        if (!(value instanceof RedisPubSubMessage)) {
+            return GlobalConfig.GLOBAL_REDIS_SERIALIZER.serialize(value);
+        }
+        try {
+            RedisPubSubMessage message = (RedisPubSubMessage) value;
+            Map<String, Integer> cacheNames = new LinkedHashMap<>();
+            collectCacheNames(message, cacheNames);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+            out.write(MAGIC);
+            out.write(VERSION);
+            writeVarint(out, cacheNames.size());
+            for (String cacheName : cacheNames.keySet()) {
+                writeString(out, cacheName);
+            }
+            writeMessage(out, message, cacheNames);
+            /**批量消息中的消息都由同一个服务器发布，服务器标识只写一次*/
+            writeString(out, message.getNodeId());
+            return out.toByteArray();
+        } catch (Exception e) {
+            throw new SerializationException(String.format("RedisPubSubMessageSerializer 序列化异常: %s, 【%s】", e.getMessage(), value), e);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T deserialize(byte[] bytes, Class<T> resultType) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            /**旧格式，JSON字符串*/
+            String json = GlobalConfig.GLOBAL_REDIS_SERIALIZER.deserialize(bytes, String.class);
+            return String.class.equals(resultType) ? (T) json : (T) GSONUtil.fromJson(json, RedisPubSubMessage.class);
+        }
+        if (bytes.length < 2 || bytes[1] > VERSION) {
+            log.warn("不支持的消息格式版本：{}，跳过消息", bytes.length < 2 ? null : bytes[1]);
+            return null;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 2, bytes.length - 2);
+            int size = readVarint(buffer);
+            List<String> cacheNames = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                cacheNames.add(readString(buffer));
+            }
+            RedisPubSubMessage message = readMessage(buffer, cacheNames);
+            /**服务器标识是可选的尾部字段，旧版本发布的消息没有*/
+            message.setNodeId(buffer.hasRemaining() ? readString(buffer) : null);
+            return String.class.equals(resultType) ? (T) GSONUtil.toJson(message) : (T) message;
+        } catch (Exception e) {
+            /**不认识的消息跳过，不影响同一批读取的其它消息*/
+            log.error("RedisPubSubMessageSerializer 反序列化异常，跳过消息：{}", e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private void collectCacheNames(RedisPubSubMessage message, Map<String, Integer> cacheNames) {
+        if (message.getCacheName() != null && !cacheNames.containsKey(message.getCacheName())) {
+            cacheNames.put(message.getCacheName(), cacheNames.size());
+        }
+        if (message.getMessages() != null) {
+            message.getMessages().forEach(batchMessage -> collectCacheNames(batchMessage, cacheNames));
+        }
+    }
+
+    private void writeMessage(ByteArrayOutputStream out, RedisPubSubMessage message, Map<String, Integer> cacheNames) {
+        writeVarint(out, message.getMessageType().ordinal());
+        if (RedisPubSubMessageType.BATCH.equals(message.getMessageType())) {
+            writeVarint(out, message.getMessages().size());
+            for (RedisPubSubMessage batchMessage : message.getMessages()) {
+                writeMessage(out, batchMessage, cacheNames);
+            }
+            return;
+        }
+        /**缓存名称下标加1，0表示null*/
+        writeVarint(out, message.getCacheName() == null ? 0 : cacheNames.get(message.getCacheName()) + 1);
+        writeString(out, message.getKey());
+        writeVarint(out, message.getVersion());
+        Object value = message.getValue();
+        if (value == null) {
+            writeString(out, null);
+            return;
+        }
+        writeString(out, value.getClass().getName());
+        writeBytes(out, valueRedisSerializer.serialize(value));
+    }
+
+    private RedisPubSubMessage readMessage(ByteBuffer buffer, List<String> cacheNames) {
+        RedisPubSubMessage message = new RedisPubSubMessage();
+        message.setMessageType(RedisPubSubMessageType.values()[readVarint(buffer)]);
+        if (RedisPubSubMessageType.BATCH.equals(message.getMessageType())) {
+            int size = readVarint(buffer);
+            List<RedisPubSubMessage> messages = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                messages.add(readMessage(buffer, cacheNames));
+            }
+            message.setMessages(messages);
+            return message;
+        }
+        int cacheNameIndex = readVarint(buffer);
+        message.setCacheName(cacheNameIndex == 0 ? null : cacheNames.get(cacheNameIndex - 1));
+        message.setKey(readString(buffer));
+        message.setVersion(readVarLong(buffer));
+        String className = readString(buffer);
+        if (className == null) {
+            return message;
+        }
+        byte[] value = readBytes(buffer);
+        try {
+            message.setValue(valueRedisSerializer.deserialize(value, Class.forName(className, false, Thread.currentThread().getContextClassLoader())));
+        } catch (Exception e) {
+            /**值无法反序列化时改为删除一级缓存*/
+            log.warn("消息中的缓存值反序列化异常，改为删除一级缓存 key={}：{}", message.getKey(), e.getMessage());
+            message.setMessageType(RedisPubSubMessageType.EVICT);
+        }
+        return message;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        return (int) readVarLong(buffer);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new SerializationException("varint格式不正确");
+    }
+
+    /**
+     * 字符串长度加1，0表示null
+     */
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        writeBytes(out, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = readBytes(buffer);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(ByteArrayOutputStream out, byte[] bytes) {
+        if (bytes == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        writeVarint(out, bytes.length + 1L);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        int length = readVarint(buffer);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
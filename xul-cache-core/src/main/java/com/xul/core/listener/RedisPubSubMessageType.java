@@ -20,7 +20,12 @@ public enum RedisPubSubMessageType {
     /**
      * 清空缓存
      */
-    CLEAR("清空缓存");
+    CLEAR("清空缓存"),
+
+    /**
+     * 批量消息
+     */
+    BATCH("批量消息");
 
     private String label;
 
@@ -3,9 +3,15 @@ package com.xul.core.listener;
 import com.xul.core.config.GlobalConfig;
 import com.xul.core.logger.LoggerHelper;
 import com.xul.core.redis.client.RedisClient;
+import com.xul.core.redis.serializer.RedisSerializer;
+import com.xul.core.supports.InvalidationMode;
+import com.xul.core.supports.MessageCodec;
+import com.xul.core.supports.UpdateMessageMode;
 import com.xul.core.utils.GSONUtil;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -25,20 +31,63 @@ public class RedisPublisher {
      * @param message     消息内容
      */
     public static void publisher(RedisClient redisClient, RedisPubSubMessage message) {
+        if (RedisBatchPublisher.getInstance().isRunning()) {
+            // 合并后批量发布
+            RedisBatchPublisher.getInstance().publish(message);
+            return;
+        }
+        if (UpdateMessageMode.KEY_VERSION.equals(GlobalConfig.UPDATE_MESSAGE_MODE)
+                && !InvalidationMode.TRACKING.equals(GlobalConfig.INVALIDATION_MODE)) {
+            // 分配版本号和发布消息在回调中依次执行，写线程不等待INCRBY，版本号保证接收方按顺序处理
+            publisherAsync(redisClient, message).whenComplete((v, throwable) -> {
+                if (throwable != null) {
+                    log.error("redis消息发布者发布【{}】消息异常：{}", message.toString(), throwable.getMessage(), throwable);
+                }
+            });
+            return;
+        }
         publisher(redisClient, message, GlobalConfig.NAMESPACE);
     }
 
     /**
-     * 发布消息到频道（Channel）
+     * 同步发布消息到频道（Channel），批量发布线程调用，发布完成后返回
      *
      * @param redisClient redis客户端
      * @param message     消息内容
      * @param nameSpace   命名空间
      */
     public static void publisher(RedisClient redisClient, RedisPubSubMessage message, String nameSpace) {
-        String messageJson = GSONUtil.toJson(message);
+        if (InvalidationMode.TRACKING.equals(GlobalConfig.INVALIDATION_MODE)) {
+            // 客户端缓存跟踪模式下由redis推送失效消息
+            return;
+        }
+        if (UpdateMessageMode.KEY_VERSION.equals(GlobalConfig.UPDATE_MESSAGE_MODE)) {
+            // 只发布key和版本号
+            MessageVersionService.getInstance().stamp(redisClient, message, nameSpace);
+        }
+        Object payload = toPayload(message);
+        RedisSerializer serializer = new RedisPubSubMessageSerializer(redisClient.getValueSerializer());
+        if (InvalidationMode.STREAM.equals(GlobalConfig.INVALIDATION_MODE)) {
+            // stream 消息日志，各服务器阻塞读取
+            redisClient.xadd(GlobalConfig.getStreamRedisKey(nameSpace), GlobalConfig.STREAM_MAX_LENGTH, serializer, payload);
+            if (LoggerHelper.isDebugEnabled()) {
+                log.info("redis消息发布者向stream【{}】发布了【{}】消息", GlobalConfig.getStreamRedisKey(nameSpace), message.toString());
+            }
+            return;
+        }
+        if (GlobalConfig.PUSH_MESSAGE_PAYLOAD) {
+            // pull 拉模式消息，等待写入完成拿到消息偏移量
+            long length = redisClient.lpushAsync(GlobalConfig.getMessageRedisKey(nameSpace), serializer, payload).join();
+            redisClient.expire(GlobalConfig.getMessageRedisKey(nameSpace), 25, TimeUnit.HOURS);
+            // pub/sub 推模式消息，携带消息内容和偏移量
+            redisClient.publish(RedisMessageListener.CHANNEL, toPushMessage(length - 1, serializer, payload));
+            if (LoggerHelper.isDebugEnabled()) {
+                log.info("redis消息发布者向频道【{}】发布了【{}】消息，偏移量：{}", RedisMessageListener.CHANNEL, message.toString(), length - 1);
+            }
+            return;
+        }
         // pull 拉模式消息
-        redisClient.lpush(GlobalConfig.getMessageRedisKey(nameSpace), GlobalConfig.GLOBAL_REDIS_SERIALIZER, messageJson);
+        redisClient.lpush(GlobalConfig.getMessageRedisKey(nameSpace), serializer, payload);
         redisClient.expire(GlobalConfig.getMessageRedisKey(nameSpace), 25, TimeUnit.HOURS);
         // pub/sub 推模式消息¬
         redisClient.publish(RedisMessageListener.CHANNEL, "m");
@@ -47,5 +96,70 @@ public class RedisPublisher {
         }
     }
 
+    /**
+     * 异步发布消息到频道（Channel），消息写入消息队列后再通知订阅者拉取
+     *
+     * @param redisClient redis客户端
+     * @param message     消息内容
+     * @return CompletableFuture
+     */
+    public static CompletableFuture<Void> publisherAsync(RedisClient redisClient, RedisPubSubMessage message) {
+        if (InvalidationMode.TRACKING.equals(GlobalConfig.INVALIDATION_MODE)) {
+            // 客户端缓存跟踪模式下由redis推送失效消息
+            return CompletableFuture.completedFuture(null);
+        }
+        if (RedisBatchPublisher.getInstance().isRunning()) {
+            // 合并后批量发布，所在批次发布完成时结束
+            return RedisBatchPublisher.getInstance().publish(message);
+        }
+        String nameSpace = GlobalConfig.NAMESPACE;
+        if (UpdateMessageMode.KEY_VERSION.equals(GlobalConfig.UPDATE_MESSAGE_MODE)) {
+            // 只发布key和版本号
+            return MessageVersionService.getInstance().stampAsync(redisClient, message, nameSpace)
+                    .thenCompose(v -> doPublisherAsync(redisClient, message, nameSpace));
+        }
+        return doPublisherAsync(redisClient, message, nameSpace);
+    }
+
+    /**
+     * 消息内容，二进制格式直接写消息对象，由消息序列化器编码，JSON格式写JSON字符串
+     */
+    private static Object toPayload(RedisPubSubMessage message) {
+        return MessageCodec.BINARY.equals(GlobalConfig.MESSAGE_CODEC) ? message : GSONUtil.toJson(message);
+    }
+
+    /**
+     * 携带消息内容的推送消息：偏移量:Base64编码的消息内容
+     */
+    private static String toPushMessage(long offset, RedisSerializer serializer, Object payload) {
+        return offset + RedisMessageService.PUSH_MESSAGE_SEPARATOR + Base64.getEncoder().encodeToString(serializer.serialize(payload));
+    }
+
+    private static CompletableFuture<Void> doPublisherAsync(RedisClient redisClient, RedisPubSubMessage message, String nameSpace) {
+        Object payload = toPayload(message);
+        RedisSerializer serializer = new RedisPubSubMessageSerializer(redisClient.getValueSerializer());
+        if (InvalidationMode.STREAM.equals(GlobalConfig.INVALIDATION_MODE)) {
+            // stream 消息日志，各服务器阻塞读取
+            return redisClient.xaddAsync(GlobalConfig.getStreamRedisKey(nameSpace), GlobalConfig.STREAM_MAX_LENGTH, serializer, payload)
+                    .thenAccept(id -> {
+                        if (LoggerHelper.isDebugEnabled()) {
+                            log.info("redis消息发布者向stream【{}】异步发布了【{}】消息，消息ID：{}", GlobalConfig.getStreamRedisKey(nameSpace), message.toString(), id);
+                        }
+                    });
+        }
+        // pull 拉模式消息
+        return redisClient.lpushAsync(GlobalConfig.getMessageRedisKey(nameSpace), serializer, payload)
+                .thenCompose(length -> {
+                    redisClient.expireAsync(GlobalConfig.getMessageRedisKey(nameSpace), 25, TimeUnit.HOURS);
+                    // pub/sub 推模式消息
+                    return redisClient.publishAsync(RedisMessageListener.CHANNEL, GlobalConfig.PUSH_MESSAGE_PAYLOAD ? toPushMessage(length - 1, serializer, payload) : "m");
+                })
+                .thenAccept(count -> {
+                    if (LoggerHelper.isDebugEnabled()) {
+                        log.info("redis消息发布者向频道【{}】异步发布了【{}】消息", RedisMessageListener.CHANNEL, message.toString());
+                    }
+                });
+    }
+
 
 }
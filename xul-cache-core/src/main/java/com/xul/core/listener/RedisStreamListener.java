@@ -0,0 +1,177 @@
+package com.xul.core.listener;
+
+import com.xul.core.cache.Cache;
+import com.xul.core.cache.LayeringCache;
+import com.xul.core.config.GlobalConfig;
+import com.xul.core.logger.LoggerHelper;
+import com.xul.core.manager.AbstractCacheManager;
+import com.xul.core.redis.serializer.RedisSerializer;
+import com.xul.core.utils.NamedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * redis Streams消息日志读取者
+ * <p>
+ * 每个服务器记录最后读取的消息ID，用XREAD BLOCK按顺序读取之后的消息，不依赖pub/sub通知，也不需要定时重置消息队列。
+ * stream按最大长度裁剪，服务器落后太多导致未读的消息被裁剪时，清空所有一级缓存
+ * </p>
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+@Slf4j
+public class RedisStreamListener {
+
+    /**
+     * stream为空时的起始消息ID
+     */
+    private static final String BEGIN_ID = "0-0";
+
+    /**
+     * 每次最多读取的消息数量
+     */
+    private static final long READ_COUNT = 100;
+
+    /**
+     * 没有新消息时的阻塞时间，毫秒
+     */
+    private static final long BLOCK_TIME = 5000;
+
+    private static class InstanceHolder {
+        public static final RedisStreamListener instance = new RedisStreamListener();
+    }
+
+    public static RedisStreamListener getInstance() {
+        return RedisStreamListener.InstanceHolder.instance;
+    }
+
+    /**
+     * 缓存管理器
+     */
+    private AbstractCacheManager cacheManager;
+
+    /**
+     * redis消息处理器
+     */
+    private RedisMessageService redisMessageService;
+
+    /**
+     * 本地最后读取的消息ID
+     */
+    private volatile String lastId = BEGIN_ID;
+
+    /**
+     * 读取线程
+     */
+    private ExecutorService readExecutor;
+
+    /**
+     * 初始化，同步最新的消息ID并启动读取线程
+     *
+     * @param cacheManager 缓存管理器
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public synchronized void init(AbstractCacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+        redisMessageService = RedisMessageService.getInstance().init(cacheManager);
+        if (readExecutor != null) {
+            return;
+        }
+        /**服务启动同步最新的消息ID*/
+        syncLastId();
+        readExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("layering-cache-stream"));
+        readExecutor.execute(this::readLoop);
+        log.info("启动stream消息读取线程成功！！！");
+    }
+
+    /**
+     * 本地最后读取的消息ID
+     */
+    public String getLastId() {
+        return lastId;
+    }
+
+    /**
+     * 同步stream最新的消息ID
+     */
+    public void syncLastId() {
+        Map<String, RedisPubSubMessage> messages = cacheManager.getRedisClient().xrevrange(GlobalConfig.getStreamRedisKey(), "+", "-", 1, redisMessageService.getMessageSerializer(), RedisPubSubMessage.class);
+        lastId = messages.isEmpty() ? BEGIN_ID : messages.keySet().iterator().next();
+        log.info("同步 stream 消息ID:【{}】 成功", lastId);
+    }
+
+    /**
+     * 停止读取线程
+     */
+    public synchronized void shutdown() {
+        if (readExecutor == null) {
+            return;
+        }
+        readExecutor.shutdownNow();
+        readExecutor = null;
+    }
+
+    private void readLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                readMessage();
+            } catch (Exception e) {
+                log.error("layering-cache 读取stream消息异常：{}", e.getMessage(), e);
+                try {
+                    TimeUnit.SECONDS.sleep(1);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * 读取最后读取的消息ID之后的消息
+     * <p>
+     * 未读消息少于读取数量时不可能被裁剪（裁剪后至少保留最大长度条消息），读满时检查最后读取的消息是否还在，不在则可能丢失了消息
+     * </p>
+     */
+    private void readMessage() {
+        String streamKey = GlobalConfig.getStreamRedisKey();
+        RedisSerializer serializer = redisMessageService.getMessageSerializer();
+        Map<String, RedisPubSubMessage> messages = cacheManager.getRedisClient().xread(streamKey, lastId, READ_COUNT, BLOCK_TIME, serializer, RedisPubSubMessage.class);
+        if (messages.isEmpty()) {
+            return;
+        }
+        redisMessageService.updateLastPullTime();
+        if (messages.size() >= READ_COUNT && !BEGIN_ID.equals(lastId)
+                && cacheManager.getRedisClient().xrange(streamKey, lastId, lastId, 1, serializer, RedisPubSubMessage.class).isEmpty()) {
+            log.warn("【一级缓存同步】stream消息ID【{}】之后的消息已被裁剪，清理所有一级缓存", lastId);
+            clearAll();
+        }
+        for (Map.Entry<String, RedisPubSubMessage> entry : messages.entrySet()) {
+            if (LoggerHelper.isDebugEnabled()) {
+                log.info("【缓存同步】redis 通过stream处理本地缓存，消息ID:【{}】,消息内容：{}", entry.getKey(), entry.getValue());
+            }
+            try {
+                if (entry.getValue() != null) {
+                    redisMessageService.handleMessage(entry.getValue());
+                }
+            } catch (Exception e) {
+                log.error("layering-cache 处理stream消息异常，消息ID:【{}】：{}", entry.getKey(), e.getMessage(), e);
+            }
+            lastId = entry.getKey();
+        }
+    }
+
+    private void clearAll() {
+        for (Cache cache : cacheManager.getCacheContainer().values()) {
+            if (cache instanceof LayeringCache) {
+                ((LayeringCache) cache).getFirstCache().clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.xul.core.listener;
+
+import com.xul.core.cache.Cache;
+import com.xul.core.cache.LayeringCache;
+import com.xul.core.logger.LoggerHelper;
+import com.xul.core.manager.AbstractCacheManager;
+import com.xul.core.utils.NamedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * redis客户端缓存跟踪监听器
+ * <p>
+ * 以二级缓存的key前缀（命名空间:缓存名称:）开启redis客户端缓存跟踪，二级缓存的key发生变更（写入、删除、过期、淘汰）时redis推送失效消息，
+ * 按前缀找到所属缓存，去掉前缀后删除对应的一级缓存，其它key（消息、锁、统计等）不会推送。
+ * 不再需要消息队列，写操作也不再发布消息。跟踪连接断开过时期间的失效消息可能丢失，清空所有一级缓存
+ * </p>
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+@Slf4j
+public class RedisTrackingListener implements Consumer<List<String>> {
+
+    private static class InstanceHolder {
+        public static final RedisTrackingListener instance = new RedisTrackingListener();
+    }
+
+    public static RedisTrackingListener getInstance() {
+        return RedisTrackingListener.InstanceHolder.instance;
+    }
+
+    /**
+     * 缓存管理器
+     */
+    private AbstractCacheManager cacheManager;
+
+    /**
+     * 跟踪的key前缀和所属缓存名称
+     */
+    private final Map<String, String> prefixes = new ConcurrentHashMap<>();
+
+    /**
+     * 跟踪连接检查线程池
+     */
+    private ScheduledThreadPoolExecutor checkExecutor;
+
+    /**
+     * 初始化，启动跟踪连接检查任务
+     *
+     * @param cacheManager 缓存管理器
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public synchronized void init(AbstractCacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+        if (checkExecutor != null) {
+            return;
+        }
+        checkExecutor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("layering-cache-tracking"));
+        checkExecutor.scheduleWithFixedDelay(this::check, 5, 5, TimeUnit.SECONDS);
+        log.info("启动redis客户端缓存跟踪检查任务线程成功！！！");
+    }
+
+    /**
+     * 跟踪缓存，缓存的key前缀加入跟踪，已被更短的前缀覆盖时不需要重新开启跟踪
+     *
+     * @param cacheName 缓存名称
+     * @param keyPrefix 二级缓存的key前缀
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public synchronized void track(String cacheName, String keyPrefix) {
+        boolean covered = prefixes.keySet().stream().anyMatch(keyPrefix::startsWith);
+        prefixes.put(keyPrefix, cacheName);
+        if (covered) {
+            return;
+        }
+        /**redis不允许前缀互相覆盖，只注册没有被更短前缀覆盖的前缀*/
+        List<String> trackPrefixes = new ArrayList<>();
+        for (String prefix : new TreeSet<>(prefixes.keySet())) {
+            if (trackPrefixes.isEmpty() || !prefix.startsWith(trackPrefixes.get(trackPrefixes.size() - 1))) {
+                trackPrefixes.add(prefix);
+            }
+        }
+        cacheManager.getRedisClient().tracking(trackPrefixes, this);
+    }
+
+    /**
+     * 收到失效消息，删除key前缀所属缓存中的一级缓存
+     *
+     * @param keys 失效的key，null表示全部失效
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    @Override
+    public void accept(List<String> keys) {
+        try {
+            if (keys == null) {
+                log.info("【一级缓存同步】redis数据库已清空，清理所有一级缓存");
+                clearAll();
+                return;
+            }
+            for (String key : keys) {
+                evict(key);
+            }
+        } catch (Exception e) {
+            log.error("layering-cache 清除一级缓存异常：{}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 检查跟踪连接，重新开启过跟踪则清空所有一级缓存
+     */
+    private void check() {
+        try {
+            if (cacheManager.getRedisClient().checkTracking()) {
+                log.warn("【一级缓存同步】redis客户端缓存跟踪重新开启，清理所有一级缓存");
+                clearAll();
+            }
+        } catch (Exception e) {
+            log.error("redis客户端缓存跟踪检查异常：{}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 前缀都以冒号结尾，按key中每个冒号截取前缀查找所属缓存，前缀互相覆盖时每个所属缓存都删除
+     */
+    private void evict(String key) {
+        for (int index = key.indexOf(':'); index >= 0; index = key.indexOf(':', index + 1)) {
+            String cacheName = prefixes.get(key.substring(0, index + 1));
+            if (cacheName == null) {
+                continue;
+            }
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache instanceof LayeringCache) {
+                String cacheKey = key.substring(index + 1);
+                ((LayeringCache) cache).getFirstCache().evict(cacheKey);
+                if (LoggerHelper.isDebugEnabled()) {
+                    log.info("【一级缓存同步】删除一级缓存 {} 数据,key={}", cacheName, cacheKey);
+                }
+            }
+        }
+    }
+
+    private void clearAll() {
+        for (Cache cache : cacheManager.getCacheContainer().values()) {
+            if (cache instanceof LayeringCache) {
+                ((LayeringCache) cache).getFirstCache().clear();
+            }
+        }
+    }
+}
@@ -1,10 +1,15 @@
 package com.xul.core.manager;
 
 import com.xul.core.cache.Cache;
+import com.xul.core.cache.LayeringCache;
 import com.xul.core.config.LayeringCacheConfig;
+import com.xul.core.hotkey.HotKeyService;
+import com.xul.core.listener.RedisBatchPublisher;
 import com.xul.core.listener.RedisMessageListener;
 import com.xul.core.listener.RedisMessagePullTask;
+import com.xul.core.listener.RedisStreamListener;
 import com.xul.core.redis.client.RedisClient;
+import com.xul.core.snapshot.CacheSnapshotService;
 import com.xul.core.utils.ThreadPoolExecutorTask;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -68,12 +73,14 @@ public abstract class AbstractCacheManager implements CacheManager {
             // 新建一个Cache对象
             cache = createCache(name, layeringCacheConfig);
             cacheNames.add(name);
-            if (cache != null) {
-                // 将新的Cache对象放到容器
-                this.cacheContainer.put(name, cache);
+            if (cache == null) {
+                return null;
             }
-            return cache;
+            // 将新的Cache对象放到容器
+            this.cacheContainer.put(name, cache);
         }
+        afterCacheCreated(cache);
+        return cache;
     }
 
     @Override
@@ -86,6 +93,19 @@ public abstract class AbstractCacheManager implements CacheManager {
 
         Runtime.getRuntime().addShutdownHook(new Thread(()->{
             ThreadPoolExecutorTask.close();
+            /**发布缓冲区中剩余的消息*/
+            RedisBatchPublisher.getInstance().shutdown();
+            /**关闭前保存一级缓存快照*/
+            CacheSnapshotService.getInstance().shutdown();
+            HotKeyService.getInstance().shutdown();
+            RedisStreamListener.getInstance().shutdown();
+            for (Cache cache : cacheContainer.values()) {
+                if (cache instanceof LayeringCache) {
+                    ((LayeringCache) cache).shutdown();
+                }
+            }
+            /**最后关闭redis客户端，之前的任务可能还要发布消息*/
+            redisClient.shutdown();
         }));
 
 
@@ -101,4 +121,12 @@ public abstract class AbstractCacheManager implements CacheManager {
      * @return {@link Cache}
      */
     protected abstract Cache createCache(String name, LayeringCacheConfig layeringCacheConfig);
+
+    /**
+     * 新建的Cache放入容器后调用，在锁外执行，不会阻塞其它Cache的创建
+     *
+     * @param cache 新建的Cache
+     */
+    protected void afterCacheCreated(Cache cache) {
+    }
 }
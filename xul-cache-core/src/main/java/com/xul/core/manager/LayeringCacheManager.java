@@ -1,14 +1,28 @@
 package com.xul.core.manager;
 
+import com.xul.core.cache.AbstractValueAdaptingCache;
 import com.xul.core.cache.Cache;
 import com.xul.core.cache.LayeringCache;
 import com.xul.core.cache.caffine.CaffeineCache;
+import com.xul.core.cache.offheap.OffHeapCache;
 import com.xul.core.cache.redis.RedisCache;
+import com.xul.core.config.FirstCacheConfig;
 import com.xul.core.config.GlobalConfig;
 import com.xul.core.config.LayeringCacheConfig;
+import com.xul.core.hotkey.HotKeyService;
+import com.xul.core.listener.RedisBatchPublisher;
 import com.xul.core.listener.RedisMessageListener;
 import com.xul.core.listener.RedisMessagePullTask;
+import com.xul.core.listener.RedisStreamListener;
+import com.xul.core.listener.RedisTrackingListener;
 import com.xul.core.redis.client.RedisClient;
+import com.xul.core.snapshot.CacheSnapshotService;
+import com.xul.core.supports.FirstCacheType;
+import com.xul.core.supports.InvalidationMode;
+import com.xul.core.utils.ThreadPoolExecutorTask;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
 
 /**
  * 多级缓存管理
@@ -16,6 +30,7 @@ import com.xul.core.redis.client.RedisClient;
  * @author: xl
  * @date: 2021/9/28
  **/
+@Slf4j
 public class LayeringCacheManager extends AbstractCacheManager {
 
 
@@ -32,10 +47,24 @@ public class LayeringCacheManager extends AbstractCacheManager {
         /**设置缓存命名空间*/
         GlobalConfig.setNamespace(applicationName);
         this.redisClient = redisClient;
-        /**redis pub/sub 监听器*/
-        RedisMessageListener.getInstance().init(this);
-        /**redis pull 消息任务*/
-        RedisMessagePullTask.getInstance().init();
+        if (InvalidationMode.TRACKING.equals(GlobalConfig.INVALIDATION_MODE)) {
+            /**redis客户端缓存跟踪监听器*/
+            RedisTrackingListener.getInstance().init(this);
+        } else if (InvalidationMode.STREAM.equals(GlobalConfig.INVALIDATION_MODE)) {
+            /**redis stream 消息读取*/
+            RedisStreamListener.getInstance().init(this);
+        } else {
+            /**redis pub/sub 监听器*/
+            RedisMessageListener.getInstance().init(this);
+            /**redis pull 消息任务*/
+            RedisMessagePullTask.getInstance().init();
+        }
+        /**批量消息发布任务*/
+        RedisBatchPublisher.getInstance().init(redisClient);
+        /**一级缓存快照任务*/
+        CacheSnapshotService.getInstance().init(this);
+        /**热点key发布任务*/
+        HotKeyService.getInstance().init(this);
         destroy();
     }
 
@@ -43,10 +72,52 @@ public class LayeringCacheManager extends AbstractCacheManager {
     @Override
     protected Cache createCache(String name, LayeringCacheConfig layeringCacheConfig) {
         /**创建一级缓存*/
-        CaffeineCache caffeineCache = new CaffeineCache(name, layeringCacheConfig.getFirstCacheConfig());
+        FirstCacheConfig firstCacheConfig = layeringCacheConfig.getFirstCacheConfig();
+        AbstractValueAdaptingCache firstCache;
+        if (FirstCacheType.OFF_HEAP.equals(firstCacheConfig.getCacheType())) {
+            firstCache = new OffHeapCache(name, firstCacheConfig);
+        } else {
+            firstCache = new CaffeineCache(name, firstCacheConfig);
+        }
         /**创建二级缓存*/
         RedisCache redisCache = new RedisCache(name, redisClient, layeringCacheConfig.getSecondaryCacheConfig());
 
-        return new LayeringCache(name, redisClient, caffeineCache, redisCache, layeringCacheConfig);
+        LayeringCache layeringCache = new LayeringCache(name, redisClient, firstCache, redisCache, layeringCacheConfig);
+        if (InvalidationMode.TRACKING.equals(GlobalConfig.INVALIDATION_MODE)) {
+            /**跟踪缓存的key变更*/
+            RedisTrackingListener.getInstance().track(name, redisCache.getKeyPrefix());
+        }
+        /**加载一级缓存快照*/
+        CacheSnapshotService.getInstance().restore(layeringCache);
+        return layeringCache;
+    }
+
+    /**
+     * 缓存放入容器后异步预热，快照中没有的热点key从二级缓存读取，不阻塞创建缓存的请求
+     */
+    @Override
+    protected void afterCacheCreated(Cache cache) {
+        if (cache instanceof LayeringCache && ((LayeringCache) cache).isWarmUpEnable()) {
+            ThreadPoolExecutorTask.run(((LayeringCache) cache)::warmUp);
+        }
+    }
+
+    /**
+     * 同步预热已创建的缓存，用于启动时在接收请求前完成预热。已在异步预热的缓存等待其完成
+     *
+     * @param cacheNames 缓存名称
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public void warmUp(Collection<String> cacheNames) {
+        for (String cacheName : cacheNames) {
+            Cache cache = getCache(cacheName);
+            if (cache instanceof LayeringCache) {
+                ((LayeringCache) cache).warmUp();
+            } else {
+                log.warn("缓存 {} 不存在，跳过预热", cacheName);
+            }
+        }
     }
 }
@@ -6,13 +6,19 @@ import com.xul.core.function.CacheFunctionWithoutReturn;
 import com.xul.core.listener.RedisMessageListener;
 import com.xul.core.redis.serializer.ProtostuffRedisSerializer;
 import com.xul.core.redis.serializer.RedisSerializer;
+import com.xul.core.redis.serializer.SerializationUtils;
+import com.xul.core.supports.TtlValue;
 import com.xul.core.redis.serializer.StringRedisSerializer;
+import com.xul.core.supports.CircuitBreaker;
+import com.xul.core.supports.RedisConnectionMode;
 import com.xul.core.utils.GSONUtil;
 import com.xul.core.utils.StringUtils;
 import io.lettuce.core.*;
 import io.lettuce.core.cluster.ClusterClientOptions;
 import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.SlotHash;
 import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
 import io.lettuce.core.codec.ByteArrayCodec;
 import io.lettuce.core.internal.HostAndPort;
 import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
@@ -24,8 +30,11 @@ import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
 import org.springframework.util.CollectionUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -44,8 +53,18 @@ public class ClusterRedisClient implements RedisClient {
     private RedisSerializer keyRedisSerializer = new StringRedisSerializer();
     private RedisSerializer valueRedisSerializer = new ProtostuffRedisSerializer();
 
+    /**
+     * stream消息的字段名
+     */
+    private static final byte[] STREAM_FIELD = "m".getBytes(StandardCharsets.UTF_8);
 
-    private static GenericObjectPool<StatefulRedisClusterConnection<byte[], byte[]>> pool;
+
+    private GenericObjectPool<StatefulRedisClusterConnection<byte[], byte[]>> pool;
+
+    /**
+     * 共享连接组，SHARED连接模式下使用
+     */
+    private SharedConnectionGroup<StatefulRedisClusterConnection<byte[], byte[]>> sharedConnections;
 
     private RedisClusterClient cluster;
 
@@ -60,7 +79,34 @@ public class ClusterRedisClient implements RedisClient {
      */
     private final RedissonClient lockClient;
 
+    /**
+     * redis熔断器
+     */
+    private final CircuitBreaker circuitBreaker;
+
+    /**
+     * stream阻塞读取连接，XREAD BLOCK会占住连接，不能使用连接池和共享连接
+     */
+    private StatefulRedisClusterConnection<byte[], byte[]> streamConnection;
+
+    /**
+     * redis密码，客户端缓存跟踪连接直连主节点时使用
+     */
+    private final String password;
+
+    /**
+     * 每个主节点的客户端缓存跟踪连接，key为host:port
+     */
+    private final Map<String, RedisTrackingConnection> trackingConnections = new HashMap<>();
+
+    private final Map<String, io.lettuce.core.RedisClient> trackingClients = new HashMap<>();
+
+    private Collection<String> trackingPrefixes;
+
+    private Consumer<List<String>> trackingListener;
+
     public ClusterRedisClient(RedisConfig redisConfig) {
+        this.password = redisConfig.getPassword();
         String cluster = redisConfig.getCluster();
         String[] parts = cluster.split("\\,");
         List<RedisURI> redisURIs = new ArrayList<>(parts.length);
@@ -79,20 +125,25 @@ public class ClusterRedisClient implements RedisClient {
                 .autoReconnect(true)
                 .pingBeforeActivateConnection(true)
                 .build());
-        GenericObjectPoolConfig genericObjectPoolConfig = new GenericObjectPoolConfig();
-        //redis最大连接数
-        genericObjectPoolConfig.setMaxTotal(redisConfig.getMaxSize());
-        //空闲时最大连接数
-        genericObjectPoolConfig.setMaxIdle(redisConfig.getIdleMaxSize());
-        //空闲时最小连接数
-        genericObjectPoolConfig.setMinIdle(redisConfig.getMinSize());
-        pool = ConnectionPoolSupport.createGenericObjectPool(() -> {
-            this.connection = this.cluster.connect(new ByteArrayCodec());
-            return this.connection;
-        }, genericObjectPoolConfig);
+        if (RedisConnectionMode.SHARED.equals(redisConfig.getConnectionMode())) {
+            sharedConnections = new SharedConnectionGroup<>(() -> this.cluster.connect(new ByteArrayCodec()), redisConfig);
+        } else {
+            GenericObjectPoolConfig genericObjectPoolConfig = new GenericObjectPoolConfig();
+            //redis最大连接数
+            genericObjectPoolConfig.setMaxTotal(redisConfig.getMaxSize());
+            //空闲时最大连接数
+            genericObjectPoolConfig.setMaxIdle(redisConfig.getIdleMaxSize());
+            //空闲时最小连接数
+            genericObjectPoolConfig.setMinIdle(redisConfig.getMinSize());
+            pool = ConnectionPoolSupport.createGenericObjectPool(() -> {
+                this.connection = this.cluster.connect(new ByteArrayCodec());
+                return this.connection;
+            }, genericObjectPoolConfig);
+        }
         this.pubSubConnection = this.cluster.connectPubSub();
 
         lockClient = new RedissonLockClient(redisConfig).getRedissonClient();
+        circuitBreaker = new CircuitBreaker(redisConfig);
 
     }
 
@@ -100,7 +151,13 @@ public class ClusterRedisClient implements RedisClient {
     /**
      * 获取连接池
      */
-    private static StatefulRedisClusterConnection<byte[], byte[]> getLettcueRedisResource() {
+    private StatefulRedisClusterConnection<byte[], byte[]> getLettcueRedisResource() {
+        if (circuitBreaker.isOpen()) {
+            throw new RedisClientException("redis熔断中，快速失败");
+        }
+        if (sharedConnections != null) {
+            return sharedConnections.next();
+        }
         StatefulRedisClusterConnection<byte[], byte[]> connection = null;
         try {
             connection = pool.borrowObject();     // <3> 创建线程安全的连接
@@ -118,7 +175,10 @@ public class ClusterRedisClient implements RedisClient {
      * @author: xl
      * @date: 2021/9/27
      **/
-    private static void returnConnectionPool(StatefulRedisClusterConnection<byte[], byte[]> connection) {
+    private void returnConnectionPool(StatefulRedisClusterConnection<byte[], byte[]> connection) {
+        if (sharedConnections != null || connection == null) {
+            return;
+        }
         try {
             pool.returnObject(connection);
         } catch (Exception exception) {
@@ -134,7 +194,7 @@ public class ClusterRedisClient implements RedisClient {
             connection = getLettcueRedisResource();
             byte[] cache = connection.sync().get(keyRedisSerializer.serialize(key));
             if (cache != null) {
-                return valueRedisSerializer.deserialize(cache, resultType);
+                return SerializationUtils.deserializeValue(valueRedisSerializer, cache, resultType);
             }
             return null;
         } catch (Exception exception) {
@@ -153,7 +213,7 @@ public class ClusterRedisClient implements RedisClient {
             connection = getLettcueRedisResource();
             byte[] cache = connection.sync().get(keyRedisSerializer.serialize(key));
             if (cache != null) {
-                return valueRedisSerializer.deserialize(cache, resultType);
+                return SerializationUtils.deserializeValue(valueRedisSerializer, cache, resultType);
             }
             return null;
         } catch (Exception exception) {
@@ -164,13 +224,53 @@ public class ClusterRedisClient implements RedisClient {
         }
     }
 
+    @Override
+    public <T> Map<String, T> mget(Collection<String> keys, Class<T> resultType) {
+        Map<String, T> result = new HashMap<>();
+        if (CollectionUtils.isEmpty(keys)) {
+            return result;
+        }
+        StatefulRedisClusterConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            // 按slot分组，每组一次MGET，各组并行发送
+            Map<Integer, List<byte[]>> partitions = new HashMap<>();
+            for (String key : keys) {
+                byte[] bkey = keyRedisSerializer.serialize(key);
+                partitions.computeIfAbsent(SlotHash.getSlot(bkey), slot -> new ArrayList<>()).add(bkey);
+            }
+            List<RedisFuture<List<KeyValue<byte[], byte[]>>>> futures = new ArrayList<>(partitions.size());
+            for (List<byte[]> slotKeys : partitions.values()) {
+                futures.add(connection.async().mget(slotKeys.toArray(new byte[0][])));
+            }
+            if (!LettuceFutures.awaitAll(connection.getTimeout(), futures.toArray(new RedisFuture[0]))) {
+                // 超时未完成的命令可能没有执行，不能当作成功
+                throw new RedisClientException("cluster redis 【mget】 command timeout after " + connection.getTimeout());
+            }
+            for (RedisFuture<List<KeyValue<byte[], byte[]>>> future : futures) {
+                for (KeyValue<byte[], byte[]> keyValue : future.get()) {
+                    if (keyValue.hasValue()) {
+                        result.put(keyRedisSerializer.deserialize(keyValue.getKey(), String.class),
+                                SerializationUtils.deserializeValue(valueRedisSerializer, keyValue.getValue(), resultType));
+                    }
+                }
+            }
+            return result;
+        } catch (Exception exception) {
+            log.error("cluster redis 【mget】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
     @Override
     public void set(String key, Object value) {
 
         StatefulRedisClusterConnection<byte[], byte[]> connection = null;
         try {
             connection = getLettcueRedisResource();
-            connection.async().set(keyRedisSerializer.serialize(key), valueRedisSerializer.serialize(value));
+            connection.async().set(keyRedisSerializer.serialize(key), SerializationUtils.serializeValue(valueRedisSerializer, value));
         } catch (Exception exception) {
             log.error("single redis 【set】 error:{}", exception);
             throw new RedisClientException(exception.getMessage(), exception);
@@ -186,7 +286,7 @@ public class ClusterRedisClient implements RedisClient {
 
         try {
             connection = getLettcueRedisResource();
-            connection.async().setex(keyRedisSerializer.serialize(key), unit.toSeconds(time), valueRedisSerializer.serialize(value));
+            connection.async().setex(keyRedisSerializer.serialize(key), unit.toSeconds(time), SerializationUtils.serializeValue(valueRedisSerializer, value));
         } catch (Exception exception) {
             log.error("single redis 【setExpire】 error:{}", exception);
             throw new RedisClientException(exception.getMessage(), exception);
@@ -201,7 +301,7 @@ public class ClusterRedisClient implements RedisClient {
 
         try {
             connection = getLettcueRedisResource();
-            connection.async().setex(keyRedisSerializer.serialize(key), unit.toSeconds(time), valueRedisSerializer.serialize(value));
+            connection.async().setex(keyRedisSerializer.serialize(key), unit.toSeconds(time), SerializationUtils.serializeValue(valueRedisSerializer, value));
         } catch (Exception exception) {
             log.error("single redis 【setExpireSerializer】 error:{}", exception);
             throw new RedisClientException(exception.getMessage(), exception);
@@ -210,6 +310,151 @@ public class ClusterRedisClient implements RedisClient {
         }
     }
 
+    @Override
+    public void mset(Map<String, Object> values, long time, TimeUnit unit) {
+        if (CollectionUtils.isEmpty(values)) {
+            return;
+        }
+        StatefulRedisClusterConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            // 借出的连接为当前线程独占，关闭自动flush后一次性写出所有命令；共享连接由连接组统一flush
+            boolean pipelined = sharedConnections == null;
+            if (pipelined) {
+                connection.setAutoFlushCommands(false);
+            }
+            List<RedisFuture<String>> futures = new ArrayList<>(values.size());
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                futures.add(connection.async().psetex(keyRedisSerializer.serialize(entry.getKey()), unit.toMillis(time),
+                        SerializationUtils.serializeValue(valueRedisSerializer, entry.getValue())));
+            }
+            if (pipelined) {
+                connection.flushCommands();
+            }
+            if (!LettuceFutures.awaitAll(connection.getTimeout(), futures.toArray(new RedisFuture[0]))) {
+                // 超时未完成的命令可能没有执行，不能当作成功
+                throw new RedisClientException("cluster redis 【mset】 command timeout after " + connection.getTimeout());
+            }
+        } catch (Exception exception) {
+            log.error("cluster redis 【mset】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            if (connection != null && sharedConnections == null) {
+                connection.setAutoFlushCommands(true);
+            }
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public void setBits(String key, Collection<Long> offsets) {
+        if (CollectionUtils.isEmpty(offsets)) {
+            return;
+        }
+        StatefulRedisClusterConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            boolean pipelined = sharedConnections == null;
+            if (pipelined) {
+                connection.setAutoFlushCommands(false);
+            }
+            byte[] bkey = keyRedisSerializer.serialize(key);
+            List<RedisFuture<Long>> futures = new ArrayList<>(offsets.size());
+            for (Long offset : offsets) {
+                futures.add(connection.async().setbit(bkey, offset, 1));
+            }
+            if (pipelined) {
+                connection.flushCommands();
+            }
+            if (!LettuceFutures.awaitAll(connection.getTimeout(), futures.toArray(new RedisFuture[0]))) {
+                // 超时未完成的命令可能没有执行，不能当作成功
+                throw new RedisClientException("cluster redis 【setBits】 command timeout after " + connection.getTimeout());
+            }
+        } catch (Exception exception) {
+            log.error("cluster redis 【setBits】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            if (connection != null && sharedConnections == null) {
+                connection.setAutoFlushCommands(true);
+            }
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public void setBitsIfExists(Collection<String> keys, Collection<Long> offsets) {
+        if (CollectionUtils.isEmpty(keys) || CollectionUtils.isEmpty(offsets)) {
+            return;
+        }
+        StatefulRedisClusterConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            byte[][] bkeys = keys.stream().map(key -> keyRedisSerializer.serialize(key)).toArray(byte[][]::new);
+            byte[][] boffsets = offsets.stream().map(offset -> String.valueOf(offset).getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+            connection.sync().eval(SET_BITS_IF_EXISTS_SCRIPT, ScriptOutputType.INTEGER, bkeys, boffsets);
+        } catch (Exception exception) {
+            log.error("cluster redis 【setBitsIfExists】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public boolean getBits(String key, Collection<Long> offsets) {
+        if (CollectionUtils.isEmpty(offsets)) {
+            return true;
+        }
+        StatefulRedisClusterConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            boolean pipelined = sharedConnections == null;
+            if (pipelined) {
+                connection.setAutoFlushCommands(false);
+            }
+            byte[] bkey = keyRedisSerializer.serialize(key);
+            List<RedisFuture<Long>> futures = new ArrayList<>(offsets.size());
+            for (Long offset : offsets) {
+                futures.add(connection.async().getbit(bkey, offset));
+            }
+            if (pipelined) {
+                connection.flushCommands();
+            }
+            if (!LettuceFutures.awaitAll(connection.getTimeout(), futures.toArray(new RedisFuture[0]))) {
+                // 超时未完成的命令可能没有执行，不能当作成功
+                throw new RedisClientException("cluster redis 【getBits】 command timeout after " + connection.getTimeout());
+            }
+            for (RedisFuture<Long> future : futures) {
+                if (future.get() == 0) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (Exception exception) {
+            log.error("cluster redis 【getBits】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            if (connection != null && sharedConnections == null) {
+                connection.setAutoFlushCommands(true);
+            }
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public void rename(String key, String newKey) {
+        StatefulRedisClusterConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            connection.sync().rename(keyRedisSerializer.serialize(key), keyRedisSerializer.serialize(newKey));
+        } catch (Exception exception) {
+            log.error("cluster redis 【rename】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
     @Override
     public void setNxEx(String key, Object value, long time) {
         StatefulRedisClusterConnection<byte[], byte[]> connection = null;
@@ -293,6 +538,64 @@ public class ClusterRedisClient implements RedisClient {
         }
     }
 
+    @Override
+    public <T> TtlValue<T> getWithTtl(String key, Class<T> resultType) {
+        StatefulRedisClusterConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            List<Object> reply = connection.sync().eval(GET_WITH_TTL_SCRIPT, ScriptOutputType.MULTI, keyRedisSerializer.serialize(key));
+            return toTtlValue(reply, resultType);
+        } catch (Exception exception) {
+            log.error("cluster redis 【getWithTtl】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public <T> Map<String, TtlValue<T>> mgetWithTtl(Collection<String> keys, Class<T> resultType) {
+        Map<String, TtlValue<T>> result = new HashMap<>();
+        if (CollectionUtils.isEmpty(keys)) {
+            return result;
+        }
+        StatefulRedisClusterConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            List<String> keyList = new ArrayList<>(keys);
+            List<RedisFuture<List<Object>>> futures = new ArrayList<>(keyList.size());
+            for (String key : keyList) {
+                futures.add(connection.async().eval(GET_WITH_TTL_SCRIPT, ScriptOutputType.MULTI, keyRedisSerializer.serialize(key)));
+            }
+            if (!LettuceFutures.awaitAll(connection.getTimeout(), futures.toArray(new RedisFuture[0]))) {
+                // 超时未完成的命令可能没有执行，不能当作成功
+                throw new RedisClientException("cluster redis 【mgetWithTtl】 command timeout after " + connection.getTimeout());
+            }
+            for (int i = 0; i < keyList.size(); i++) {
+                TtlValue<T> ttlValue = toTtlValue(futures.get(i).get(), resultType);
+                if (ttlValue.getValue() != null) {
+                    result.put(keyList.get(i), ttlValue);
+                }
+            }
+            return result;
+        } catch (Exception exception) {
+            log.error("cluster redis 【mgetWithTtl】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    /**
+     * GET + PTTL 脚本的返回值转换成缓存值和剩余生存时间
+     */
+    private <T> TtlValue<T> toTtlValue(List<Object> reply, Class<T> resultType) {
+        byte[] cache = (byte[]) reply.get(0);
+        long ttl = reply.get(1) == null ? TtlValue.NOT_EXIST : (Long) reply.get(1);
+        T value = cache == null ? null : SerializationUtils.deserializeValue(valueRedisSerializer, cache, resultType);
+        return new TtlValue<>(value, ttl);
+    }
+
     @Override
     public Set<String> scan(String pattern) {
         StatefulRedisClusterConnection<byte[], byte[]> connection = null;
@@ -321,7 +624,7 @@ public class ClusterRedisClient implements RedisClient {
     }
 
     @Override
-    public void lpush(String key, RedisSerializer valueRedisSerializer, String... values) {
+    public void lpush(String key, RedisSerializer valueRedisSerializer, Object... values) {
         if (Objects.isNull(values) || values.length == 0) {
             return;
         }
@@ -358,16 +661,21 @@ public class ClusterRedisClient implements RedisClient {
 
     @Override
     public List<String> lrange(String key, long start, long end, RedisSerializer valueRedisSerializer) {
+        return lrange(key, start, end, valueRedisSerializer, String.class);
+    }
+
+    @Override
+    public <T> List<T> lrange(String key, long start, long end, RedisSerializer valueRedisSerializer, Class<T> resultType) {
         StatefulRedisClusterConnection<byte[], byte[]> connection = null;
         try {
             connection = getLettcueRedisResource();
-            List<String> list = new ArrayList<>();
+            List<T> list = new ArrayList<>();
             List<byte[]> values = connection.sync().lrange(getKeySerializer().serialize(key), start, end);
             if (CollectionUtils.isEmpty(values)) {
                 return list;
             }
             for (byte[] value : values) {
-                list.add(valueRedisSerializer.deserialize(value, String.class));
+                list.add(valueRedisSerializer.deserialize(value, resultType));
             }
             return list;
         } catch (Exception exception) {
@@ -379,6 +687,147 @@ public class ClusterRedisClient implements RedisClient {
         }
     }
 
+    @Override
+    public String xadd(String key, long maxLength, RedisSerializer valueRedisSerializer, Object message) {
+        StatefulRedisClusterConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            return connection.sync().xadd(keyRedisSerializer.serialize(key), new XAddArgs().maxlen(maxLength).approximateTrimming(),
+                    STREAM_FIELD, valueRedisSerializer.serialize(message));
+        } catch (Exception exception) {
+            log.error("cluster redis 【xadd】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public <T> Map<String, T> xrange(String key, String start, String end, long count, RedisSerializer valueRedisSerializer, Class<T> resultType) {
+        StatefulRedisClusterConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            return toStreamMap(connection.sync().xrange(keyRedisSerializer.serialize(key), Range.create(start, end), Limit.from(count)), valueRedisSerializer, resultType);
+        } catch (Exception exception) {
+            log.error("cluster redis 【xrange】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public <T> Map<String, T> xrevrange(String key, String end, String start, long count, RedisSerializer valueRedisSerializer, Class<T> resultType) {
+        StatefulRedisClusterConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            return toStreamMap(connection.sync().xrevrange(keyRedisSerializer.serialize(key), Range.create(start, end), Limit.from(count)), valueRedisSerializer, resultType);
+        } catch (Exception exception) {
+            log.error("cluster redis 【xrevrange】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public <T> Map<String, T> xread(String key, String lastId, long count, long block, RedisSerializer valueRedisSerializer, Class<T> resultType) {
+        try {
+            return toStreamMap(getStreamConnection().sync().xread(new XReadArgs().count(count).block(block),
+                    XReadArgs.StreamOffset.from(keyRedisSerializer.serialize(key), lastId)), valueRedisSerializer, resultType);
+        } catch (Exception exception) {
+            log.error("cluster redis 【xread】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        }
+    }
+
+    private synchronized StatefulRedisClusterConnection<byte[], byte[]> getStreamConnection() {
+        if (streamConnection == null) {
+            streamConnection = cluster.connect(new ByteArrayCodec());
+        }
+        return streamConnection;
+    }
+
+    /**
+     * stream消息转换为消息ID和消息内容，每条消息只有一个字段
+     */
+    private static <T> Map<String, T> toStreamMap(List<StreamMessage<byte[], byte[]>> messages, RedisSerializer valueRedisSerializer, Class<T> resultType) {
+        Map<String, T> result = new LinkedHashMap<>();
+        if (CollectionUtils.isEmpty(messages)) {
+            return result;
+        }
+        for (StreamMessage<byte[], byte[]> message : messages) {
+            for (byte[] value : message.getBody().values()) {
+                result.put(message.getId(), valueRedisSerializer.deserialize(value, resultType));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void zincrby(String key, double increment, String member) {
+        StatefulRedisClusterConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            connection.async().zincrby(keyRedisSerializer.serialize(key), increment, keyRedisSerializer.serialize(member));
+        } catch (Exception exception) {
+            log.error("cluster redis 【zincrby】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public List<String> zrevrange(String key, long start, long end) {
+        StatefulRedisClusterConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            List<String> list = new ArrayList<>();
+            List<byte[]> members = connection.sync().zrevrange(keyRedisSerializer.serialize(key), start, end);
+            if (CollectionUtils.isEmpty(members)) {
+                return list;
+            }
+            for (byte[] member : members) {
+                list.add(keyRedisSerializer.deserialize(member, String.class));
+            }
+            return list;
+        } catch (Exception exception) {
+            log.error("cluster redis 【zrevrange】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public Long zremrangebyrank(String key, long start, long end) {
+        StatefulRedisClusterConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            return connection.sync().zremrangebyrank(keyRedisSerializer.serialize(key), start, end);
+        } catch (Exception exception) {
+            log.error("cluster redis 【zremrangebyrank】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public Long incrby(String key, long increment) {
+        StatefulRedisClusterConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            return connection.sync().incrby(keyRedisSerializer.serialize(key), increment);
+        } catch (Exception exception) {
+            log.error("cluster redis 【incrby】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
     @Override
     public Object eval(String script, List<String> keys, List<String> args) {
         StatefulRedisClusterConnection<byte[], byte[]> connection = null;
@@ -420,6 +869,88 @@ public class ClusterRedisClient implements RedisClient {
         }
     }
 
+    @Override
+    public synchronized void tracking(Collection<String> prefixes, Consumer<List<String>> listener) {
+        try {
+            this.trackingPrefixes = new ArrayList<>(prefixes);
+            this.trackingListener = listener;
+            /**失效消息只在key所在的主节点产生，每个主节点开启一个跟踪连接*/
+            for (RedisClusterNode node : cluster.getPartitions()) {
+                if (node.is(RedisClusterNode.NodeFlag.MASTER)) {
+                    getTrackingConnection(node.getUri()).start(trackingPrefixes, trackingListener);
+                }
+            }
+        } catch (Exception exception) {
+            log.error("cluster redis 【tracking】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        }
+    }
+
+    @Override
+    public synchronized boolean checkTracking() {
+        if (trackingListener == null) {
+            return false;
+        }
+        try {
+            boolean restarted = false;
+            cluster.reloadPartitions();
+            Set<String> masters = new HashSet<>();
+            for (RedisClusterNode node : cluster.getPartitions()) {
+                if (!node.is(RedisClusterNode.NodeFlag.MASTER)) {
+                    continue;
+                }
+                String nodeKey = getNodeKey(node.getUri());
+                masters.add(nodeKey);
+                if (!trackingConnections.containsKey(nodeKey)) {
+                    /**新的主节点（扩容或故障转移）*/
+                    getTrackingConnection(node.getUri()).start(trackingPrefixes, trackingListener);
+                    restarted = true;
+                } else {
+                    restarted |= trackingConnections.get(nodeKey).check();
+                }
+            }
+            /**不再是主节点的跟踪连接关闭*/
+            Iterator<Map.Entry<String, RedisTrackingConnection>> iterator = trackingConnections.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, RedisTrackingConnection> entry = iterator.next();
+                if (!masters.contains(entry.getKey())) {
+                    entry.getValue().close();
+                    trackingClients.remove(entry.getKey()).shutdown();
+                    iterator.remove();
+                    restarted = true;
+                }
+            }
+            return restarted;
+        } catch (Exception exception) {
+            log.error("cluster redis 【checkTracking】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        }
+    }
+
+    private RedisTrackingConnection getTrackingConnection(RedisURI uri) {
+        String nodeKey = getNodeKey(uri);
+        RedisTrackingConnection trackingConnection = trackingConnections.get(nodeKey);
+        if (trackingConnection == null) {
+            RedisURI nodeUri = RedisURI.create(uri.getHost(), uri.getPort());
+            if (StringUtils.isNotBlank(password)) {
+                nodeUri.setPassword(password);
+            }
+            io.lettuce.core.RedisClient client = io.lettuce.core.RedisClient.create(nodeUri);
+            client.setOptions(ClientOptions.builder()
+                    .autoReconnect(true)
+                    .pingBeforeActivateConnection(true)
+                    .build());
+            trackingConnection = new RedisTrackingConnection(client, nodeKey);
+            trackingClients.put(nodeKey, client);
+            trackingConnections.put(nodeKey, trackingConnection);
+        }
+        return trackingConnection;
+    }
+
+    private static String getNodeKey(RedisURI uri) {
+        return uri.getHost() + ":" + uri.getPort();
+    }
+
 
     @Override
     public boolean tryLock(String key, long waitTime, long expireTime, TimeUnit timeUnit, CacheFunctionWithoutReturn bussiness) {
@@ -434,7 +965,202 @@ public class ClusterRedisClient implements RedisClient {
             log.error("single redis 【tryLock】 error:{}", exception);
             throw new RedisClientException(exception.getMessage(), exception);
         } finally {
-            lock.unlock();
+            // 未获取到锁时不能释放，否则会抛出IllegalMonitorStateException
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<T> getAsync(String key, Class<T> resultType) {
+        StatefulRedisClusterConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            return connection.async().get(keyRedisSerializer.serialize(key)).toCompletableFuture()
+                    .thenApply(cache -> cache == null ? null : SerializationUtils.deserializeValue(valueRedisSerializer, cache, resultType));
+        } catch (Exception exception) {
+            log.error("cluster redis 【getAsync】 error:{}", exception);
+            return failedFuture(exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<TtlValue<T>> getWithTtlAsync(String key, Class<T> resultType) {
+        StatefulRedisClusterConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            return connection.async().<List<Object>>eval(GET_WITH_TTL_SCRIPT, ScriptOutputType.MULTI, keyRedisSerializer.serialize(key))
+                    .toCompletableFuture().thenApply(reply -> toTtlValue(reply, resultType));
+        } catch (Exception exception) {
+            log.error("cluster redis 【getWithTtlAsync】 error:{}", exception);
+            return failedFuture(exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> setAsync(String key, Object value, long time, TimeUnit unit) {
+        StatefulRedisClusterConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            return connection.async().psetex(keyRedisSerializer.serialize(key), unit.toMillis(time), SerializationUtils.serializeValue(valueRedisSerializer, value))
+                    .toCompletableFuture().thenApply(result -> null);
+        } catch (Exception exception) {
+            log.error("cluster redis 【setAsync】 error:{}", exception);
+            return failedFuture(exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Long> deleteAsync(String... keys) {
+        StatefulRedisClusterConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            final byte[][] bkeys = new byte[keys.length][];
+            for (int i = 0; i < keys.length; i++) {
+                bkeys[i] = keyRedisSerializer.serialize(keys[i]);
+            }
+            return connection.async().del(bkeys).toCompletableFuture();
+        } catch (Exception exception) {
+            log.error("cluster redis 【deleteAsync】 error:{}", exception);
+            return failedFuture(exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Long> lpushAsync(String key, RedisSerializer valueRedisSerializer, Object... values) {
+        StatefulRedisClusterConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            final byte[][] bvalues = new byte[values.length][];
+            for (int i = 0; i < values.length; i++) {
+                bvalues[i] = valueRedisSerializer.serialize(values[i]);
+            }
+            return connection.async().lpush(keyRedisSerializer.serialize(key), bvalues).toCompletableFuture();
+        } catch (Exception exception) {
+            log.error("cluster redis 【lpushAsync】 error:{}", exception);
+            return failedFuture(exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> xaddAsync(String key, long maxLength, RedisSerializer valueRedisSerializer, Object message) {
+        StatefulRedisClusterConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            return connection.async().xadd(keyRedisSerializer.serialize(key), new XAddArgs().maxlen(maxLength).approximateTrimming(),
+                    STREAM_FIELD, valueRedisSerializer.serialize(message)).toCompletableFuture();
+        } catch (Exception exception) {
+            log.error("cluster redis 【xaddAsync】 error:{}", exception);
+            return failedFuture(exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Long> incrbyAsync(String key, long increment) {
+        StatefulRedisClusterConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            return connection.async().incrby(keyRedisSerializer.serialize(key), increment).toCompletableFuture();
+        } catch (Exception exception) {
+            log.error("cluster redis 【incrbyAsync】 error:{}", exception);
+            return failedFuture(exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> expireAsync(String key, long timeout, TimeUnit timeUnit) {
+        StatefulRedisClusterConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            return connection.async().expire(keyRedisSerializer.serialize(key), timeUnit.toSeconds(timeout)).toCompletableFuture();
+        } catch (Exception exception) {
+            log.error("cluster redis 【expireAsync】 error:{}", exception);
+            return failedFuture(exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Long> publishAsync(String channel, String message) {
+        try {
+            return pubSubConnection.async().publish(channel, message).toCompletableFuture();
+        } catch (Exception exception) {
+            log.error("cluster redis 【publishAsync】 error:{}", exception);
+            return failedFuture(exception);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> tryLockAsync(String key, long waitTime, long expireTime, TimeUnit timeUnit, long lockId) {
+        try {
+            return lockClient.getLock(key).tryLockAsync(waitTime, expireTime, timeUnit, lockId).toCompletableFuture();
+        } catch (Exception exception) {
+            log.error("cluster redis 【tryLockAsync】 error:{}", exception);
+            return failedFuture(exception);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> unlockAsync(String key, long lockId) {
+        try {
+            return lockClient.getLock(key).unlockAsync(lockId).toCompletableFuture();
+        } catch (Exception exception) {
+            log.error("cluster redis 【unlockAsync】 error:{}", exception);
+            return failedFuture(exception);
+        }
+    }
+
+    /**
+     * 构造一个异常结束的CompletableFuture
+     */
+    private static <T> CompletableFuture<T> failedFuture(Exception exception) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(new RedisClientException(exception.getMessage(), exception));
+        return future;
+    }
+
+    @Override
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        try {
+            if (sharedConnections != null) {
+                sharedConnections.close();
+            }
+            if (pool != null) {
+                pool.close();
+            }
+            trackingConnections.values().forEach(RedisTrackingConnection::close);
+            trackingConnections.clear();
+            trackingClients.values().forEach(io.lettuce.core.RedisClient::shutdown);
+            trackingClients.clear();
+            if (streamConnection != null) {
+                streamConnection.close();
+            }
+            pubSubConnection.close();
+            lockClient.shutdown();
+            cluster.shutdown();
+        } catch (Exception exception) {
+            log.error("cluster redis 【shutdown】 error:{}", exception);
         }
     }
 
@@ -4,11 +4,17 @@ import com.xul.core.config.RedisConfig;
 import com.xul.core.listener.RedisMessageListener;
 import com.xul.core.redis.serializer.RedisSerializer;
 import com.xul.core.function.CacheFunctionWithoutReturn;
+import com.xul.core.supports.CircuitBreaker;
+import com.xul.core.supports.TtlValue;
 import com.xul.core.utils.StringUtils;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * redis客户端
@@ -18,6 +24,22 @@ import java.util.concurrent.TimeUnit;
  **/
 public interface RedisClient {
 
+    /**
+     * 同时获取值和毫秒剩余生存时间的Lua脚本
+     */
+    String GET_WITH_TTL_SCRIPT = "return {redis.call('GET', KEYS[1]), redis.call('PTTL', KEYS[1])}";
+
+    /**
+     * 将已存在的位图指定偏移量设置为1的Lua脚本，不存在的位图不创建
+     */
+    String SET_BITS_IF_EXISTS_SCRIPT = "for i = 1, #KEYS do if redis.call('EXISTS', KEYS[i]) == 1 then "
+            + "for j = 1, #ARGV do redis.call('SETBIT', KEYS[i], ARGV[j], 1) end end end return 0";
+
+    /**
+     * 删除位图并重新创建（只设置第0位）的Lua脚本
+     */
+    String RESET_BITS_SCRIPT = "redis.call('DEL', KEYS[1]) redis.call('SETBIT', KEYS[1], 0, 1) return 0";
+
     /**
      * 获取RedisClient实例
      *
@@ -60,6 +82,15 @@ public interface RedisClient {
     <T> T get(String key, Class<T> resultType, RedisSerializer valueRedisSerializer);
 
 
+    /**
+     * 批量获取key的缓存值（MGET），集群模式下按slot分组后并行发送
+     *
+     * @param keys       key集合
+     * @param resultType 返回值类型
+     * @return 命中的key-value，不存在的key不会出现在结果中
+     */
+    <T> Map<String, T> mget(Collection<String> keys, Class<T> resultType);
+
     /**
      * <p>
      * 向redis存入key和value,并释放连接资源
@@ -109,6 +140,49 @@ public interface RedisClient {
     void set(String key, Object value, long time, TimeUnit unit, RedisSerializer valueRedisSerializer);
 
 
+    /**
+     * 以pipeline方式批量存入key和value，并统一设置过期时间
+     *
+     * @param values key-value集合
+     * @param time   时间
+     * @param unit   时间单位
+     */
+    void mset(Map<String, Object> values, long time, TimeUnit unit);
+
+    /**
+     * 以pipeline方式批量将位图指定偏移量设置为1
+     *
+     * @param key     key
+     * @param offsets 偏移量集合
+     */
+    void setBits(String key, Collection<Long> offsets);
+
+    /**
+     * 以pipeline方式批量查询位图指定偏移量
+     *
+     * @param key     key
+     * @param offsets 偏移量集合
+     * @return 所有偏移量都为1返回true
+     */
+    boolean getBits(String key, Collection<Long> offsets);
+
+    /**
+     * 原子地将多个位图中已存在的位图指定偏移量设置为1，集群模式下所有key必须在同一个slot
+     *
+     * @param keys    key集合
+     * @param offsets 偏移量集合
+     */
+    void setBitsIfExists(Collection<String> keys, Collection<Long> offsets);
+
+    /**
+     * 重命名key，集群模式下两个key必须在同一个slot
+     *
+     * @param key    key
+     * @param newKey 新key
+     */
+    void rename(String key, String newKey);
+
+
     /**
      * Set the string value as value of the key. The string can't be longer than 1073741824 bytes (1
      * GB).
@@ -175,6 +249,24 @@ public interface RedisClient {
      */
     Long getExpire(String key);
 
+    /**
+     * 一次请求同时获取缓存值和剩余生存时间（Lua脚本执行 GET + PTTL）
+     *
+     * @param key        key
+     * @param resultType 返回值类型对应的Class对象
+     * @return 缓存值和以毫秒为单位的剩余生存时间，key不存在时值为null，生存时间为-2
+     */
+    <T> TtlValue<T> getWithTtl(String key, Class<T> resultType);
+
+    /**
+     * 批量获取缓存值和剩余生存时间，每个key一次 GET + PTTL 脚本，批量发送后等待全部完成
+     *
+     * @param keys       key集合
+     * @param resultType 返回值类型
+     * @return 命中的key和对应的缓存值、以毫秒为单位的剩余生存时间，不存在的key不会出现在结果中
+     */
+    <T> Map<String, TtlValue<T>> mgetWithTtl(Collection<String> keys, Class<T> resultType);
+
     /**
      * <p>
      * 查询符合条件的key
@@ -192,10 +284,10 @@ public interface RedisClient {
      *
      * @param key                  key
      * @param valueRedisSerializer 指定序列化器
-     * @param values               可以使一个string 也可以使string数组
+     * @param values               可以使一个string 也可以使string数组，也可以是指定序列化器支持的对象
      * @return 返回list的value个数
      */
-    void lpush(String key, RedisSerializer valueRedisSerializer, String... values);
+    void lpush(String key, RedisSerializer valueRedisSerializer, Object... values);
 
     /**
      * <p>
@@ -223,6 +315,108 @@ public interface RedisClient {
      */
     List<String> lrange(String key, long start, long end, RedisSerializer valueRedisSerializer);
 
+    /**
+     * <p>
+     * 通过key获取list指定下标位置的value，按指定类型反序列化
+     * </p>
+     *
+     * @param key                  key
+     * @param start                起始位置
+     * @param end                  结束位置
+     * @param valueRedisSerializer 指定序列化器
+     * @param resultType           值类型
+     * @return List
+     */
+    <T> List<T> lrange(String key, long start, long end, RedisSerializer valueRedisSerializer, Class<T> resultType);
+
+    /**
+     * 向stream追加消息，超过最大长度时近似裁剪最早的消息
+     *
+     * @param key                  key
+     * @param maxLength            stream最大长度
+     * @param valueRedisSerializer 指定序列化器
+     * @param message              消息内容
+     * @return 消息ID
+     */
+    String xadd(String key, long maxLength, RedisSerializer valueRedisSerializer, Object message);
+
+    /**
+     * 按消息ID从小到大获取stream指定区间的消息
+     *
+     * @param key                  key
+     * @param start                起始消息ID（包含），"-"表示最小
+     * @param end                  结束消息ID（包含），"+"表示最大
+     * @param count                最多返回的消息数量
+     * @param valueRedisSerializer 指定序列化器
+     * @param resultType           消息类型
+     * @return 消息ID和消息内容，按消息ID有序
+     */
+    <T> Map<String, T> xrange(String key, String start, String end, long count, RedisSerializer valueRedisSerializer, Class<T> resultType);
+
+    /**
+     * 按消息ID从大到小获取stream指定区间的消息
+     *
+     * @param key                  key
+     * @param end                  结束消息ID（包含），"+"表示最大
+     * @param start                起始消息ID（包含），"-"表示最小
+     * @param count                最多返回的消息数量
+     * @param valueRedisSerializer 指定序列化器
+     * @param resultType           消息类型
+     * @return 消息ID和消息内容，按消息ID有序
+     */
+    <T> Map<String, T> xrevrange(String key, String end, String start, long count, RedisSerializer valueRedisSerializer, Class<T> resultType);
+
+    /**
+     * 阻塞读取stream中指定消息ID之后的消息，使用独立连接，不占用连接池
+     *
+     * @param key                  key
+     * @param lastId               已读取的最后一条消息ID
+     * @param count                最多返回的消息数量
+     * @param block                没有新消息时的阻塞时间，毫秒
+     * @param valueRedisSerializer 指定序列化器
+     * @param resultType           消息类型
+     * @return 消息ID和消息内容，按消息ID有序，超时没有新消息返回空
+     */
+    <T> Map<String, T> xread(String key, String lastId, long count, long block, RedisSerializer valueRedisSerializer, Class<T> resultType);
+
+    /**
+     * 有序集合成员的分值增加指定值，异步执行不等待结果
+     *
+     * @param key       key
+     * @param increment 增加的分值
+     * @param member    成员
+     */
+    void zincrby(String key, double increment, String member);
+
+    /**
+     * 按分值从高到低获取有序集合指定排名区间的成员
+     *
+     * @param key   key
+     * @param start 起始排名
+     * @param end   结束排名，-1表示最后一个
+     * @return List
+     */
+    List<String> zrevrange(String key, long start, long end);
+
+    /**
+     * 删除有序集合指定排名区间（按分值从低到高）的成员
+     *
+     * @param key   key
+     * @param start 起始排名
+     * @param end   结束排名
+     * @return 删除的成员数量
+     */
+    Long zremrangebyrank(String key, long start, long end);
+
+    /**
+     * key的值增加指定值，key不存在时从0开始
+     *
+     * @param key       key
+     * @param increment 增加的值
+     * @return 增加后的值
+     */
+    Long incrby(String key, long increment);
+
     /**
      * 执行Lua脚本
      *
@@ -250,6 +444,22 @@ public interface RedisClient {
      */
     void subscribe(RedisMessageListener messageListener, String... channel);
 
+    /**
+     * 开启客户端缓存跟踪（redis 6 CLIENT TRACKING BCAST模式），匹配前缀的key发生变更时redis推送失效消息。
+     * 重复调用按新的前缀重新开启跟踪
+     *
+     * @param prefixes 跟踪的key前缀，为空跟踪所有key
+     * @param listener 失效消息监听器，参数为失效的key，null表示全部失效（如FLUSHALL）
+     */
+    void tracking(Collection<String> prefixes, Consumer<List<String>> listener);
+
+    /**
+     * 检查客户端缓存跟踪连接，断开过或节点变化时重新开启跟踪
+     *
+     * @return boolean 是否重新开启过，期间的失效消息可能已丢失
+     */
+    boolean checkTracking();
+
 
     /**
      * 获取分布式锁并释放锁并返回业务执行结果
@@ -265,6 +475,128 @@ public interface RedisClient {
      **/
     public boolean tryLock(String key, long waitTime, long expireTime, TimeUnit timeUnit, CacheFunctionWithoutReturn bussiness);
 
+    /**
+     * 异步获取key的缓存值value，并将value转换成对应类型返回
+     *
+     * @param key        key
+     * @param resultType 返回值类型
+     * @return 缓存值，不存在时为 {@literal null}
+     */
+    <T> CompletableFuture<T> getAsync(String key, Class<T> resultType);
+
+    /**
+     * 异步获取缓存值和剩余生存时间（Lua脚本执行 GET + PTTL）
+     *
+     * @param key        key
+     * @param resultType 返回值类型
+     * @return 缓存值和以毫秒为单位的剩余生存时间，key不存在时值为null，生存时间为-2
+     */
+    <T> CompletableFuture<TtlValue<T>> getWithTtlAsync(String key, Class<T> resultType);
+
+    /**
+     * 异步向redis存入key和value，如果key已经存在 则覆盖
+     *
+     * @param key   key
+     * @param value value
+     * @param time  时间
+     * @param unit  时间单位
+     * @return CompletableFuture
+     */
+    CompletableFuture<Void> setAsync(String key, Object value, long time, TimeUnit unit);
+
+    /**
+     * 异步删除指定的key
+     *
+     * @param keys key
+     * @return 删除成功的个数
+     */
+    CompletableFuture<Long> deleteAsync(String... keys);
+
+    /**
+     * 异步通过key向list头部添加字符串
+     *
+     * @param key                  key
+     * @param valueRedisSerializer 指定序列化器
+     * @param values               value
+     * @return list的长度
+     */
+    CompletableFuture<Long> lpushAsync(String key, RedisSerializer valueRedisSerializer, Object... values);
+
+    /**
+     * 异步向stream追加消息，超过最大长度时近似裁剪最早的消息
+     *
+     * @param key                  key
+     * @param maxLength            stream最大长度
+     * @param valueRedisSerializer 指定序列化器
+     * @param message              消息内容
+     * @return 消息ID
+     */
+    CompletableFuture<String> xaddAsync(String key, long maxLength, RedisSerializer valueRedisSerializer, Object message);
+
+    /**
+     * 异步将key的值增加指定值，key不存在时从0开始
+     *
+     * @param key       key
+     * @param increment 增加的值
+     * @return 增加后的值
+     */
+    CompletableFuture<Long> incrbyAsync(String key, long increment);
+
+    /**
+     * 异步为给定 key 设置生存时间
+     *
+     * @param key      key
+     * @param timeout  过期时间
+     * @param timeUnit 时间单位
+     * @return 是否设置成功
+     */
+    CompletableFuture<Boolean> expireAsync(String key, long timeout, TimeUnit timeUnit);
+
+    /**
+     * 异步发送消息
+     *
+     * @param channel 发送消息的频道
+     * @param message 消息内容
+     * @return 收到消息的订阅者数量
+     */
+    CompletableFuture<Long> publishAsync(String channel, String message);
+
+    /**
+     * 异步获取分布式锁
+     * <p>
+     * 异步回调不在固定线程上执行，所以用lockId代替线程id标识锁的持有者，释放锁时需传入同一个lockId
+     * </p>
+     *
+     * @param key        key
+     * @param waitTime   获取锁的等待时间
+     * @param expireTime 获取锁后的过期时间
+     * @param timeUnit   时间单位
+     * @param lockId     锁持有者标识
+     * @return 是否获取到锁
+     */
+    CompletableFuture<Boolean> tryLockAsync(String key, long waitTime, long expireTime, TimeUnit timeUnit, long lockId);
+
+    /**
+     * 异步释放分布式锁
+     *
+     * @param key    key
+     * @param lockId 获取锁时使用的锁持有者标识
+     * @return CompletableFuture
+     */
+    CompletableFuture<Void> unlockAsync(String key, long lockId);
+
+    /**
+     * redis熔断器
+     *
+     * @return the {@link CircuitBreaker}
+     */
+    CircuitBreaker getCircuitBreaker();
+
+    /**
+     * 关闭客户端，释放连接、连接池和flush线程
+     */
+    void shutdown();
+
     /**
      * key序列化方式
      *
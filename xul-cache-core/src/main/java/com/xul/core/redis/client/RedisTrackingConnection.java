@@ -0,0 +1,208 @@
+package com.xul.core.redis.client;
+
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisConnectionStateAdapter;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.output.IntegerOutput;
+import io.lettuce.core.output.StatusOutput;
+import io.lettuce.core.protocol.CommandArgs;
+import io.lettuce.core.protocol.CommandType;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 单个redis节点的客户端缓存跟踪连接（redis 6 CLIENT TRACKING BCAST模式）
+ * <p>
+ * 一个订阅连接订阅失效频道，一个跟踪连接开启跟踪并把失效消息重定向到订阅连接（RESP2 REDIRECT），
+ * redis会把匹配前缀的key的每次变更推送过来。任一连接断线重连后连接ID变化，需要调用 {@link #check()} 重新开启跟踪
+ * </p>
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+@Slf4j
+class RedisTrackingConnection {
+
+    /**
+     * redis失效消息频道
+     */
+    static final String INVALIDATE_CHANNEL = "__redis__:invalidate";
+
+    private final io.lettuce.core.RedisClient client;
+
+    /**
+     * 节点描述，用于日志
+     */
+    private final String node;
+
+    private final InvalidationCodec codec = new InvalidationCodec();
+
+    private volatile StatefulRedisPubSubConnection<String, String> pubSubConnection;
+
+    private volatile StatefulRedisConnection<String, String> trackingConnection;
+
+    /**
+     * 订阅连接的连接ID，失效消息重定向到该连接
+     */
+    private long redirectId;
+
+    private Collection<String> prefixes = Collections.emptyList();
+
+    private Consumer<List<String>> listener;
+
+    /**
+     * 连接是否断开过
+     */
+    private volatile boolean disconnected;
+
+    RedisTrackingConnection(io.lettuce.core.RedisClient client, String node) {
+        this.client = client;
+        this.node = node;
+        client.addListener(new RedisConnectionStateAdapter() {
+            @Override
+            public void onRedisDisconnected(RedisChannelHandler<?, ?> connection) {
+                if (connection == pubSubConnection || connection == trackingConnection) {
+                    disconnected = true;
+                }
+            }
+        });
+    }
+
+    /**
+     * 开启跟踪，已开启时按新的前缀重新开启，先开启新的跟踪连接再关闭旧的，期间不会丢失失效消息
+     *
+     * @param prefixes 跟踪的key前缀，为空跟踪所有key
+     * @param listener 失效的key，null表示全部失效
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    synchronized void start(Collection<String> prefixes, Consumer<List<String>> listener) {
+        this.listener = listener;
+        if (pubSubConnection == null) {
+            StatefulRedisPubSubConnection<String, String> connection = client.connectPubSub(codec);
+            connection.addListener(new RedisPubSubAdapter<String, String>() {
+                @Override
+                public void message(String channel, String message) {
+                    onInvalidate(channel);
+                }
+            });
+            /**订阅后连接只能执行订阅相关命令，先获取连接ID*/
+            redirectId = connection.sync().dispatch(CommandType.CLIENT, new IntegerOutput<>(codec), new CommandArgs<>(codec).add("ID"));
+            connection.sync().subscribe(INVALIDATE_CHANNEL);
+            pubSubConnection = connection;
+        }
+
+        StatefulRedisConnection<String, String> connection = client.connect();
+        CommandArgs<String, String> args = new CommandArgs<>(StringCodec.UTF8).add("TRACKING").add("ON")
+                .add("REDIRECT").add(redirectId).add("BCAST");
+        for (String prefix : prefixes) {
+            args.add("PREFIX").add(prefix);
+        }
+        connection.sync().dispatch(CommandType.CLIENT, new StatusOutput<>(StringCodec.UTF8), args);
+        StatefulRedisConnection<String, String> old = trackingConnection;
+        trackingConnection = connection;
+        this.prefixes = new ArrayList<>(prefixes);
+        if (old != null) {
+            old.close();
+        }
+        log.info("redis节点【{}】开启客户端缓存跟踪，重定向连接ID：{}，前缀：{}", node, redirectId, prefixes);
+    }
+
+    /**
+     * 检查连接，断开过则重建订阅连接和跟踪连接
+     *
+     * @return: boolean 是否重建，重建前的失效消息可能已丢失
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    synchronized boolean check() {
+        if (!disconnected || listener == null) {
+            return false;
+        }
+        log.warn("redis节点【{}】客户端缓存跟踪连接断开过，重新开启跟踪", node);
+        close();
+        disconnected = false;
+        try {
+            start(prefixes, listener);
+        } catch (RuntimeException e) {
+            disconnected = true;
+            throw e;
+        }
+        return true;
+    }
+
+    synchronized void close() {
+        StatefulRedisPubSubConnection<String, String> pubSub = pubSubConnection;
+        StatefulRedisConnection<String, String> tracking = trackingConnection;
+        pubSubConnection = null;
+        trackingConnection = null;
+        if (pubSub != null) {
+            pubSub.close();
+        }
+        if (tracking != null) {
+            tracking.close();
+        }
+    }
+
+    /**
+     * 收到失效消息，一条消息可能包含多个key，flush时为null
+     */
+    private void onInvalidate(String channel) {
+        List<String> keys = codec.drain();
+        if (!INVALIDATE_CHANNEL.equals(channel) || listener == null) {
+            return;
+        }
+        listener.accept(keys.isEmpty() || keys.contains(null) ? null : keys);
+    }
+
+    /**
+     * 失效消息解码器
+     * <p>
+     * RESP2下失效消息的内容是key数组，lettuce只会把最后一个元素作为消息内容，
+     * 所以在解码时记录所有元素，收到消息时取出。解码和消息回调都在连接的IO线程中顺序执行
+     * </p>
+     */
+    private static final class InvalidationCodec implements RedisCodec<String, String> {
+
+        private List<String> pending = new ArrayList<>();
+
+        private List<String> drain() {
+            List<String> keys = pending;
+            pending = new ArrayList<>();
+            return keys;
+        }
+
+        @Override
+        public String decodeKey(ByteBuffer bytes) {
+            return StringCodec.UTF8.decodeKey(bytes);
+        }
+
+        @Override
+        public String decodeValue(ByteBuffer bytes) {
+            String value = bytes == null ? null : StringCodec.UTF8.decodeValue(bytes);
+            pending.add(value);
+            return value;
+        }
+
+        @Override
+        public ByteBuffer encodeKey(String key) {
+            return StringCodec.UTF8.encodeKey(key);
+        }
+
+        @Override
+        public ByteBuffer encodeValue(String value) {
+            return StringCodec.UTF8.encodeValue(value);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.xul.core.redis.client;
+
+import com.xul.core.config.RedisConfig;
+import com.xul.core.utils.NamedThreadFactory;
+import io.lettuce.core.api.StatefulConnection;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 共享连接组
+ * <p>
+ * lettuce的连接是线程安全的，多个线程共用少量连接即可。配置了flushInterval时关闭连接的自动flush，
+ * 由定时任务按时间间隔、或单个连接累计命令数达到flushSize时统一flush，把并发发出的命令合并成一次网络写
+ * </p>
+ *
+ * @author: xl
+ * @date: 2021/10/15
+ **/
+@Slf4j
+public class SharedConnectionGroup<C extends StatefulConnection<byte[], byte[]>> {
+
+    /**
+     * 定时flush的最小时间间隔，单位微秒，过小的间隔会让flush线程空转
+     */
+    private static final long MIN_FLUSH_INTERVAL = 100;
+
+    /**
+     * 连接空闲后继续定时flush的时长，单位纳秒，覆盖计数之后才写入的命令
+     */
+    private static final long IDLE_FLUSH_GRACE = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * 共享连接
+     */
+    private final List<C> connections;
+
+    /**
+     * 每个连接未flush的命令数
+     */
+    private final List<AtomicInteger> pendingCommands;
+
+    /**
+     * 轮询下标
+     */
+    private final AtomicInteger index = new AtomicInteger();
+
+    /**
+     * 累计命令数达到该值时立即flush
+     */
+    private final int flushSize;
+
+    /**
+     * 是否合并flush
+     */
+    private final boolean batchFlush;
+
+    /**
+     * 每个连接最近一次定时flush时有待flush命令的时间，只在flush线程中读写
+     */
+    private long[] lastActiveTimes;
+
+    /**
+     * flush定时任务线程池
+     */
+    private ScheduledThreadPoolExecutor flushExecutor;
+
+    public SharedConnectionGroup(Supplier<C> connectionFactory, RedisConfig redisConfig) {
+        int size = Math.max(1, redisConfig.getSharedConnectionSize());
+        this.connections = new ArrayList<>(size);
+        this.pendingCommands = new ArrayList<>(size);
+        this.flushSize = Math.max(1, redisConfig.getFlushSize());
+        this.batchFlush = redisConfig.getFlushInterval() > 0;
+        for (int i = 0; i < size; i++) {
+            C connection = connectionFactory.get();
+            if (batchFlush) {
+                connection.setAutoFlushCommands(false);
+            }
+            connections.add(connection);
+            pendingCommands.add(new AtomicInteger());
+        }
+        long flushInterval = redisConfig.getFlushInterval();
+        if (batchFlush) {
+            if (flushInterval < MIN_FLUSH_INTERVAL) {
+                log.warn("layering-cache redis共享连接flushInterval:{}us过小，使用最小值:{}us", flushInterval, MIN_FLUSH_INTERVAL);
+                flushInterval = MIN_FLUSH_INTERVAL;
+            }
+            lastActiveTimes = new long[size];
+            flushExecutor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("layering-cache-redis-flush"));
+            flushExecutor.scheduleAtFixedRate(this::flushPending, flushInterval, flushInterval, TimeUnit.MICROSECONDS);
+        }
+        log.info("layering-cache redis共享连接初始化完成，连接数:{}，flushInterval:{}us，flushSize:{}", size, flushInterval, flushSize);
+    }
+
+    /**
+     * 轮询获取一个共享连接，并累计该连接待flush的命令数
+     * <p>
+     * 计数发生在命令写入之前，计数触发的flush早于调用方写入命令，flush后重新计入调用方的命令，由定时flush写出
+     * </p>
+     *
+     * @return 共享连接
+     */
+    public C next() {
+        int i = (index.getAndIncrement() & Integer.MAX_VALUE) % connections.size();
+        C connection = connections.get(i);
+        if (batchFlush && pendingCommands.get(i).incrementAndGet() >= flushSize) {
+            flush(i);
+            pendingCommands.get(i).incrementAndGet();
+        }
+        return connection;
+    }
+
+    /**
+     * 定时flush有待flush命令的连接
+     * <p>
+     * 连接空闲后在IDLE_FLUSH_GRACE内继续flush，保证计数之后才写入的命令也能被写出，超过后跳过空闲连接
+     * </p>
+     */
+    private void flushPending() {
+        long now = System.nanoTime();
+        for (int i = 0; i < connections.size(); i++) {
+            if (pendingCommands.get(i).get() > 0) {
+                lastActiveTimes[i] = now;
+            } else if (now - lastActiveTimes[i] > IDLE_FLUSH_GRACE) {
+                continue;
+            }
+            flush(i);
+        }
+    }
+
+    /**
+     * flush所有连接，不判断待flush的命令数
+     */
+    private void flushAll() {
+        for (int i = 0; i < connections.size(); i++) {
+            flush(i);
+        }
+    }
+
+    private void flush(int i) {
+        try {
+            pendingCommands.get(i).set(0);
+            connections.get(i).flushCommands();
+        } catch (Exception exception) {
+            log.error("layering-cache redis共享连接flush异常：{}", exception.getMessage(), exception);
+        }
+    }
+
+    /**
+     * 关闭共享连接
+     */
+    public void close() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdown();
+            flushExecutor = null;
+        }
+        flushAll();
+        connections.forEach(StatefulConnection::close);
+    }
+}
@@ -5,9 +5,13 @@ import com.xul.core.listener.RedisMessageListener;
 import com.xul.core.redis.serializer.KryoRedisSerializer;
 import com.xul.core.redis.serializer.ProtostuffRedisSerializer;
 import com.xul.core.redis.serializer.RedisSerializer;
+import com.xul.core.redis.serializer.SerializationUtils;
+import com.xul.core.supports.TtlValue;
 import com.xul.core.exception.RedisClientException;
 import com.xul.core.function.CacheFunctionWithoutReturn;
 import com.xul.core.redis.serializer.StringRedisSerializer;
+import com.xul.core.supports.CircuitBreaker;
+import com.xul.core.supports.RedisConnectionMode;
 import com.xul.core.utils.GSONUtil;
 import com.xul.core.utils.StringUtils;
 import io.lettuce.core.*;
@@ -22,8 +26,11 @@ import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
 import org.springframework.util.CollectionUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -42,7 +49,17 @@ public class SingleRedisClient implements RedisClient {
     private RedisSerializer keyRedisSerializer = new StringRedisSerializer();
     private RedisSerializer valueRedisSerializer = new ProtostuffRedisSerializer();
 
-    private static GenericObjectPool<StatefulRedisConnection<byte[], byte[]>> pool;
+    /**
+     * stream消息的字段名
+     */
+    private static final byte[] STREAM_FIELD = "m".getBytes(StandardCharsets.UTF_8);
+
+    private GenericObjectPool<StatefulRedisConnection<byte[], byte[]>> pool;
+
+    /**
+     * 共享连接组，SHARED连接模式下使用
+     */
+    private SharedConnectionGroup<StatefulRedisConnection<byte[], byte[]>> sharedConnections;
 
 
     /**
@@ -60,6 +77,21 @@ public class SingleRedisClient implements RedisClient {
      */
     private final RedissonClient lockClient;
 
+    /**
+     * redis熔断器
+     */
+    private final CircuitBreaker circuitBreaker;
+
+    /**
+     * stream阻塞读取连接，XREAD BLOCK会占住连接，不能使用连接池和共享连接
+     */
+    private StatefulRedisConnection<byte[], byte[]> streamConnection;
+
+    /**
+     * 客户端缓存跟踪连接
+     */
+    private RedisTrackingConnection trackingConnection;
+
     public SingleRedisClient(RedisConfig redisConfig) {
         RedisURI redisURI = RedisURI.builder()
                 .withHost(redisConfig.getHost())
@@ -77,25 +109,36 @@ public class SingleRedisClient implements RedisClient {
                 .pingBeforeActivateConnection(true)
                 .build());
 
-        GenericObjectPoolConfig genericObjectPoolConfig = new GenericObjectPoolConfig();
-        //redis最大连接数
-        genericObjectPoolConfig.setMaxTotal(redisConfig.getMaxSize());
-        //空闲时最大连接数
-        genericObjectPoolConfig.setMaxIdle(redisConfig.getIdleMaxSize());
-        //空闲时最小连接数
-        genericObjectPoolConfig.setMinIdle(redisConfig.getMinSize());
-        pool = ConnectionPoolSupport.createGenericObjectPool(() -> {
-            this.connection = client.connect(new ByteArrayCodec());
-            return this.connection;
-        }, genericObjectPoolConfig);
+        if (RedisConnectionMode.SHARED.equals(redisConfig.getConnectionMode())) {
+            sharedConnections = new SharedConnectionGroup<>(() -> client.connect(new ByteArrayCodec()), redisConfig);
+        } else {
+            GenericObjectPoolConfig genericObjectPoolConfig = new GenericObjectPoolConfig();
+            //redis最大连接数
+            genericObjectPoolConfig.setMaxTotal(redisConfig.getMaxSize());
+            //空闲时最大连接数
+            genericObjectPoolConfig.setMaxIdle(redisConfig.getIdleMaxSize());
+            //空闲时最小连接数
+            genericObjectPoolConfig.setMinIdle(redisConfig.getMinSize());
+            pool = ConnectionPoolSupport.createGenericObjectPool(() -> {
+                this.connection = client.connect(new ByteArrayCodec());
+                return this.connection;
+            }, genericObjectPoolConfig);
+        }
         this.pubSubConnection = client.connectPubSub();
         lockClient = new RedissonLockClient(redisConfig).getRedissonClient();
+        circuitBreaker = new CircuitBreaker(redisConfig);
     }
 
     /**
      * 获取连接池
      */
-    private static StatefulRedisConnection<byte[], byte[]> getLettcueRedisResource() {
+    private StatefulRedisConnection<byte[], byte[]> getLettcueRedisResource() {
+        if (circuitBreaker.isOpen()) {
+            throw new RedisClientException("redis熔断中，快速失败");
+        }
+        if (sharedConnections != null) {
+            return sharedConnections.next();
+        }
         StatefulRedisConnection<byte[], byte[]> connection = null;
         try {
             connection = pool.borrowObject();     // <3> 创建线程安全的连接
@@ -113,7 +156,10 @@ public class SingleRedisClient implements RedisClient {
      * @author: xl
      * @date: 2021/9/27
      **/
-    private static void returnConnectionPool(StatefulRedisConnection<byte[], byte[]> connection) {
+    private void returnConnectionPool(StatefulRedisConnection<byte[], byte[]> connection) {
+        if (sharedConnections != null || connection == null) {
+            return;
+        }
         try {
             pool.returnObject(connection);
         } catch (Exception exception) {
@@ -129,7 +175,7 @@ public class SingleRedisClient implements RedisClient {
             connection = getLettcueRedisResource();
             byte[] cache = connection.sync().get(keyRedisSerializer.serialize(key));
             if (cache != null) {
-                return valueRedisSerializer.deserialize(cache, resultType);
+                return SerializationUtils.deserializeValue(valueRedisSerializer, cache, resultType);
             }
             return null;
         } catch (Exception exception) {
@@ -148,7 +194,7 @@ public class SingleRedisClient implements RedisClient {
             connection = getLettcueRedisResource();
             byte[] cache = connection.sync().get(keyRedisSerializer.serialize(key));
             if (cache != null) {
-                return valueRedisSerializer.deserialize(cache, resultType);
+                return SerializationUtils.deserializeValue(valueRedisSerializer, cache, resultType);
             }
             return null;
         } catch (Exception exception) {
@@ -159,13 +205,43 @@ public class SingleRedisClient implements RedisClient {
         }
     }
 
+    @Override
+    public <T> Map<String, T> mget(Collection<String> keys, Class<T> resultType) {
+        Map<String, T> result = new HashMap<>();
+        if (CollectionUtils.isEmpty(keys)) {
+            return result;
+        }
+        StatefulRedisConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            List<String> keyList = new ArrayList<>(keys);
+            final byte[][] bkeys = new byte[keyList.size()][];
+            for (int i = 0; i < keyList.size(); i++) {
+                bkeys[i] = keyRedisSerializer.serialize(keyList.get(i));
+            }
+            List<KeyValue<byte[], byte[]>> values = connection.sync().mget(bkeys);
+            for (int i = 0; i < values.size(); i++) {
+                KeyValue<byte[], byte[]> keyValue = values.get(i);
+                if (keyValue.hasValue()) {
+                    result.put(keyList.get(i), SerializationUtils.deserializeValue(valueRedisSerializer, keyValue.getValue(), resultType));
+                }
+            }
+            return result;
+        } catch (Exception exception) {
+            log.error("single redis 【mget】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
     @Override
     public void set(String key, Object value) {
 
         StatefulRedisConnection<byte[], byte[]> connection = null;
         try {
             connection = getLettcueRedisResource();
-            connection.async().set(keyRedisSerializer.serialize(key), valueRedisSerializer.serialize(value));
+            connection.async().set(keyRedisSerializer.serialize(key), SerializationUtils.serializeValue(valueRedisSerializer, value));
         } catch (Exception exception) {
             log.error("single redis 【set】 error:{}", exception);
             throw new RedisClientException(exception.getMessage(), exception);
@@ -181,7 +257,7 @@ public class SingleRedisClient implements RedisClient {
 
         try {
             connection = getLettcueRedisResource();
-            connection.async().setex(keyRedisSerializer.serialize(key), unit.toSeconds(time), valueRedisSerializer.serialize(value));
+            connection.async().setex(keyRedisSerializer.serialize(key), unit.toSeconds(time), SerializationUtils.serializeValue(valueRedisSerializer, value));
         } catch (Exception exception) {
             log.error("single redis 【setExpire】 error:{}", exception);
             throw new RedisClientException(exception.getMessage(), exception);
@@ -196,7 +272,7 @@ public class SingleRedisClient implements RedisClient {
 
         try {
             connection = getLettcueRedisResource();
-            connection.async().setex(keyRedisSerializer.serialize(key), unit.toSeconds(time), valueRedisSerializer.serialize(value));
+            connection.async().setex(keyRedisSerializer.serialize(key), unit.toSeconds(time), SerializationUtils.serializeValue(valueRedisSerializer, value));
         } catch (Exception exception) {
             log.error("single redis 【setExpireSerializer】 error:{}", exception);
             throw new RedisClientException(exception.getMessage(), exception);
@@ -205,6 +281,151 @@ public class SingleRedisClient implements RedisClient {
         }
     }
 
+    @Override
+    public void mset(Map<String, Object> values, long time, TimeUnit unit) {
+        if (CollectionUtils.isEmpty(values)) {
+            return;
+        }
+        StatefulRedisConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            // 借出的连接为当前线程独占，关闭自动flush后一次性写出所有命令；共享连接由连接组统一flush
+            boolean pipelined = sharedConnections == null;
+            if (pipelined) {
+                connection.setAutoFlushCommands(false);
+            }
+            List<RedisFuture<String>> futures = new ArrayList<>(values.size());
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                futures.add(connection.async().psetex(keyRedisSerializer.serialize(entry.getKey()), unit.toMillis(time),
+                        SerializationUtils.serializeValue(valueRedisSerializer, entry.getValue())));
+            }
+            if (pipelined) {
+                connection.flushCommands();
+            }
+            if (!LettuceFutures.awaitAll(connection.getTimeout(), futures.toArray(new RedisFuture[0]))) {
+                // 超时未完成的命令可能没有执行，不能当作成功
+                throw new RedisClientException("single redis 【mset】 command timeout after " + connection.getTimeout());
+            }
+        } catch (Exception exception) {
+            log.error("single redis 【mset】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            if (connection != null && sharedConnections == null) {
+                connection.setAutoFlushCommands(true);
+            }
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public void setBits(String key, Collection<Long> offsets) {
+        if (CollectionUtils.isEmpty(offsets)) {
+            return;
+        }
+        StatefulRedisConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            boolean pipelined = sharedConnections == null;
+            if (pipelined) {
+                connection.setAutoFlushCommands(false);
+            }
+            byte[] bkey = keyRedisSerializer.serialize(key);
+            List<RedisFuture<Long>> futures = new ArrayList<>(offsets.size());
+            for (Long offset : offsets) {
+                futures.add(connection.async().setbit(bkey, offset, 1));
+            }
+            if (pipelined) {
+                connection.flushCommands();
+            }
+            if (!LettuceFutures.awaitAll(connection.getTimeout(), futures.toArray(new RedisFuture[0]))) {
+                // 超时未完成的命令可能没有执行，不能当作成功
+                throw new RedisClientException("single redis 【setBits】 command timeout after " + connection.getTimeout());
+            }
+        } catch (Exception exception) {
+            log.error("single redis 【setBits】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            if (connection != null && sharedConnections == null) {
+                connection.setAutoFlushCommands(true);
+            }
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public void setBitsIfExists(Collection<String> keys, Collection<Long> offsets) {
+        if (CollectionUtils.isEmpty(keys) || CollectionUtils.isEmpty(offsets)) {
+            return;
+        }
+        StatefulRedisConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            byte[][] bkeys = keys.stream().map(key -> keyRedisSerializer.serialize(key)).toArray(byte[][]::new);
+            byte[][] boffsets = offsets.stream().map(offset -> String.valueOf(offset).getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+            connection.sync().eval(SET_BITS_IF_EXISTS_SCRIPT, ScriptOutputType.INTEGER, bkeys, boffsets);
+        } catch (Exception exception) {
+            log.error("single redis 【setBitsIfExists】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public boolean getBits(String key, Collection<Long> offsets) {
+        if (CollectionUtils.isEmpty(offsets)) {
+            return true;
+        }
+        StatefulRedisConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            boolean pipelined = sharedConnections == null;
+            if (pipelined) {
+                connection.setAutoFlushCommands(false);
+            }
+            byte[] bkey = keyRedisSerializer.serialize(key);
+            List<RedisFuture<Long>> futures = new ArrayList<>(offsets.size());
+            for (Long offset : offsets) {
+                futures.add(connection.async().getbit(bkey, offset));
+            }
+            if (pipelined) {
+                connection.flushCommands();
+            }
+            if (!LettuceFutures.awaitAll(connection.getTimeout(), futures.toArray(new RedisFuture[0]))) {
+                // 超时未完成的命令可能没有执行，不能当作成功
+                throw new RedisClientException("single redis 【getBits】 command timeout after " + connection.getTimeout());
+            }
+            for (RedisFuture<Long> future : futures) {
+                if (future.get() == 0) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (Exception exception) {
+            log.error("single redis 【getBits】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            if (connection != null && sharedConnections == null) {
+                connection.setAutoFlushCommands(true);
+            }
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public void rename(String key, String newKey) {
+        StatefulRedisConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            connection.sync().rename(keyRedisSerializer.serialize(key), keyRedisSerializer.serialize(newKey));
+        } catch (Exception exception) {
+            log.error("single redis 【rename】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
     @Override
     public void setNxEx(String key, Object value, long time) {
         StatefulRedisConnection<byte[], byte[]> connection = null;
@@ -289,6 +510,64 @@ public class SingleRedisClient implements RedisClient {
         }
     }
 
+    @Override
+    public <T> TtlValue<T> getWithTtl(String key, Class<T> resultType) {
+        StatefulRedisConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            List<Object> reply = connection.sync().eval(GET_WITH_TTL_SCRIPT, ScriptOutputType.MULTI, keyRedisSerializer.serialize(key));
+            return toTtlValue(reply, resultType);
+        } catch (Exception exception) {
+            log.error("single redis 【getWithTtl】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public <T> Map<String, TtlValue<T>> mgetWithTtl(Collection<String> keys, Class<T> resultType) {
+        Map<String, TtlValue<T>> result = new HashMap<>();
+        if (CollectionUtils.isEmpty(keys)) {
+            return result;
+        }
+        StatefulRedisConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            List<String> keyList = new ArrayList<>(keys);
+            List<RedisFuture<List<Object>>> futures = new ArrayList<>(keyList.size());
+            for (String key : keyList) {
+                futures.add(connection.async().eval(GET_WITH_TTL_SCRIPT, ScriptOutputType.MULTI, keyRedisSerializer.serialize(key)));
+            }
+            if (!LettuceFutures.awaitAll(connection.getTimeout(), futures.toArray(new RedisFuture[0]))) {
+                // 超时未完成的命令可能没有执行，不能当作成功
+                throw new RedisClientException("single redis 【mgetWithTtl】 command timeout after " + connection.getTimeout());
+            }
+            for (int i = 0; i < keyList.size(); i++) {
+                TtlValue<T> ttlValue = toTtlValue(futures.get(i).get(), resultType);
+                if (ttlValue.getValue() != null) {
+                    result.put(keyList.get(i), ttlValue);
+                }
+            }
+            return result;
+        } catch (Exception exception) {
+            log.error("single redis 【mgetWithTtl】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    /**
+     * GET + PTTL 脚本的返回值转换成缓存值和剩余生存时间
+     */
+    private <T> TtlValue<T> toTtlValue(List<Object> reply, Class<T> resultType) {
+        byte[] cache = (byte[]) reply.get(0);
+        long ttl = reply.get(1) == null ? TtlValue.NOT_EXIST : (Long) reply.get(1);
+        T value = cache == null ? null : SerializationUtils.deserializeValue(valueRedisSerializer, cache, resultType);
+        return new TtlValue<>(value, ttl);
+    }
+
     @Override
     public Set<String> scan(String pattern) {
         StatefulRedisConnection<byte[], byte[]> connection = null;
@@ -317,7 +596,7 @@ public class SingleRedisClient implements RedisClient {
     }
 
     @Override
-    public void lpush(String key, RedisSerializer valueRedisSerializer, String... values) {
+    public void lpush(String key, RedisSerializer valueRedisSerializer, Object... values) {
         if (Objects.isNull(values) || values.length == 0) {
             return;
         }
@@ -354,16 +633,21 @@ public class SingleRedisClient implements RedisClient {
 
     @Override
     public List<String> lrange(String key, long start, long end, RedisSerializer valueRedisSerializer) {
+        return lrange(key, start, end, valueRedisSerializer, String.class);
+    }
+
+    @Override
+    public <T> List<T> lrange(String key, long start, long end, RedisSerializer valueRedisSerializer, Class<T> resultType) {
         StatefulRedisConnection<byte[], byte[]> connection = null;
         try {
             connection = getLettcueRedisResource();
-            List<String> list = new ArrayList<>();
+            List<T> list = new ArrayList<>();
             List<byte[]> values = connection.sync().lrange(getKeySerializer().serialize(key), start, end);
             if (CollectionUtils.isEmpty(values)) {
                 return list;
             }
             for (byte[] value : values) {
-                list.add(valueRedisSerializer.deserialize(value, String.class));
+                list.add(valueRedisSerializer.deserialize(value, resultType));
             }
             return list;
         } catch (Exception exception) {
@@ -375,6 +659,147 @@ public class SingleRedisClient implements RedisClient {
         }
     }
 
+    @Override
+    public String xadd(String key, long maxLength, RedisSerializer valueRedisSerializer, Object message) {
+        StatefulRedisConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            return connection.sync().xadd(keyRedisSerializer.serialize(key), new XAddArgs().maxlen(maxLength).approximateTrimming(),
+                    STREAM_FIELD, valueRedisSerializer.serialize(message));
+        } catch (Exception exception) {
+            log.error("single redis 【xadd】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public <T> Map<String, T> xrange(String key, String start, String end, long count, RedisSerializer valueRedisSerializer, Class<T> resultType) {
+        StatefulRedisConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            return toStreamMap(connection.sync().xrange(keyRedisSerializer.serialize(key), Range.create(start, end), Limit.from(count)), valueRedisSerializer, resultType);
+        } catch (Exception exception) {
+            log.error("single redis 【xrange】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public <T> Map<String, T> xrevrange(String key, String end, String start, long count, RedisSerializer valueRedisSerializer, Class<T> resultType) {
+        StatefulRedisConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            return toStreamMap(connection.sync().xrevrange(keyRedisSerializer.serialize(key), Range.create(start, end), Limit.from(count)), valueRedisSerializer, resultType);
+        } catch (Exception exception) {
+            log.error("single redis 【xrevrange】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public <T> Map<String, T> xread(String key, String lastId, long count, long block, RedisSerializer valueRedisSerializer, Class<T> resultType) {
+        try {
+            return toStreamMap(getStreamConnection().sync().xread(new XReadArgs().count(count).block(block),
+                    XReadArgs.StreamOffset.from(keyRedisSerializer.serialize(key), lastId)), valueRedisSerializer, resultType);
+        } catch (Exception exception) {
+            log.error("single redis 【xread】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        }
+    }
+
+    private synchronized StatefulRedisConnection<byte[], byte[]> getStreamConnection() {
+        if (streamConnection == null) {
+            streamConnection = client.connect(new ByteArrayCodec());
+        }
+        return streamConnection;
+    }
+
+    /**
+     * stream消息转换为消息ID和消息内容，每条消息只有一个字段
+     */
+    private static <T> Map<String, T> toStreamMap(List<StreamMessage<byte[], byte[]>> messages, RedisSerializer valueRedisSerializer, Class<T> resultType) {
+        Map<String, T> result = new LinkedHashMap<>();
+        if (CollectionUtils.isEmpty(messages)) {
+            return result;
+        }
+        for (StreamMessage<byte[], byte[]> message : messages) {
+            for (byte[] value : message.getBody().values()) {
+                result.put(message.getId(), valueRedisSerializer.deserialize(value, resultType));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void zincrby(String key, double increment, String member) {
+        StatefulRedisConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            connection.async().zincrby(keyRedisSerializer.serialize(key), increment, keyRedisSerializer.serialize(member));
+        } catch (Exception exception) {
+            log.error("single redis 【zincrby】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public List<String> zrevrange(String key, long start, long end) {
+        StatefulRedisConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            List<String> list = new ArrayList<>();
+            List<byte[]> members = connection.sync().zrevrange(keyRedisSerializer.serialize(key), start, end);
+            if (CollectionUtils.isEmpty(members)) {
+                return list;
+            }
+            for (byte[] member : members) {
+                list.add(keyRedisSerializer.deserialize(member, String.class));
+            }
+            return list;
+        } catch (Exception exception) {
+            log.error("single redis 【zrevrange】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public Long zremrangebyrank(String key, long start, long end) {
+        StatefulRedisConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            return connection.sync().zremrangebyrank(keyRedisSerializer.serialize(key), start, end);
+        } catch (Exception exception) {
+            log.error("single redis 【zremrangebyrank】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public Long incrby(String key, long increment) {
+        StatefulRedisConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            return connection.sync().incrby(keyRedisSerializer.serialize(key), increment);
+        } catch (Exception exception) {
+            log.error("single redis 【incrby】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
     @Override
     public Object eval(String script, List<String> keys, List<String> args) {
         StatefulRedisConnection<byte[], byte[]> connection = null;
@@ -418,6 +843,32 @@ public class SingleRedisClient implements RedisClient {
         }
     }
 
+    @Override
+    public synchronized void tracking(Collection<String> prefixes, Consumer<List<String>> listener) {
+        try {
+            if (trackingConnection == null) {
+                trackingConnection = new RedisTrackingConnection(client, "single");
+            }
+            trackingConnection.start(prefixes, listener);
+        } catch (Exception exception) {
+            log.error("single redis 【tracking】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        }
+    }
+
+    @Override
+    public synchronized boolean checkTracking() {
+        if (trackingConnection == null) {
+            return false;
+        }
+        try {
+            return trackingConnection.check();
+        } catch (Exception exception) {
+            log.error("single redis 【checkTracking】 error:{}", exception);
+            throw new RedisClientException(exception.getMessage(), exception);
+        }
+    }
+
     @Override
     public boolean tryLock(String key, long waitTime, long expireTime, TimeUnit timeUnit, CacheFunctionWithoutReturn bussiness) {
         RLock lock = lockClient.getLock(key);
@@ -431,10 +882,204 @@ public class SingleRedisClient implements RedisClient {
             log.error("single redis 【tryLock】 error:{}", exception);
             throw new RedisClientException(exception.getMessage(), exception);
         } finally {
-            lock.unlock();
+            // 未获取到锁时不能释放，否则会抛出IllegalMonitorStateException
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+
+    @Override
+    public <T> CompletableFuture<T> getAsync(String key, Class<T> resultType) {
+        StatefulRedisConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            return connection.async().get(keyRedisSerializer.serialize(key)).toCompletableFuture()
+                    .thenApply(cache -> cache == null ? null : SerializationUtils.deserializeValue(valueRedisSerializer, cache, resultType));
+        } catch (Exception exception) {
+            log.error("single redis 【getAsync】 error:{}", exception);
+            return failedFuture(exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<TtlValue<T>> getWithTtlAsync(String key, Class<T> resultType) {
+        StatefulRedisConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            return connection.async().<List<Object>>eval(GET_WITH_TTL_SCRIPT, ScriptOutputType.MULTI, keyRedisSerializer.serialize(key))
+                    .toCompletableFuture().thenApply(reply -> toTtlValue(reply, resultType));
+        } catch (Exception exception) {
+            log.error("single redis 【getWithTtlAsync】 error:{}", exception);
+            return failedFuture(exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> setAsync(String key, Object value, long time, TimeUnit unit) {
+        StatefulRedisConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            return connection.async().psetex(keyRedisSerializer.serialize(key), unit.toMillis(time), SerializationUtils.serializeValue(valueRedisSerializer, value))
+                    .toCompletableFuture().thenApply(result -> null);
+        } catch (Exception exception) {
+            log.error("single redis 【setAsync】 error:{}", exception);
+            return failedFuture(exception);
+        } finally {
+            returnConnectionPool(connection);
         }
     }
 
+    @Override
+    public CompletableFuture<Long> deleteAsync(String... keys) {
+        StatefulRedisConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            final byte[][] bkeys = new byte[keys.length][];
+            for (int i = 0; i < keys.length; i++) {
+                bkeys[i] = keyRedisSerializer.serialize(keys[i]);
+            }
+            return connection.async().del(bkeys).toCompletableFuture();
+        } catch (Exception exception) {
+            log.error("single redis 【deleteAsync】 error:{}", exception);
+            return failedFuture(exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Long> lpushAsync(String key, RedisSerializer valueRedisSerializer, Object... values) {
+        StatefulRedisConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            final byte[][] bvalues = new byte[values.length][];
+            for (int i = 0; i < values.length; i++) {
+                bvalues[i] = valueRedisSerializer.serialize(values[i]);
+            }
+            return connection.async().lpush(keyRedisSerializer.serialize(key), bvalues).toCompletableFuture();
+        } catch (Exception exception) {
+            log.error("single redis 【lpushAsync】 error:{}", exception);
+            return failedFuture(exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> xaddAsync(String key, long maxLength, RedisSerializer valueRedisSerializer, Object message) {
+        StatefulRedisConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            return connection.async().xadd(keyRedisSerializer.serialize(key), new XAddArgs().maxlen(maxLength).approximateTrimming(),
+                    STREAM_FIELD, valueRedisSerializer.serialize(message)).toCompletableFuture();
+        } catch (Exception exception) {
+            log.error("single redis 【xaddAsync】 error:{}", exception);
+            return failedFuture(exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Long> incrbyAsync(String key, long increment) {
+        StatefulRedisConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            return connection.async().incrby(keyRedisSerializer.serialize(key), increment).toCompletableFuture();
+        } catch (Exception exception) {
+            log.error("single redis 【incrbyAsync】 error:{}", exception);
+            return failedFuture(exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> expireAsync(String key, long timeout, TimeUnit timeUnit) {
+        StatefulRedisConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getLettcueRedisResource();
+            return connection.async().expire(keyRedisSerializer.serialize(key), timeUnit.toSeconds(timeout)).toCompletableFuture();
+        } catch (Exception exception) {
+            log.error("single redis 【expireAsync】 error:{}", exception);
+            return failedFuture(exception);
+        } finally {
+            returnConnectionPool(connection);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Long> publishAsync(String channel, String message) {
+        try {
+            return pubSubConnection.async().publish(channel, message).toCompletableFuture();
+        } catch (Exception exception) {
+            log.error("single redis 【publishAsync】 error:{}", exception);
+            return failedFuture(exception);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> tryLockAsync(String key, long waitTime, long expireTime, TimeUnit timeUnit, long lockId) {
+        try {
+            return lockClient.getLock(key).tryLockAsync(waitTime, expireTime, timeUnit, lockId).toCompletableFuture();
+        } catch (Exception exception) {
+            log.error("single redis 【tryLockAsync】 error:{}", exception);
+            return failedFuture(exception);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> unlockAsync(String key, long lockId) {
+        try {
+            return lockClient.getLock(key).unlockAsync(lockId).toCompletableFuture();
+        } catch (Exception exception) {
+            log.error("single redis 【unlockAsync】 error:{}", exception);
+            return failedFuture(exception);
+        }
+    }
+
+    /**
+     * 构造一个异常结束的CompletableFuture
+     */
+    private static <T> CompletableFuture<T> failedFuture(Exception exception) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(new RedisClientException(exception.getMessage(), exception));
+        return future;
+    }
+
+    @Override
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        try {
+            if (sharedConnections != null) {
+                sharedConnections.close();
+            }
+            if (pool != null) {
+                pool.close();
+            }
+            if (trackingConnection != null) {
+                trackingConnection.close();
+            }
+            if (streamConnection != null) {
+                streamConnection.close();
+            }
+            pubSubConnection.close();
+            lockClient.shutdown();
+            client.shutdown();
+        } catch (Exception exception) {
+            log.error("single redis 【shutdown】 error:{}", exception);
+        }
+    }
 
     @Override
     public RedisSerializer getKeySerializer() {
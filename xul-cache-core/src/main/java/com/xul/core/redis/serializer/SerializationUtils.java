@@ -1,5 +1,9 @@
 package com.xul.core.redis.serializer;
 
+import com.xul.core.supports.NullValue;
+
+import java.util.Arrays;
+
 /**
  * 序列化工具类
  *
@@ -9,7 +13,41 @@ public abstract class SerializationUtils {
 
     static final byte[] EMPTY_ARRAY = new byte[0];
 
+    /**
+     * 空值在redis中的固定字节标识，不经过值序列化器
+     */
+    public static final byte[] NULL_VALUE_BYTES = new byte[]{0, 'N', 'V', 0};
+
     static boolean isEmpty(byte[] data) {
         return (data == null || data.length == 0);
     }
+
+    /**
+     * 序列化缓存值，空值 {@link NullValue} 使用固定字节标识
+     *
+     * @param serializer 值序列化器
+     * @param value      缓存值
+     * @return byte[]
+     */
+    public static byte[] serializeValue(RedisSerializer serializer, Object value) {
+        if (value instanceof NullValue) {
+            return NULL_VALUE_BYTES;
+        }
+        return serializer.serialize(value);
+    }
+
+    /**
+     * 反序列化缓存值，固定字节标识反序列化为空值 {@link NullValue}
+     *
+     * @param serializer 值序列化器
+     * @param bytes      二进制数据
+     * @param resultType 返回值类型
+     * @return T
+     */
+    public static <T> T deserializeValue(RedisSerializer serializer, byte[] bytes, Class<T> resultType) {
+        if (Arrays.equals(NULL_VALUE_BYTES, bytes)) {
+            return (T) NullValue.INSTANCE;
+        }
+        return serializer.deserialize(bytes, resultType);
+    }
 }
@@ -0,0 +1,173 @@
+package com.xul.core.snapshot;
+
+import com.xul.core.redis.serializer.RedisSerializer;
+import com.xul.core.supports.TtlValue;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一级缓存快照，通过内存映射文件读写
+ * <p>
+ * 文件格式：魔数、版本、快照时间、消息偏移量、偏移量处的消息，之后是每条数据的key、值类型、剩余有效时间和序列化后的值。
+ * 先写临时文件再重命名，进程在写入过程中退出不会留下不完整的快照
+ * </p>
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+@Slf4j
+@Data
+public class CacheSnapshot {
+
+    private static final int MAGIC = 0x4C435350;
+
+    private static final int VERSION = 1;
+
+    /**
+     * 快照时间，毫秒
+     */
+    private long createTime;
+
+    /**
+     * 快照时本地已处理的消息偏移量
+     */
+    private long offset;
+
+    /**
+     * 快照时偏移量处的消息，偏移量小于0时为null
+     */
+    private String message;
+
+    /**
+     * 缓存数据，剩余有效时间为毫秒，-1表示不过期
+     */
+    private Map<String, TtlValue<Object>> entries = new LinkedHashMap<>();
+
+    /**
+     * 写入快照文件
+     *
+     * @param path       快照文件
+     * @param serializer 值序列化器
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public void writeTo(Path path, RedisSerializer serializer) throws IOException {
+        byte[] messageBytes = message == null ? null : message.getBytes(StandardCharsets.UTF_8);
+        long size = 4 + 4 + 8 + 8 + 4 + (messageBytes == null ? 0 : messageBytes.length) + 4;
+        List<byte[][]> records = new ArrayList<>(entries.size());
+        List<Long> ttls = new ArrayList<>(entries.size());
+        for (Map.Entry<String, TtlValue<Object>> entry : entries.entrySet()) {
+            byte[] value;
+            try {
+                value = serializer.serialize(entry.getValue().getValue());
+            } catch (Exception e) {
+                log.warn("一级缓存快照序列化异常，跳过 key={}：{}", entry.getKey(), e.getMessage());
+                continue;
+            }
+            byte[][] record = {entry.getKey().getBytes(StandardCharsets.UTF_8),
+                    entry.getValue().getValue().getClass().getName().getBytes(StandardCharsets.UTF_8), value};
+            records.add(record);
+            ttls.add(entry.getValue().getTtl());
+            size += 4 + record[0].length + 4 + record[1].length + 8 + 4 + record[2].length;
+        }
+
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(createTime);
+            buffer.putLong(offset);
+            putBytes(buffer, messageBytes);
+            buffer.putInt(records.size());
+            for (int i = 0; i < records.size(); i++) {
+                byte[][] record = records.get(i);
+                putBytes(buffer, record[0]);
+                putBytes(buffer, record[1]);
+                buffer.putLong(ttls.get(i));
+                putBytes(buffer, record[2]);
+            }
+            buffer.force();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 读取快照文件，文件不存在或格式不对返回null
+     *
+     * @param path       快照文件
+     * @param serializer 值序列化器
+     * @return: com.xul.core.snapshot.CacheSnapshot
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public static CacheSnapshot readFrom(Path path, RedisSerializer serializer) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                log.warn("一级缓存快照文件格式不正确 path={}", path);
+                return null;
+            }
+            CacheSnapshot snapshot = new CacheSnapshot();
+            snapshot.setCreateTime(buffer.getLong());
+            snapshot.setOffset(buffer.getLong());
+            byte[] messageBytes = getBytes(buffer);
+            snapshot.setMessage(messageBytes == null ? null : new String(messageBytes, StandardCharsets.UTF_8));
+            int count = buffer.getInt();
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            for (int i = 0; i < count; i++) {
+                String key = new String(getBytes(buffer), StandardCharsets.UTF_8);
+                String className = new String(getBytes(buffer), StandardCharsets.UTF_8);
+                long ttl = buffer.getLong();
+                byte[] value = getBytes(buffer);
+                try {
+                    Object result = serializer.deserialize(value, Class.forName(className, false, classLoader));
+                    if (result != null) {
+                        snapshot.getEntries().put(key, new TtlValue<>(result, ttl));
+                    }
+                } catch (Exception e) {
+                    log.warn("一级缓存快照反序列化异常，跳过 key={}：{}", key, e.getMessage());
+                }
+            }
+            return snapshot;
+        }
+    }
+
+    private static void putBytes(MappedByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static byte[] getBytes(MappedByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,187 @@
+package com.xul.core.snapshot;
+
+import com.xul.core.cache.AbstractValueAdaptingCache;
+import com.xul.core.cache.Cache;
+import com.xul.core.cache.LayeringCache;
+import com.xul.core.config.GlobalConfig;
+import com.xul.core.listener.RedisMessageService;
+import com.xul.core.listener.RedisPubSubMessage;
+import com.xul.core.listener.RedisPubSubMessageType;
+import com.xul.core.manager.AbstractCacheManager;
+import com.xul.core.supports.InvalidationMode;
+import com.xul.core.supports.TtlValue;
+import com.xul.core.utils.NamedThreadFactory;
+import com.xul.core.utils.StringUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一级缓存快照服务
+ * <p>
+ * 定时和关闭时把每个缓存最热的一级缓存数据保存到快照文件，启动创建缓存时加载回一级缓存，减少发布后对redis的冲击。
+ * 加载前用快照时的消息偏移量检查期间的缓存变更，被删除或更新的key不加载，缓存被清空或消息队列已重建则放弃整个快照
+ * </p>
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+@Slf4j
+public class CacheSnapshotService {
+
+    private static class InstanceHolder {
+        public static final CacheSnapshotService instance = new CacheSnapshotService();
+    }
+
+    public static CacheSnapshotService getInstance() {
+        return CacheSnapshotService.InstanceHolder.instance;
+    }
+
+    /**
+     * 缓存管理器
+     */
+    private AbstractCacheManager cacheManager;
+
+    /**
+     * 定时快照线程池
+     */
+    private ScheduledThreadPoolExecutor snapshotExecutor;
+
+    /**
+     * 初始化，没有配置快照目录不开启
+     *
+     * @param cacheManager 缓存管理器
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public synchronized void init(AbstractCacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+        if (!isEnable() || snapshotExecutor != null) {
+            return;
+        }
+        long interval = Math.max(1, GlobalConfig.SNAPSHOT_INTERVAL);
+        snapshotExecutor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("layering-cache-snapshot"));
+        snapshotExecutor.scheduleWithFixedDelay(this::snapshot, interval, interval, TimeUnit.SECONDS);
+        log.info("启动一级缓存快照任务线程成功，快照目录：{}，间隔：{}s", GlobalConfig.SNAPSHOT_DIR, interval);
+    }
+
+    /**
+     * 是否开启快照，加载快照依赖消息队列检查期间的变更，其它失效通知方式下不开启
+     */
+    public boolean isEnable() {
+        return StringUtils.isNotBlank(GlobalConfig.SNAPSHOT_DIR) && InvalidationMode.MESSAGE.equals(GlobalConfig.INVALIDATION_MODE);
+    }
+
+    /**
+     * 保存所有缓存的快照
+     */
+    public void snapshot() {
+        if (!isEnable() || cacheManager == null) {
+            return;
+        }
+        for (Cache cache : cacheManager.getCacheContainer().values()) {
+            if (cache instanceof LayeringCache) {
+                snapshot((LayeringCache) cache);
+            }
+        }
+    }
+
+    /**
+     * 保存缓存快照，先记录消息偏移量再读取一级缓存，偏移量之后的变更加载时重新检查
+     *
+     * @param cache 多级缓存
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public void snapshot(LayeringCache cache) {
+        int snapshotSize = cache.getLayeringCacheConfig().getFirstCacheConfig().getSnapshotSize();
+        if (snapshotSize <= 0) {
+            return;
+        }
+        try {
+            CacheSnapshot snapshot = new CacheSnapshot();
+            RedisMessageService messageService = RedisMessageService.getInstance();
+            snapshot.setOffset(messageService.getOffset());
+            snapshot.setMessage(snapshot.getOffset() >= 0 ? messageService.getMessage(snapshot.getOffset()) : null);
+            snapshot.setCreateTime(System.currentTimeMillis());
+            snapshot.setEntries(cache.getFirstCache().hottest(snapshotSize));
+            snapshot.writeTo(getSnapshotPath(cache.getCacheName()), cache.getRedisClient().getValueSerializer());
+            log.info("缓存名称={},保存一级缓存快照 {} 条，偏移量：{}", cache.getCacheName(), snapshot.getEntries().size(), snapshot.getOffset());
+        } catch (Exception e) {
+            log.error("缓存名称={},保存一级缓存快照异常：{}", cache.getCacheName(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 加载缓存快照到一级缓存，剩余有效时间扣除快照后经过的时间
+     *
+     * @param cache 多级缓存
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public void restore(LayeringCache cache) {
+        if (!isEnable() || cache.getLayeringCacheConfig().getFirstCacheConfig().getSnapshotSize() <= 0) {
+            return;
+        }
+        try {
+            CacheSnapshot snapshot = CacheSnapshot.readFrom(getSnapshotPath(cache.getCacheName()), cache.getRedisClient().getValueSerializer());
+            if (snapshot == null || snapshot.getEntries().isEmpty()) {
+                return;
+            }
+            Map<String, TtlValue<Object>> entries = snapshot.getEntries();
+            List<RedisPubSubMessage> messages = RedisMessageService.getInstance().getMessagesSince(snapshot.getOffset(), snapshot.getMessage());
+            if (messages == null) {
+                log.info("缓存名称={},消息队列已重建，放弃一级缓存快照", cache.getCacheName());
+                return;
+            }
+            for (RedisPubSubMessage message : messages) {
+                if (!cache.getCacheName().equals(message.getCacheName())) {
+                    continue;
+                }
+                if (RedisPubSubMessageType.CLEAR.equals(message.getMessageType())) {
+                    log.info("缓存名称={},快照后缓存已清空，放弃一级缓存快照", cache.getCacheName());
+                    return;
+                }
+                entries.remove(message.getKey());
+            }
+            long elapsed = System.currentTimeMillis() - snapshot.getCreateTime();
+            AbstractValueAdaptingCache firstCache = cache.getFirstCache();
+            int count = 0;
+            for (Map.Entry<String, TtlValue<Object>> entry : entries.entrySet()) {
+                long ttl = entry.getValue().getTtl();
+                if (ttl != TtlValue.NO_EXPIRE && ttl - elapsed <= 0) {
+                    continue;
+                }
+                firstCache.putIfAbsent(entry.getKey(), entry.getValue().getValue(), Object.class, ttl == TtlValue.NO_EXPIRE ? 0 : ttl - elapsed);
+                count++;
+            }
+            log.info("缓存名称={},加载一级缓存快照 {} 条，快照后变更 {} 条消息", cache.getCacheName(), count, messages.size());
+        } catch (Exception e) {
+            log.error("缓存名称={},加载一级缓存快照异常：{}", cache.getCacheName(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 停止定时快照并保存最后一次快照
+     */
+    public synchronized void shutdown() {
+        if (snapshotExecutor == null) {
+            return;
+        }
+        snapshotExecutor.shutdownNow();
+        snapshotExecutor = null;
+        snapshot();
+    }
+
+    private Path getSnapshotPath(String cacheName) {
+        return Paths.get(GlobalConfig.SNAPSHOT_DIR, GlobalConfig.getSnapshotFile(cacheName));
+    }
+}
@@ -1,76 +1,174 @@
 package com.xul.core.supports;
 
 
-import org.springframework.util.CollectionUtils;
-
-import java.util.Comparator;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
  * 等待线程容器
+ * <p>
+ * 每个key对应一个完成句柄，未获取到锁的线程订阅该句柄并有界等待，获取到锁的线程加载完成后用加载结果(或异常)完成句柄，
+ * 等待线程直接拿到结果，不需要再次竞争锁。
+ * 锁的持有者在其它服务器上时本地句柄不会被完成，等待期间每隔 {@link #POLL_INTERVAL} 毫秒查询一次二级缓存，查到即返回
+ * </p>
  *
  * @author: xl
  * @date: 2021/9/28
  **/
 public class AwaitThreadContainer {
 
+    /**
+     * 等待期间查询二级缓存的间隔，毫秒
+     */
+    public static final long POLL_INTERVAL = 50;
+
+    /**
+     * 完成句柄，key是缓存key
+     */
+    private final Map<String, CompletableFuture<Object>> waiterMap = new ConcurrentHashMap<>();
+
+    /**
+     * 等待次数
+     */
+    private final LongAdder awaitCount = new LongAdder();
+
+    /**
+     * 等待超时次数
+     */
+    private final LongAdder timeoutCount = new LongAdder();
 
-    private final Map<String, Set<Thread>> threadMap = new ConcurrentHashMap<>();
+    /**
+     * 累计等待时间，纳秒
+     */
+    private final LongAdder awaitNanos = new LongAdder();
 
     /**
-     * 线程等待，最大等待等待100ms
+     * 线程等待，最多等待milliseconds毫秒
      *
      * @param key
      * @param milliseconds
-     * @return: void
+     * @return: java.lang.Object 加载结果(存储值，空值为 {@link NullValue})，等待超时返回null
      * @author: xl
      * @date: 2021/9/28
      **/
-    public final void await(String key, long milliseconds) throws InterruptedException {
+    public final Object await(String key, long milliseconds) throws InterruptedException {
+        return await(key, milliseconds, () -> null);
+    }
+
+    /**
+     * 线程等待，最多等待milliseconds毫秒，等待期间定时查询加载结果
+     *
+     * @param key
+     * @param milliseconds
+     * @param poller       查询加载结果，通常是查询二级缓存，没有结果返回null
+     * @return: java.lang.Object 加载结果(存储值，空值为 {@link NullValue})，等待超时返回null
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public final Object await(String key, long milliseconds, Supplier<Object> poller) throws InterruptedException {
 
         // 测试当前线程是否已经被中断
         if (Thread.interrupted()) {
             throw new InterruptedException();
         }
-        Set<Thread> threadSet = threadMap.get(key);
-        // 判断线程容器是否是null，如果是就新创建一个
-        if (threadSet == null) {
-            threadSet = new ConcurrentSkipListSet<>(Comparator.comparing(Thread::toString));
-            threadMap.put(key, threadSet);
+        CompletableFuture<Object> future = waiterMap.computeIfAbsent(key, k -> new CompletableFuture<>());
+        awaitCount.increment();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(milliseconds);
+        try {
+            while (true) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    timeoutCount.increment();
+                    // 超时后移除句柄，防止没有线程完成时句柄一直残留
+                    waiterMap.remove(key, future);
+                    return null;
+                }
+                try {
+                    return future.get(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL)), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException exception) {
+                    Object value = poller.get();
+                    if (value != null) {
+                        // 其它服务器已加载完成，其它等待线程持有句柄的引用，会各自查询
+                        waiterMap.remove(key, future);
+                        return value;
+                    }
+                }
+            }
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exception.getCause();
+            }
+            throw new IllegalStateException(exception.getCause());
+        } finally {
+            awaitNanos.add(System.nanoTime() - start);
         }
-        // 将线程放到容器
-        threadSet.add(Thread.currentThread());
-        // 阻塞一定的时间
-        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(milliseconds));
     }
 
 
     /**
-     * 线程唤醒
+     * 用加载结果唤醒所有等待线程
      *
      * @param key
+     * @param value 加载结果(存储值，空值为 {@link NullValue})
      * @return: void
      * @author: xl
      * @date: 2021/9/28
      **/
-    public final void signalAll(String key) {
-        Set<Thread> threadSet = threadMap.get(key);
-        // 判断key所对应的等待线程容器是否是null
-        if (!CollectionUtils.isEmpty(threadSet)) {
-            synchronized (threadSet) {
-                if (!CollectionUtils.isEmpty(threadSet)) {
-                    for (Thread thread : threadSet) {
-                        LockSupport.unpark(thread);
-                    }
-                    // 清空等待线程容器
-                    threadSet.clear();
-                }
-            }
+    public final void signalAll(String key, Object value) {
+        CompletableFuture<Object> future = waiterMap.remove(key);
+        if (future != null) {
+            future.complete(value);
+        }
+    }
+
+    /**
+     * 加载异常时唤醒所有等待线程
+     *
+     * @param key
+     * @param throwable 加载异常
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/16
+     **/
+    public final void signalAllExceptionally(String key, Throwable throwable) {
+        CompletableFuture<Object> future = waiterMap.remove(key);
+        if (future != null) {
+            future.completeExceptionally(throwable);
         }
     }
+
+    /**
+     * 等待次数
+     */
+    public long getAwaitCount() {
+        return awaitCount.sum();
+    }
+
+    /**
+     * 等待超时次数
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    /**
+     * 累计等待时间，毫秒
+     */
+    public long getAwaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(awaitNanos.sum());
+    }
+
+    /**
+     * 当前有线程等待的key数量
+     */
+    public int getWaitingKeySize() {
+        return waiterMap.size();
+    }
 }
@@ -0,0 +1,136 @@
+package com.xul.core.supports;
+
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Longs;
+import com.xul.core.config.BloomFilterConfig;
+import com.xul.core.redis.client.RedisClient;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 布隆过滤器
+ * <p>
+ * 用于拦截确定不存在的key，避免穿透到redis和数据库。过滤器重建之前不拦截任何key，
+ * 重建后新产生的key需要通过 {@link #put(String)} 加入过滤器，否则会被当作不存在的key拦截
+ * </p>
+ *
+ * @author: xl
+ * @date: 2021/10/17
+ **/
+@Slf4j
+public abstract class BloomFilter {
+
+    /**
+     * 默认预计元素数量
+     */
+    private static final long DEFAULT_EXPECTED_INSERTIONS = 1000000;
+
+    /**
+     * 默认误判率
+     */
+    private static final double DEFAULT_FPP = 0.01;
+
+    /**
+     * 位图位数
+     */
+    @Getter
+    protected final long numBits;
+
+    /**
+     * hash函数个数
+     */
+    @Getter
+    protected final int numHashFunctions;
+
+    protected BloomFilter(BloomFilterConfig config, long maxBits) {
+        long expectedInsertions = config.getExpectedInsertions() > 0 ? config.getExpectedInsertions() : DEFAULT_EXPECTED_INSERTIONS;
+        double fpp = config.getFpp() > 0 && config.getFpp() < 1 ? config.getFpp() : DEFAULT_FPP;
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        if (config.getMaxMemoryBytes() > 0 && bits > config.getMaxMemoryBytes() * Byte.SIZE) {
+            bits = config.getMaxMemoryBytes() * Byte.SIZE;
+            log.warn("布隆过滤器位图超过最大内存{}字节，按最大内存分配，实际误判率会高于{}", config.getMaxMemoryBytes(), fpp);
+        }
+        this.numBits = Math.max(Long.SIZE, Math.min(bits, maxBits));
+        this.numHashFunctions = Math.max(1, (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * 创建布隆过滤器，未开启返回null
+     *
+     * @param cacheName   缓存名称
+     * @param config      布隆过滤器配置
+     * @param redisClient redis客户端
+     * @return: com.xul.core.supports.BloomFilter
+     * @author: xl
+     * @date: 2021/10/17
+     **/
+    public static BloomFilter create(String cacheName, BloomFilterConfig config, RedisClient redisClient) {
+        if (config == null || !config.isEnable()) {
+            return null;
+        }
+        if (BloomFilterMode.LOCAL.equals(config.getMode())) {
+            return new LocalBloomFilter(config);
+        }
+        return new RedisBloomFilter(cacheName, config, redisClient);
+    }
+
+    /**
+     * key是否可能存在，过滤器未重建时总是返回true
+     */
+    public boolean mightContain(String key) {
+        return !isReady() || contains(offsets(key));
+    }
+
+    /**
+     * 将key加入过滤器
+     */
+    public void put(String key) {
+        add(offsets(key));
+    }
+
+    /**
+     * 用全量key重建过滤器，重建完成后才开始拦截
+     *
+     * @param keys 全量存在的key
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/17
+     **/
+    public abstract void rebuild(Collection<String> keys);
+
+    /**
+     * 过滤器是否已重建
+     */
+    public abstract boolean isReady();
+
+    /**
+     * 位图指定偏移量是否都为1
+     */
+    protected abstract boolean contains(List<Long> offsets);
+
+    /**
+     * 将位图指定偏移量设置为1
+     */
+    protected abstract void add(List<Long> offsets);
+
+    /**
+     * 计算key在位图中的偏移量，murmur3 128位hash拆成两个64位hash做双重hash
+     */
+    protected List<Long> offsets(String key) {
+        byte[] bytes = Hashing.murmur3_128().hashString(key, StandardCharsets.UTF_8).asBytes();
+        long hash1 = Longs.fromBytes(bytes[7], bytes[6], bytes[5], bytes[4], bytes[3], bytes[2], bytes[1], bytes[0]);
+        long hash2 = Longs.fromBytes(bytes[15], bytes[14], bytes[13], bytes[12], bytes[11], bytes[10], bytes[9], bytes[8]);
+        List<Long> offsets = new ArrayList<>(numHashFunctions);
+        long combinedHash = hash1;
+        for (int i = 0; i < numHashFunctions; i++) {
+            offsets.add((combinedHash & Long.MAX_VALUE) % numBits);
+            combinedHash += hash2;
+        }
+        return offsets;
+    }
+}
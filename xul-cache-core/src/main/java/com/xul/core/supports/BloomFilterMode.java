@@ -0,0 +1,25 @@
+package com.xul.core.supports;
+
+/**
+ * 布隆过滤器模式
+ *
+ * @author: xl
+ * @date: 2021/10/17
+ **/
+public enum BloomFilterMode {
+    /**
+     * 本地内存位图，每个服务器各自重建，只能看到本服务器新增的key，仅适用于单服务器部署
+     */
+    LOCAL("本地布隆过滤器"),
+
+    /**
+     * redis位图，所有服务器共享，一台服务器重建即可
+     */
+    REDIS("redis布隆过滤器");
+
+    private String label;
+
+    BloomFilterMode(String label) {
+        this.label = label;
+    }
+}
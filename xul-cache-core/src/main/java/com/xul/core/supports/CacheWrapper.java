@@ -0,0 +1,78 @@
+package com.xul.core.supports;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 二级缓存值包装，携带写入时间、加载耗时和过期时间，用于本地判断是否需要提前刷新
+ * <p>
+ * value是多态字段，需要使用带类型信息的序列化器（Protostuff、Kryo、Jdk）
+ * </p>
+ *
+ * @author: xl
+ * @date: 2021/10/16
+ **/
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheWrapper implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 不过期的过期时间戳
+     */
+    public static final long NEVER_EXPIRE = Long.MAX_VALUE;
+
+    /**
+     * 存储值
+     */
+    private Object value;
+
+    /**
+     * 写入时间戳，毫秒
+     */
+    private long writeTime;
+
+    /**
+     * 加载耗时，毫秒
+     */
+    private long delta;
+
+    /**
+     * 过期时间戳，毫秒
+     */
+    private long expireTime;
+
+    /**
+     * 按XFetch算法判断本次读取是否需要提前刷新：now - delta * beta * ln(random) >= 刷新时间点
+     * <p>
+     * 加载越慢、越接近刷新时间点，提前刷新的概率越大，多个读取方的刷新时间自然错开，不过期的值不刷新
+     * </p>
+     *
+     * @param beta        提前刷新系数
+     * @param preloadTime 缓存主动在失效前刷新的时间，毫秒
+     * @return: boolean
+     * @author: xl
+     * @date: 2021/10/16
+     **/
+    public boolean isEarlyExpired(double beta, long preloadTime) {
+        if (expireTime <= 0 || expireTime == NEVER_EXPIRE) {
+            return false;
+        }
+        double random = 1 - ThreadLocalRandom.current().nextDouble();
+        long now = System.currentTimeMillis();
+        return now - delta * beta * Math.log(random) >= expireTime - preloadTime;
+    }
+
+    /**
+     * 剩余有效时间，毫秒
+     */
+    public long getTtl() {
+        return expireTime - System.currentTimeMillis();
+    }
+}
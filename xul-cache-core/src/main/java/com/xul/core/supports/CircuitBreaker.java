@@ -0,0 +1,157 @@
+package com.xul.core.supports;
+
+import com.xul.core.config.RedisConfig;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * redis熔断器
+ * <p>
+ * 连续失败（异常或慢调用）达到阈值后打开，打开期间请求不访问redis；熔断持续时间到期后进入半开状态，
+ * 只放行一个探测请求，探测成功关闭熔断，失败重新打开
+ * </p>
+ *
+ * @author: xl
+ * @date: 2021/10/17
+ **/
+@Slf4j
+public class CircuitBreaker {
+
+    /**
+     * 是否开启
+     */
+    @Getter
+    private final boolean enable;
+
+    private final int failureThreshold;
+
+    private final long slowCallThreshold;
+
+    private final long openDuration;
+
+    private final AtomicReference<CircuitBreakerState> state = new AtomicReference<>(CircuitBreakerState.CLOSED);
+
+    /**
+     * 连续失败次数
+     */
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    /**
+     * 熔断打开时间
+     */
+    private volatile long openTime;
+
+    /**
+     * 熔断次数
+     */
+    private final LongAdder tripCount = new LongAdder();
+
+    /**
+     * 熔断期间拒绝的请求数
+     */
+    private final LongAdder rejectedCount = new LongAdder();
+
+    public CircuitBreaker(RedisConfig redisConfig) {
+        this.enable = redisConfig.isCircuitBreakerEnable();
+        this.failureThreshold = Math.max(1, redisConfig.getCircuitBreakerFailureThreshold());
+        this.slowCallThreshold = redisConfig.getCircuitBreakerSlowCallThreshold();
+        this.openDuration = Math.max(0, redisConfig.getCircuitBreakerOpenDuration());
+    }
+
+    /**
+     * 是否允许访问redis，熔断持续时间到期后只有一个线程获得探测机会
+     *
+     * @return: boolean
+     * @author: xl
+     * @date: 2021/10/17
+     **/
+    public boolean allowRequest() {
+        if (!enable) {
+            return true;
+        }
+        CircuitBreakerState current = state.get();
+        if (CircuitBreakerState.CLOSED.equals(current)) {
+            return true;
+        }
+        if (CircuitBreakerState.OPEN.equals(current) && System.currentTimeMillis() - openTime >= openDuration
+                && state.compareAndSet(CircuitBreakerState.OPEN, CircuitBreakerState.HALF_OPEN)) {
+            log.info("redis熔断持续时间到期，放行探测请求");
+            return true;
+        }
+        rejectedCount.increment();
+        return false;
+    }
+
+    /**
+     * 熔断是否打开且未到期，用于redis客户端快速失败
+     */
+    public boolean isOpen() {
+        return enable && CircuitBreakerState.OPEN.equals(state.get()) && System.currentTimeMillis() - openTime < openDuration;
+    }
+
+    /**
+     * 记录一次成功调用，超过慢调用阈值按失败处理
+     *
+     * @param elapsed 调用耗时，毫秒
+     * @return: void
+     * @author: xl
+     * @date: 2021/10/17
+     **/
+    public void onSuccess(long elapsed) {
+        if (!enable) {
+            return;
+        }
+        if (slowCallThreshold > 0 && elapsed >= slowCallThreshold) {
+            log.warn("redis慢调用，耗时：{}ms", elapsed);
+            onFailure();
+            return;
+        }
+        consecutiveFailures.set(0);
+        if (state.compareAndSet(CircuitBreakerState.HALF_OPEN, CircuitBreakerState.CLOSED)) {
+            log.info("redis探测请求成功，关闭熔断");
+        }
+    }
+
+    /**
+     * 记录一次失败调用
+     */
+    public void onFailure() {
+        if (!enable) {
+            return;
+        }
+        int failures = consecutiveFailures.incrementAndGet();
+        if (state.compareAndSet(CircuitBreakerState.HALF_OPEN, CircuitBreakerState.OPEN)) {
+            openTime = System.currentTimeMillis();
+            log.warn("redis探测请求失败，重新打开熔断");
+        } else if (failures >= failureThreshold && state.compareAndSet(CircuitBreakerState.CLOSED, CircuitBreakerState.OPEN)) {
+            openTime = System.currentTimeMillis();
+            tripCount.increment();
+            log.warn("redis连续失败{}次，打开熔断{}ms", failures, openDuration);
+        }
+    }
+
+    /**
+     * 熔断器状态
+     */
+    public CircuitBreakerState getState() {
+        return state.get();
+    }
+
+    /**
+     * 熔断次数
+     */
+    public long getTripCount() {
+        return tripCount.sum();
+    }
+
+    /**
+     * 熔断期间拒绝的请求数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+}
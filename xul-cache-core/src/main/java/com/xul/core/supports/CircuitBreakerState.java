@@ -0,0 +1,30 @@
+package com.xul.core.supports;
+
+/**
+ * 熔断器状态
+ *
+ * @author: xl
+ * @date: 2021/10/17
+ **/
+public enum CircuitBreakerState {
+    /**
+     * 关闭，请求正常访问redis
+     */
+    CLOSED("关闭"),
+
+    /**
+     * 打开，请求不访问redis，直接降级
+     */
+    OPEN("打开"),
+
+    /**
+     * 半开，放行一个探测请求，成功后关闭，失败后重新打开
+     */
+    HALF_OPEN("半开");
+
+    private String label;
+
+    CircuitBreakerState(String label) {
+        this.label = label;
+    }
+}
@@ -15,7 +15,12 @@ public enum ExpireMode {
     /**
      * 每访问一次重新计算一次缓存的有效时间
      */
-    ACCESS("最后一次访问后到期失效");
+    ACCESS("最后一次访问后到期失效"),
+
+    /**
+     * 从二级缓存读取的数据按二级缓存剩余有效时间失效（不超过一级缓存有效时间），其它写入按一级缓存有效时间失效
+     */
+    VARIABLE("按二级缓存剩余有效时间失效");
 
     private String label;
 
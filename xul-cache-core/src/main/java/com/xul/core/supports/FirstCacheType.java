@@ -0,0 +1,25 @@
+package com.xul.core.supports;
+
+/**
+ * 一级缓存类型
+ *
+ * @author: xl
+ * @date: 2021/10/17
+ **/
+public enum FirstCacheType {
+    /**
+     * caffeine堆内缓存
+     */
+    CAFFEINE("caffeine堆内缓存"),
+
+    /**
+     * 堆外缓存，序列化后存放在直接内存中，不占用老年代
+     */
+    OFF_HEAP("堆外缓存");
+
+    private String label;
+
+    FirstCacheType(String label) {
+        this.label = label;
+    }
+}
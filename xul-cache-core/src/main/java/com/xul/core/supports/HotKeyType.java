@@ -0,0 +1,30 @@
+package com.xul.core.supports;
+
+/**
+ * 热点key统计类型
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+public enum HotKeyType {
+    /**
+     * 所有访问
+     */
+    ACCESS("访问"),
+
+    /**
+     * 一级缓存未命中
+     */
+    FIRST_CACHE_MISS("一级缓存未命中"),
+
+    /**
+     * 二级缓存未命中
+     */
+    SECOND_CACHE_MISS("二级缓存未命中");
+
+    private String label;
+
+    HotKeyType(String label) {
+        this.label = label;
+    }
+}
@@ -0,0 +1,30 @@
+package com.xul.core.supports;
+
+/**
+ * 一级缓存失效通知方式
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+public enum InvalidationMode {
+    /**
+     * 消息队列，写操作发布消息，各服务器拉取消息更新一级缓存
+     */
+    MESSAGE("消息队列"),
+
+    /**
+     * redis Streams消息日志，写操作追加消息，各服务器按最后读取的消息ID阻塞读取，不需要每天重置消息队列
+     */
+    STREAM("redis Streams消息日志"),
+
+    /**
+     * redis客户端缓存跟踪，redis 6 CLIENT TRACKING BCAST模式，redis推送变更的key，不需要消息队列
+     */
+    TRACKING("redis客户端缓存跟踪");
+
+    private String label;
+
+    InvalidationMode(String label) {
+        this.label = label;
+    }
+}
@@ -0,0 +1,95 @@
+package com.xul.core.supports;
+
+import com.xul.core.config.BloomFilterConfig;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 本地布隆过滤器，位图保存在本服务器内存中
+ * <p>
+ * 只能看到本服务器写入、加载的key，其它服务器新增的key会被判断为一定不存在，只适用于单服务器部署，
+ * 多服务器部署使用 {@link BloomFilterMode#REDIS}
+ * </p>
+ *
+ * @author: xl
+ * @date: 2021/10/17
+ **/
+public class LocalBloomFilter extends BloomFilter {
+
+    /**
+     * 本地位图最大位数
+     */
+    private static final long MAX_BITS = (long) Integer.MAX_VALUE * Long.SIZE;
+
+    /**
+     * 当前位图，重建前为null
+     */
+    private volatile AtomicLongArray bits;
+
+    /**
+     * 重建中的位图，重建期间写入的key同时写入，避免重建完成后丢失
+     */
+    private volatile AtomicLongArray building;
+
+    public LocalBloomFilter(BloomFilterConfig config) {
+        super(config, MAX_BITS);
+    }
+
+    @Override
+    public synchronized void rebuild(Collection<String> keys) {
+        AtomicLongArray newBits = new AtomicLongArray((int) ((numBits + Long.SIZE - 1) / Long.SIZE));
+        building = newBits;
+        try {
+            for (String key : keys) {
+                set(newBits, offsets(key));
+            }
+            bits = newBits;
+        } finally {
+            building = null;
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return bits != null;
+    }
+
+    @Override
+    protected boolean contains(List<Long> offsets) {
+        AtomicLongArray current = bits;
+        for (Long offset : offsets) {
+            if ((current.get((int) (offset >>> 6)) & (1L << offset)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void add(List<Long> offsets) {
+        AtomicLongArray current = bits;
+        if (current != null) {
+            set(current, offsets);
+        }
+        AtomicLongArray rebuilding = building;
+        if (rebuilding != null) {
+            set(rebuilding, offsets);
+        }
+    }
+
+    private void set(AtomicLongArray array, List<Long> offsets) {
+        for (Long offset : offsets) {
+            int index = (int) (offset >>> 6);
+            long mask = 1L << offset;
+            long value;
+            do {
+                value = array.get(index);
+                if ((value & mask) != 0) {
+                    break;
+                }
+            } while (!array.compareAndSet(index, value, value | mask));
+        }
+    }
+}
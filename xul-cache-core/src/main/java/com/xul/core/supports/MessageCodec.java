@@ -0,0 +1,25 @@
+package com.xul.core.supports;
+
+/**
+ * 消息编码格式
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+public enum MessageCodec {
+    /**
+     * JSON字符串，所有版本都能读取
+     */
+    JSON("JSON"),
+
+    /**
+     * 紧凑二进制格式，所有服务器都升级到支持二进制格式的版本后再开启
+     */
+    BINARY("二进制");
+
+    private String label;
+
+    MessageCodec(String label) {
+        this.label = label;
+    }
+}
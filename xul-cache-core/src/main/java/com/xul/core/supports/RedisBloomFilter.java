@@ -0,0 +1,123 @@
+package com.xul.core.supports;
+
+import com.xul.core.config.BloomFilterConfig;
+import com.xul.core.config.GlobalConfig;
+import com.xul.core.redis.client.RedisClient;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * redis布隆过滤器，位图保存在redis中，所有服务器共享
+ * <p>
+ * 重建时先写临时key再rename，重建期间不影响正在使用的位图。新增的key用Lua脚本同时写入正式位图和存在的临时位图，
+ * 其它服务器重建期间新增的key在rename后不会丢失。redis异常时放行，不拦截任何key
+ * </p>
+ *
+ * @author: xl
+ * @date: 2021/10/17
+ **/
+@Slf4j
+public class RedisBloomFilter extends BloomFilter {
+
+    /**
+     * redis位图最大位数 2^32
+     */
+    private static final long MAX_BITS = 1L << 32;
+
+    /**
+     * 重建时每批写入的key数量
+     */
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    /**
+     * 检查位图是否存在的间隔
+     */
+    private static final long CHECK_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+
+    private final RedisClient redisClient;
+
+    /**
+     * 位图key
+     */
+    private final String redisKey;
+
+    /**
+     * 重建用的临时key
+     */
+    private final String tmpRedisKey;
+
+    /**
+     * 位图是否存在
+     */
+    private volatile boolean ready;
+
+    /**
+     * 上次检查位图是否存在的时间
+     */
+    private volatile long lastCheckTime;
+
+    public RedisBloomFilter(String cacheName, BloomFilterConfig config, RedisClient redisClient) {
+        super(config, MAX_BITS);
+        this.redisClient = redisClient;
+        this.redisKey = GlobalConfig.getBloomFilterRedisKey(cacheName);
+        this.tmpRedisKey = redisKey + ":tmp";
+    }
+
+    @Override
+    public synchronized void rebuild(Collection<String> keys) {
+        // 删除和创建临时位图原子执行，创建后其它服务器新增的key同时写入临时位图
+        redisClient.eval(RedisClient.RESET_BITS_SCRIPT, Collections.singletonList(tmpRedisKey), Collections.emptyList());
+        List<Long> offsets = new ArrayList<>(REBUILD_BATCH_SIZE * numHashFunctions);
+        int count = 0;
+        for (String key : keys) {
+            offsets.addAll(offsets(key));
+            if (++count % REBUILD_BATCH_SIZE == 0) {
+                redisClient.setBits(tmpRedisKey, offsets);
+                offsets.clear();
+            }
+        }
+        if (!offsets.isEmpty()) {
+            redisClient.setBits(tmpRedisKey, offsets);
+        }
+        redisClient.rename(tmpRedisKey, redisKey);
+        ready = true;
+        lastCheckTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public boolean isReady() {
+        long now = System.currentTimeMillis();
+        if (now - lastCheckTime >= CHECK_INTERVAL) {
+            lastCheckTime = now;
+            try {
+                // 其它服务器重建后本服务器也开始拦截，位图被删除后停止拦截
+                ready = redisClient.hasKey(redisKey);
+            } catch (Exception e) {
+                log.warn("redis布隆过滤器检查位图 {} 异常：{}", redisKey, e.getMessage());
+            }
+        }
+        return ready;
+    }
+
+    @Override
+    protected boolean contains(List<Long> offsets) {
+        try {
+            return redisClient.getBits(redisKey, offsets);
+        } catch (Exception e) {
+            log.warn("redis布隆过滤器查询位图 {} 异常：{}", redisKey, e.getMessage());
+            return true;
+        }
+    }
+
+    @Override
+    protected void add(List<Long> offsets) {
+        // 位图不存在时不创建，避免其它服务器误认为过滤器已重建
+        redisClient.setBitsIfExists(Arrays.asList(redisKey, tmpRedisKey), offsets);
+    }
+}
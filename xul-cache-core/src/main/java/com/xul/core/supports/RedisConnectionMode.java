@@ -0,0 +1,25 @@
+package com.xul.core.supports;
+
+/**
+ * redis连接模式
+ *
+ * @author: xl
+ * @date: 2021/10/15
+ **/
+public enum RedisConnectionMode {
+    /**
+     * commons-pool2 连接池，每条命令借出/归还一个连接
+     */
+    POOL("连接池模式"),
+
+    /**
+     * 共享少量多路复用连接，并发发出的命令合并成一次flush
+     */
+    SHARED("共享连接模式");
+
+    private String label;
+
+    RedisConnectionMode(String label) {
+        this.label = label;
+    }
+}
@@ -0,0 +1,25 @@
+package com.xul.core.supports;
+
+/**
+ * 二级缓存预刷新模式
+ *
+ * @author: xl
+ * @date: 2021/10/16
+ **/
+public enum RefreshMode {
+    /**
+     * 每次命中二级缓存都查询redis剩余过期时间，小于预刷新时间时刷新
+     */
+    TTL("查询剩余过期时间刷新"),
+
+    /**
+     * 缓存值携带写入时间和加载耗时，在本地按概率提前刷新(XFetch)，读取时不产生额外的redis命令
+     */
+    PROBABILISTIC("概率提前刷新");
+
+    private String label;
+
+    RefreshMode(String label) {
+        this.label = label;
+    }
+}
@@ -0,0 +1,192 @@
+package com.xul.core.supports;
+
+import com.xul.core.utils.NamedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 缓存刷新调度器
+ * <p>
+ * 每个缓存持有一个实例，使用独立的有界线程池，同一个key同一时刻最多只有一个等待中或执行中的刷新任务，
+ * 热点key的重复刷新请求直接丢弃，不会挤占其它key的刷新
+ * </p>
+ *
+ * @author: xl
+ * @date: 2021/10/16
+ **/
+@Slf4j
+public class RefreshTaskScheduler {
+
+    /**
+     * 默认刷新线程数
+     */
+    public static final int DEFAULT_REFRESH_THREADS = 2;
+
+    /**
+     * 默认刷新队列大小
+     */
+    public static final int DEFAULT_REFRESH_QUEUE_SIZE = 1000;
+
+    /**
+     * 缓存名称
+     */
+    private final String cacheName;
+
+    /**
+     * 刷新线程池
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * 等待中或执行中的刷新key
+     */
+    private final Set<String> pendingKeys = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 因同一个key已有刷新任务而合并的次数
+     */
+    private final LongAdder dedupCount = new LongAdder();
+
+    /**
+     * 因队列已满而丢弃的次数
+     */
+    private final LongAdder droppedCount = new LongAdder();
+
+    /**
+     * @param cacheName 缓存名称
+     * @param threads   刷新线程数，小于等于0使用默认值
+     * @param queueSize 刷新队列大小，小于等于0使用默认值
+     */
+    public RefreshTaskScheduler(String cacheName, int threads, int queueSize) {
+        this.cacheName = cacheName;
+        threads = threads > 0 ? threads : DEFAULT_REFRESH_THREADS;
+        queueSize = queueSize > 0 ? queueSize : DEFAULT_REFRESH_QUEUE_SIZE;
+        this.executor = new ThreadPoolExecutor(threads, threads, 1L, TimeUnit.MINUTES,
+                new ArrayBlockingQueue<>(queueSize),
+                new NamedThreadFactory("layering-cache-refresh-" + cacheName),
+                new ThreadPoolExecutor.AbortPolicy());
+        // 空闲时回收线程，避免未关闭的缓存阻止JVM退出
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 提交刷新任务，同一个key已有等待中或执行中的刷新任务时直接丢弃
+     *
+     * @param key      缓存key
+     * @param runnable 刷新任务
+     * @return: boolean 是否提交成功
+     * @author: xl
+     * @date: 2021/10/16
+     **/
+    public boolean submit(String key, Runnable runnable) {
+        if (!pendingKeys.add(key)) {
+            dedupCount.increment();
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    runnable.run();
+                } finally {
+                    pendingKeys.remove(key);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            pendingKeys.remove(key);
+            droppedCount.increment();
+            log.warn("缓存名称={},刷新队列已满，丢弃 key={} 的刷新任务", cacheName, key);
+            return false;
+        }
+    }
+
+    /**
+     * 提交异步刷新任务，任务在刷新线程池中发起后立即释放线程，返回的future完成前同一个key的刷新请求直接丢弃
+     *
+     * @param key  缓存key
+     * @param task 发起异步刷新的函数
+     * @return: boolean 是否提交成功
+     * @author: xl
+     * @date: 2021/10/18
+     **/
+    public boolean submitAsync(String key, Supplier<CompletableFuture<?>> task) {
+        if (!pendingKeys.add(key)) {
+            dedupCount.increment();
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                CompletableFuture<?> future;
+                try {
+                    future = task.get();
+                } catch (RuntimeException e) {
+                    pendingKeys.remove(key);
+                    throw e;
+                }
+                future.whenComplete((value, throwable) -> {
+                    pendingKeys.remove(key);
+                    if (throwable != null) {
+                        log.warn("缓存名称={},异步刷新 key={} 异常：{}", cacheName, key, throwable.getMessage());
+                    }
+                });
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            pendingKeys.remove(key);
+            droppedCount.increment();
+            log.warn("缓存名称={},刷新队列已满，丢弃 key={} 的刷新任务", cacheName, key);
+            return false;
+        }
+    }
+
+    /**
+     * 关闭刷新线程池
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 刷新队列深度
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * 正在执行刷新的线程数
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * 等待中或执行中的刷新key数量
+     */
+    public int getPendingKeySize() {
+        return pendingKeys.size();
+    }
+
+    /**
+     * 合并的刷新次数
+     */
+    public long getDedupCount() {
+        return dedupCount.sum();
+    }
+
+    /**
+     * 丢弃的刷新次数
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+}
@@ -0,0 +1,108 @@
+package com.xul.core.supports;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 本地请求合并
+ * <p>
+ * 同一个key同一时刻在本服务器只有一个线程真正执行加载（竞争分布式锁、查询数据库），
+ * 其它线程共享该线程的 {@link CompletableFuture} 结果，不再产生任何redis请求。
+ * 每个缓存持有一个实例，所以key即缓存key
+ * </p>
+ *
+ * @author: xl
+ * @date: 2021/10/16
+ **/
+public class SingleFlight {
+
+    /**
+     * 正在执行中的加载，key是缓存key
+     */
+    private final Map<String, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * 同步执行加载，同一个key已有线程在执行时直接等待其结果
+     *
+     * @param key    缓存key
+     * @param loader 加载函数
+     * @return: T
+     * @author: xl
+     * @date: 2021/10/16
+     **/
+    public <T> T execute(String key, Supplier<T> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> flight = flights.putIfAbsent(key, future);
+        if (flight != null) {
+            return (T) join(flight);
+        }
+        try {
+            T result = loader.get();
+            future.complete(result);
+            return result;
+        } catch (Throwable throwable) {
+            /**Error等非RuntimeException也要完成future，否则等待的线程永远阻塞*/
+            future.completeExceptionally(throwable);
+            throw throwable;
+        } finally {
+            flights.remove(key, future);
+        }
+    }
+
+    /**
+     * 异步执行加载，同一个key已有加载在执行时直接返回其future
+     *
+     * @param key    缓存key
+     * @param loader 异步加载函数
+     * @return: java.util.concurrent.CompletableFuture<T>
+     * @author: xl
+     * @date: 2021/10/16
+     **/
+    public <T> CompletableFuture<T> executeAsync(String key, Supplier<CompletableFuture<T>> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> flight = flights.putIfAbsent(key, future);
+        if (flight != null) {
+            return (CompletableFuture<T>) flight;
+        }
+        CompletableFuture<T> loadFuture;
+        try {
+            loadFuture = loader.get();
+        } catch (Throwable throwable) {
+            loadFuture = new CompletableFuture<>();
+            loadFuture.completeExceptionally(throwable);
+        }
+        loadFuture.whenComplete((result, throwable) -> {
+            flights.remove(key, future);
+            if (throwable != null) {
+                future.completeExceptionally(throwable);
+            } else {
+                future.complete(result);
+            }
+        });
+        return (CompletableFuture<T>) future;
+    }
+
+    /**
+     * 正在执行中的加载数量
+     */
+    public int size() {
+        return flights.size();
+    }
+
+    private static Object join(CompletableFuture<Object> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exception.getCause();
+            }
+            if (exception.getCause() instanceof Error) {
+                throw (Error) exception.getCause();
+            }
+            throw exception;
+        }
+    }
+}
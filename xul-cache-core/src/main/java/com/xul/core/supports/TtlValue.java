@@ -0,0 +1,37 @@
+package com.xul.core.supports;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 缓存值和剩余生存时间，一次redis请求同时获取
+ *
+ * @author: xl
+ * @date: 2021/10/16
+ **/
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TtlValue<T> {
+
+    /**
+     * key不存在
+     */
+    public static final long NOT_EXIST = -2;
+
+    /**
+     * key没有设置过期时间
+     */
+    public static final long NO_EXPIRE = -1;
+
+    /**
+     * 缓存值，key不存在时为null
+     */
+    private T value;
+
+    /**
+     * 剩余生存时间，毫秒。key不存在返回-2，没有设置过期时间返回-1
+     */
+    private long ttl;
+}
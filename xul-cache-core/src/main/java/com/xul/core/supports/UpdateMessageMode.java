@@ -0,0 +1,25 @@
+package com.xul.core.supports;
+
+/**
+ * 更新一级缓存的消息内容
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+public enum UpdateMessageMode {
+    /**
+     * 消息携带缓存值，收到消息后更新一级缓存
+     */
+    VALUE("携带缓存值"),
+
+    /**
+     * 消息只携带缓存名称、key和版本号，收到比本地版本新的消息时删除一级缓存，下次读取时从二级缓存加载
+     */
+    KEY_VERSION("只携带key和版本号");
+
+    private String label;
+
+    UpdateMessageMode(String label) {
+        this.label = label;
+    }
+}
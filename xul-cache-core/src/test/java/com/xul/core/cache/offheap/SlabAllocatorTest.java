@@ -0,0 +1,83 @@
+package com.xul.core.cache.offheap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 堆外内存分配器测试
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+public class SlabAllocatorTest {
+
+    @Test
+    public void sizeClassOf() {
+        SlabAllocator allocator = new SlabAllocator(4L * SlabAllocator.PAGE_SIZE);
+        assertEquals(0, allocator.sizeClassOf(1));
+        assertEquals(0, allocator.sizeClassOf(64));
+        assertEquals(1, allocator.sizeClassOf(65));
+        assertEquals(14, allocator.sizeClassOf(SlabAllocator.PAGE_SIZE));
+        assertEquals(-1, allocator.sizeClassOf(SlabAllocator.PAGE_SIZE + 1));
+    }
+
+    @Test
+    public void writeAndRead() {
+        SlabAllocator allocator = new SlabAllocator(SlabAllocator.PAGE_SIZE);
+        byte[] data = "layering-cache".getBytes();
+        long blockRef = allocator.allocate(allocator.sizeClassOf(data.length));
+        allocator.write(blockRef, data);
+        assertArrayEquals(data, allocator.read(blockRef, data.length));
+    }
+
+    @Test
+    public void freedPageIsReusedByAnotherSizeClass() {
+        SlabAllocator allocator = new SlabAllocator(SlabAllocator.PAGE_SIZE);
+        /**一页切成16K个64字节的块*/
+        List<Long> blockRefs = new ArrayList<>();
+        long blockRef;
+        while ((blockRef = allocator.allocate(0)) >= 0) {
+            blockRefs.add(blockRef);
+        }
+        assertEquals(SlabAllocator.PAGE_SIZE / SlabAllocator.MIN_BLOCK_SIZE, blockRefs.size());
+        assertEquals(-1, allocator.allocate(4));
+
+        /**页上的块全部释放后可以切分成其它规格*/
+        blockRefs.forEach(ref -> allocator.free(ref, 0));
+        assertTrue(allocator.allocate(4) >= 0);
+        assertEquals(SlabAllocator.PAGE_SIZE, allocator.getAllocatedMemory());
+    }
+
+    @Test
+    public void partiallyFreedPageKeepsSizeClass() {
+        SlabAllocator allocator = new SlabAllocator(SlabAllocator.PAGE_SIZE);
+        long first = allocator.allocate(0);
+        long second = allocator.allocate(0);
+        allocator.free(first, 0);
+        assertEquals(-1, allocator.allocate(4));
+        assertEquals(first, allocator.allocate(0));
+        allocator.free(first, 0);
+        allocator.free(second, 0);
+        assertTrue(allocator.allocate(4) >= 0);
+    }
+
+    @Test
+    public void smallMaxMemoryIsRespected() {
+        SlabAllocator allocator = new SlabAllocator(100 * 1024);
+        assertEquals(64 * 1024, allocator.getPageSize());
+        assertEquals(-1, allocator.sizeClassOf(64 * 1024 + 1));
+
+        int blockCount = 0;
+        while (allocator.allocate(allocator.sizeClassOf(1024)) >= 0) {
+            blockCount++;
+        }
+        assertEquals(64, blockCount);
+        assertEquals(64 * 1024, allocator.getAllocatedMemory());
+    }
+}
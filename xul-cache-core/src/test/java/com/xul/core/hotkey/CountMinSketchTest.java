@@ -0,0 +1,51 @@
+package com.xul.core.hotkey;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Count-Min Sketch 测试
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+public class CountMinSketchTest {
+
+    @Test
+    public void estimateNeverUnderCounts() {
+        CountMinSketch sketch = new CountMinSketch(1024, 4);
+        for (int i = 0; i < 1000; i++) {
+            for (int j = 0; j <= i % 10; j++) {
+                sketch.increment("key:" + i);
+            }
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(sketch.estimate("key:" + i) >= i % 10 + 1);
+        }
+    }
+
+    @Test
+    public void hotKeyEstimateIsAccurate() {
+        CountMinSketch sketch = new CountMinSketch(1024, 4);
+        for (int i = 0; i < 500; i++) {
+            sketch.increment("key:" + i);
+        }
+        long estimate = 0;
+        for (int i = 0; i < 1000; i++) {
+            estimate = sketch.increment("hot");
+        }
+        assertTrue(estimate >= 1000 && estimate < 1010);
+    }
+
+    @Test
+    public void halve() {
+        CountMinSketch sketch = new CountMinSketch(16, 2);
+        for (int i = 0; i < 9; i++) {
+            sketch.increment("key");
+        }
+        sketch.halve();
+        assertEquals(4, sketch.estimate("key"));
+    }
+}
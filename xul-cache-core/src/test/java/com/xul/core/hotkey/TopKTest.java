@@ -0,0 +1,54 @@
+package com.xul.core.hotkey;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * TopK 测试
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+public class TopKTest {
+
+    @Test
+    public void keepsLargestCounts() {
+        TopK topK = new TopK(3);
+        for (int i = 1; i <= 10; i++) {
+            topK.offer("key:" + i, i);
+        }
+        Map<String, Long> top = topK.top(3);
+        assertEquals(Arrays.asList("key:10", "key:9", "key:8"), new ArrayList<>(top.keySet()));
+        assertFalse(topK.contains("key:1"));
+        /**不超过集合中最小估算次数的新key不加入*/
+        topK.offer("key:11", 2);
+        assertFalse(topK.contains("key:11"));
+    }
+
+    @Test
+    public void updateExistingKey() {
+        TopK topK = new TopK(2);
+        topK.offer("a", 5);
+        topK.offer("b", 6);
+        topK.offer("a", 10);
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<>(topK.top(2).keySet()));
+    }
+
+    @Test
+    public void halveRemovesZeroCounts() {
+        TopK topK = new TopK(3);
+        topK.offer("a", 1);
+        topK.offer("b", 8);
+        topK.halve();
+        assertFalse(topK.contains("a"));
+        assertTrue(topK.contains("b"));
+        assertEquals(Long.valueOf(4), topK.top(1).get("b"));
+    }
+}
@@ -0,0 +1,99 @@
+package com.xul.core.listener;
+
+import com.xul.core.config.GlobalConfig;
+import com.xul.core.utils.GSONUtil;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 消息序列化器测试
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+public class RedisPubSubMessageSerializerTest {
+
+    private final RedisPubSubMessageSerializer serializer = new RedisPubSubMessageSerializer(GlobalConfig.GLOBAL_REDIS_SERIALIZER);
+
+    @Test
+    public void binaryRoundTrip() {
+        RedisPubSubMessage message = RedisPubSubMessage.builder().cacheName("user").key("user:1").value("张三")
+                .version(300).messageType(RedisPubSubMessageType.UPDATE).nodeId("node-1").build();
+        byte[] bytes = serializer.serialize(message);
+        assertEquals(1, bytes[1]);
+
+        RedisPubSubMessage result = serializer.deserialize(bytes, RedisPubSubMessage.class);
+        assertEquals(message, result);
+    }
+
+    @Test
+    public void nullFieldsRoundTrip() {
+        RedisPubSubMessage message = RedisPubSubMessage.builder().cacheName("user")
+                .messageType(RedisPubSubMessageType.CLEAR).build();
+        RedisPubSubMessage result = serializer.deserialize(serializer.serialize(message), RedisPubSubMessage.class);
+        assertEquals(message, result);
+    }
+
+    @Test
+    public void batchRoundTrip() {
+        RedisPubSubMessage first = RedisPubSubMessage.builder().cacheName("user").key("user:1")
+                .messageType(RedisPubSubMessageType.EVICT).build();
+        RedisPubSubMessage second = RedisPubSubMessage.builder().cacheName("order").key("order:1").value(1L)
+                .version(2).messageType(RedisPubSubMessageType.UPDATE).build();
+        RedisPubSubMessage third = RedisPubSubMessage.builder().cacheName("user").key("user:2")
+                .messageType(RedisPubSubMessageType.EVICT).build();
+        RedisPubSubMessage batch = RedisPubSubMessage.builder().messageType(RedisPubSubMessageType.BATCH)
+                .messages(Arrays.asList(first, second, third)).nodeId("node-1").build();
+
+        RedisPubSubMessage result = serializer.deserialize(serializer.serialize(batch), RedisPubSubMessage.class);
+        assertEquals(batch, result);
+    }
+
+    @Test
+    public void trailingNodeIdIsOptional() {
+        RedisPubSubMessage message = RedisPubSubMessage.builder().cacheName("user").key("user:1")
+                .messageType(RedisPubSubMessageType.EVICT).nodeId("node-1").build();
+        byte[] bytes = serializer.serialize(message);
+        /**去掉末尾的服务器标识（1字节长度+6字节内容），相当于旧版本发布的消息*/
+        byte[] withoutNodeId = Arrays.copyOf(bytes, bytes.length - 7);
+
+        RedisPubSubMessage result = serializer.deserialize(withoutNodeId, RedisPubSubMessage.class);
+        assertNull(result.getNodeId());
+        assertEquals("user:1", result.getKey());
+        assertEquals(RedisPubSubMessageType.EVICT, result.getMessageType());
+    }
+
+    @Test
+    public void unknownVersionIsSkipped() {
+        RedisPubSubMessage message = RedisPubSubMessage.builder().cacheName("user").key("user:1")
+                .messageType(RedisPubSubMessageType.EVICT).build();
+        byte[] bytes = serializer.serialize(message);
+        bytes[1] = 2;
+        assertNull(serializer.deserialize(bytes, RedisPubSubMessage.class));
+    }
+
+    @Test
+    public void legacyJsonRoundTrip() {
+        RedisPubSubMessage message = RedisPubSubMessage.builder().cacheName("user").key("user:1")
+                .messageType(RedisPubSubMessageType.EVICT).build();
+        String json = GSONUtil.toJson(message);
+        byte[] bytes = serializer.serialize(json);
+        assertArrayEquals(GlobalConfig.GLOBAL_REDIS_SERIALIZER.serialize(json), bytes);
+
+        assertEquals(json, serializer.deserialize(bytes, String.class));
+        assertEquals(message, serializer.deserialize(bytes, RedisPubSubMessage.class));
+    }
+
+    @Test
+    public void binaryReadAsJson() {
+        RedisPubSubMessage message = RedisPubSubMessage.builder().cacheName("user").key("user:1")
+                .messageType(RedisPubSubMessageType.EVICT).build();
+        String json = serializer.deserialize(serializer.serialize(message), String.class);
+        assertEquals(message, GSONUtil.fromJson(json, RedisPubSubMessage.class));
+    }
+}
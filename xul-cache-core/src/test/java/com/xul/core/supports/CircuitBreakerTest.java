@@ -0,0 +1,94 @@
+package com.xul.core.supports;
+
+import com.xul.core.config.RedisConfig;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * redis熔断器测试
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+public class CircuitBreakerTest {
+
+    private static CircuitBreaker newCircuitBreaker(long openDuration) {
+        RedisConfig redisConfig = new RedisConfig();
+        redisConfig.setCircuitBreakerEnable(true);
+        redisConfig.setCircuitBreakerFailureThreshold(3);
+        redisConfig.setCircuitBreakerSlowCallThreshold(100);
+        redisConfig.setCircuitBreakerOpenDuration(openDuration);
+        return new CircuitBreaker(redisConfig);
+    }
+
+    @Test
+    public void disabledAlwaysAllows() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(new RedisConfig());
+        for (int i = 0; i < 10; i++) {
+            circuitBreaker.onFailure();
+        }
+        assertTrue(circuitBreaker.allowRequest());
+        assertFalse(circuitBreaker.isOpen());
+        assertEquals(CircuitBreakerState.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        CircuitBreaker circuitBreaker = newCircuitBreaker(60000);
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        /**成功调用重置连续失败次数*/
+        circuitBreaker.onSuccess(0);
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        assertEquals(CircuitBreakerState.CLOSED, circuitBreaker.getState());
+
+        circuitBreaker.onFailure();
+        assertEquals(CircuitBreakerState.OPEN, circuitBreaker.getState());
+        assertTrue(circuitBreaker.isOpen());
+        assertFalse(circuitBreaker.allowRequest());
+        assertEquals(1, circuitBreaker.getTripCount());
+        assertEquals(1, circuitBreaker.getRejectedCount());
+    }
+
+    @Test
+    public void slowCallCountsAsFailure() {
+        CircuitBreaker circuitBreaker = newCircuitBreaker(60000);
+        for (int i = 0; i < 3; i++) {
+            circuitBreaker.onSuccess(100);
+        }
+        assertEquals(CircuitBreakerState.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void halfOpenProbeSuccessCloses() {
+        CircuitBreaker circuitBreaker = newCircuitBreaker(0);
+        for (int i = 0; i < 3; i++) {
+            circuitBreaker.onFailure();
+        }
+        /**熔断持续时间到期后只放行一个探测请求*/
+        assertTrue(circuitBreaker.allowRequest());
+        assertEquals(CircuitBreakerState.HALF_OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.allowRequest());
+
+        circuitBreaker.onSuccess(0);
+        assertEquals(CircuitBreakerState.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void halfOpenProbeFailureReopens() {
+        CircuitBreaker circuitBreaker = newCircuitBreaker(0);
+        for (int i = 0; i < 3; i++) {
+            circuitBreaker.onFailure();
+        }
+        assertTrue(circuitBreaker.allowRequest());
+
+        circuitBreaker.onFailure();
+        assertEquals(CircuitBreakerState.OPEN, circuitBreaker.getState());
+        assertEquals(1, circuitBreaker.getTripCount());
+    }
+}
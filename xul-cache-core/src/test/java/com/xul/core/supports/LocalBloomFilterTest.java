@@ -0,0 +1,75 @@
+package com.xul.core.supports;
+
+import com.xul.core.config.BloomFilterConfig;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 本地布隆过滤器测试
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+public class LocalBloomFilterTest {
+
+    private static LocalBloomFilter newBloomFilter(long expectedInsertions, double fpp) {
+        BloomFilterConfig config = new BloomFilterConfig();
+        config.setEnable(true);
+        config.setMode(BloomFilterMode.LOCAL);
+        config.setExpectedInsertions(expectedInsertions);
+        config.setFpp(fpp);
+        return new LocalBloomFilter(config);
+    }
+
+    @Test
+    public void notReadyAllowsEverything() {
+        LocalBloomFilter bloomFilter = newBloomFilter(1000, 0.01);
+        assertFalse(bloomFilter.isReady());
+        assertTrue(bloomFilter.mightContain("missing"));
+    }
+
+    @Test
+    public void noFalseNegatives() {
+        LocalBloomFilter bloomFilter = newBloomFilter(10000, 0.01);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            keys.add("user:" + i);
+        }
+        bloomFilter.rebuild(keys);
+        assertTrue(bloomFilter.isReady());
+        for (String key : keys) {
+            assertTrue(bloomFilter.mightContain(key));
+        }
+        /**重建后写入的key*/
+        bloomFilter.put("user:new");
+        assertTrue(bloomFilter.mightContain("user:new"));
+    }
+
+    @Test
+    public void falsePositiveRateWithinBound() {
+        int expectedInsertions = 10000;
+        LocalBloomFilter bloomFilter = newBloomFilter(expectedInsertions, 0.01);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < expectedInsertions; i++) {
+            keys.add("user:" + i);
+        }
+        bloomFilter.rebuild(keys);
+        assertEquals(7, bloomFilter.getNumHashFunctions());
+
+        int falsePositives = 0;
+        int lookups = 100000;
+        for (int i = 0; i < lookups; i++) {
+            if (bloomFilter.mightContain("order:" + i)) {
+                falsePositives++;
+            }
+        }
+        /**留出统计波动的余量*/
+        assertTrue("误判率：" + (double) falsePositives / lookups, falsePositives < lookups * 0.02);
+    }
+}
@@ -0,0 +1,139 @@
+package com.xul.core.supports;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 本地请求合并测试
+ *
+ * @author: xl
+ * @date: 2021/10/18
+ **/
+public class SingleFlightTest {
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    @Test
+    public void concurrentCallsShareOneLoad() throws Exception {
+        int threads = 8;
+        AtomicInteger loadCount = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                loadCount.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "value";
+            })));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            for (int i = 1; i < threads; i++) {
+                futures.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                    loadCount.incrementAndGet();
+                    return "other";
+                })));
+            }
+            /**等其它线程都进入等待后再完成加载*/
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<String> future : futures) {
+                assertEquals("value", future.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loadCount.get());
+            assertEquals(0, singleFlight.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void exceptionIsRethrownAndKeyReleased() {
+        IllegalStateException exception = new IllegalStateException("load failed");
+        try {
+            singleFlight.execute("key", () -> {
+                throw exception;
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertSame(exception, e);
+        }
+        assertEquals(0, singleFlight.size());
+        assertEquals("value", singleFlight.execute("key", () -> "value"));
+    }
+
+    @Test
+    public void errorCompletesWaiters() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> loader = executor.submit(() -> singleFlight.execute("key", () -> {
+                started.countDown();
+                await(release);
+                throw new AssertionError("load failed");
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<String> waiter = executor.submit(() -> singleFlight.execute("key", () -> "other"));
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<String> future : Arrays.asList(loader, waiter)) {
+                try {
+                    future.get(5, TimeUnit.SECONDS);
+                    fail();
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof AssertionError);
+                }
+            }
+            assertEquals(0, singleFlight.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void asyncCallsShareOneLoad() {
+        CompletableFuture<String> load = new CompletableFuture<>();
+        AtomicInteger loadCount = new AtomicInteger();
+        CompletableFuture<String> first = singleFlight.executeAsync("key", () -> {
+            loadCount.incrementAndGet();
+            return load;
+        });
+        CompletableFuture<String> second = singleFlight.executeAsync("key", () -> {
+            loadCount.incrementAndGet();
+            return CompletableFuture.completedFuture("other");
+        });
+        assertEquals(1, singleFlight.size());
+
+        load.complete("value");
+        assertEquals("value", first.join());
+        assertEquals("value", second.join());
+        assertEquals(1, loadCount.get());
+        assertEquals(0, singleFlight.size());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
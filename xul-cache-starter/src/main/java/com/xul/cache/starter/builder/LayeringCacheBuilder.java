@@ -1,9 +1,12 @@
 package com.xul.cache.starter.builder;
 
 import com.xul.core.cache.Cache;
+import com.xul.core.config.BloomFilterConfig;
 import com.xul.core.config.FirstCacheConfig;
+import com.xul.core.config.HotKeyConfig;
 import com.xul.core.config.LayeringCacheConfig;
 import com.xul.core.config.SecondaryCacheConfig;
+import com.xul.core.config.WarmUpConfig;
 import com.xul.core.manager.LayeringCacheManager;
 import lombok.extern.slf4j.Slf4j;
 
@@ -31,6 +34,21 @@ public class LayeringCacheBuilder {
      */
     private SecondaryCacheConfig secondaryCacheConfig;
 
+    /**
+     * 布隆过滤器配置
+     */
+    private BloomFilterConfig bloomFilterConfig;
+
+    /**
+     * 缓存预热配置
+     */
+    private WarmUpConfig warmUpConfig;
+
+    /**
+     * 热点key探测配置
+     */
+    private HotKeyConfig hotKeyConfig;
+
     /**
      * 提供一个静态builder方法
      */
@@ -54,6 +72,21 @@ public class LayeringCacheBuilder {
          */
         private SecondaryCacheConfig secondaryCacheConfig;
 
+        /**
+         * 布隆过滤器配置
+         */
+        private BloomFilterConfig bloomFilterConfig;
+
+        /**
+         * 缓存预热配置
+         */
+        private WarmUpConfig warmUpConfig;
+
+        /**
+         * 热点key探测配置
+         */
+        private HotKeyConfig hotKeyConfig;
+
         public Builder cacheName(String cacheName) {
             this.cacheName = cacheName;
             return this;
@@ -69,6 +102,21 @@ public class LayeringCacheBuilder {
             return this;
         }
 
+        public Builder bloomFilterConfig(BloomFilterConfig bloomFilterConfig) {
+            this.bloomFilterConfig = bloomFilterConfig;
+            return this;
+        }
+
+        public Builder warmUpConfig(WarmUpConfig warmUpConfig) {
+            this.warmUpConfig = warmUpConfig;
+            return this;
+        }
+
+        public Builder hotKeyConfig(HotKeyConfig hotKeyConfig) {
+            this.hotKeyConfig = hotKeyConfig;
+            return this;
+        }
+
         /**
          * 构造缓存
          */
@@ -81,6 +129,9 @@ public class LayeringCacheBuilder {
         cacheName = builder.cacheName;
         firstCacheConfig = builder.firstCacheConfig;
         secondaryCacheConfig = builder.secondaryCacheConfig;
+        bloomFilterConfig = builder.bloomFilterConfig;
+        warmUpConfig = builder.warmUpConfig;
+        hotKeyConfig = builder.hotKeyConfig;
     }
 
 
@@ -93,6 +144,9 @@ public class LayeringCacheBuilder {
                 , LayeringCacheConfig.builder()
                         .firstCacheConfig(this.firstCacheConfig)
                         .secondaryCacheConfig(this.secondaryCacheConfig)
+                        .bloomFilterConfig(this.bloomFilterConfig)
+                        .warmUpConfig(this.warmUpConfig)
+                        .hotKeyConfig(this.hotKeyConfig)
                         .build()
         );
     }
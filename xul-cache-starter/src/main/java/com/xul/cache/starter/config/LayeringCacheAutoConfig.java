@@ -1,9 +1,14 @@
 package com.xul.cache.starter.config;
 
+import com.xul.core.config.GlobalConfig;
 import com.xul.core.config.RedisConfig;
 import com.xul.core.manager.LayeringCacheManager;
 import com.xul.core.redis.client.RedisClient;
 import com.xul.core.redis.serializer.RedisSerializer;
+import com.xul.core.supports.InvalidationMode;
+import com.xul.core.supports.MessageCodec;
+import com.xul.core.supports.RedisConnectionMode;
+import com.xul.core.supports.UpdateMessageMode;
 import com.xul.core.utils.FileUtil;
 import com.xul.core.utils.StringUtils;
 import lombok.extern.slf4j.Slf4j;
@@ -45,12 +50,32 @@ public class LayeringCacheAutoConfig implements BeanPostProcessor {
         redisConfig.setIdleMaxSize(Integer.parseInt(configAllMap.getOrDefault("layering-cache.redis.idlemax-size", 32).toString()));
         redisConfig.setMaxSize(Integer.parseInt(configAllMap.getOrDefault("layering-cache.redis.max-size", 64).toString()));
         redisConfig.setMinSize(Integer.parseInt(configAllMap.getOrDefault("layering-cache.redis.min-size", 10).toString()));
+        redisConfig.setConnectionMode(RedisConnectionMode.valueOf(configAllMap.getOrDefault("layering-cache.redis.connection-mode", "POOL").toString().toUpperCase()));
+        redisConfig.setSharedConnectionSize(Integer.parseInt(configAllMap.getOrDefault("layering-cache.redis.shared-connection-size", 1).toString()));
+        redisConfig.setFlushInterval(Long.parseLong(configAllMap.getOrDefault("layering-cache.redis.flush-interval", 0).toString()));
+        redisConfig.setFlushSize(Integer.parseInt(configAllMap.getOrDefault("layering-cache.redis.flush-size", 64).toString()));
+        redisConfig.setCircuitBreakerEnable(Boolean.parseBoolean(configAllMap.getOrDefault("layering-cache.redis.circuit-breaker-enable", false).toString()));
+        redisConfig.setCircuitBreakerFailureThreshold(Integer.parseInt(configAllMap.getOrDefault("layering-cache.redis.circuit-breaker-failure-threshold", 5).toString()));
+        redisConfig.setCircuitBreakerSlowCallThreshold(Long.parseLong(configAllMap.getOrDefault("layering-cache.redis.circuit-breaker-slow-call-threshold", 500).toString()));
+        redisConfig.setCircuitBreakerOpenDuration(Long.parseLong(configAllMap.getOrDefault("layering-cache.redis.circuit-breaker-open-duration", 10000).toString()));
         try {
             RedisSerializer valueRedisSerializer = (RedisSerializer) Class.forName(redisConfig.getValueSerializer()).newInstance();
             RedisSerializer keyRedisSerializer = (RedisSerializer) Class.forName(redisConfig.getKeySerializer()).newInstance();
             RedisClient redisClient = RedisClient.getInstance(redisConfig);
             redisClient.setKeySerializer(keyRedisSerializer);
             redisClient.setValueSerializer(valueRedisSerializer);
+            /**一级缓存快照配置*/
+            GlobalConfig.setSnapshotDir(configAllMap.getOrDefault("layering-cache.snapshot.dir", "").toString());
+            GlobalConfig.setSnapshotInterval(Long.parseLong(configAllMap.getOrDefault("layering-cache.snapshot.interval", 300).toString()));
+            GlobalConfig.setHotKeyPublishInterval(Long.parseLong(configAllMap.getOrDefault("layering-cache.hot-key.publish-interval", 60).toString()));
+            /**一级缓存失效通知方式*/
+            GlobalConfig.setInvalidationMode(InvalidationMode.valueOf(configAllMap.getOrDefault("layering-cache.invalidation.mode", "MESSAGE").toString().toUpperCase()));
+            GlobalConfig.setStreamMaxLength(Long.parseLong(configAllMap.getOrDefault("layering-cache.invalidation.stream-max-length", 100000).toString()));
+            GlobalConfig.setPublishBatchInterval(Long.parseLong(configAllMap.getOrDefault("layering-cache.invalidation.batch-interval", 0).toString()));
+            GlobalConfig.setUpdateMessageMode(UpdateMessageMode.valueOf(configAllMap.getOrDefault("layering-cache.invalidation.update-message-mode", "VALUE").toString().toUpperCase()));
+            GlobalConfig.setMessageCodec(MessageCodec.valueOf(configAllMap.getOrDefault("layering-cache.invalidation.message-codec", "JSON").toString().toUpperCase()));
+            GlobalConfig.setPushMessagePayload(Boolean.parseBoolean(configAllMap.getOrDefault("layering-cache.invalidation.push-payload", false).toString()));
+            GlobalConfig.setPublishBatchSize(Integer.parseInt(configAllMap.getOrDefault("layering-cache.invalidation.batch-size", 500).toString()));
             /**初始化分布式缓存管理器*/
             LayeringCacheManager.getInstance().init(redisClient, applicationName);
             log.info(">>>>>>>>>> layering-cache init success config=[{}]!!! <<<<<<<<<<",redisConfig);